@@ -13,16 +13,15 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ImportRuntimeHints;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
-import org.springframework.util.FileCopyUtils;
 
 import javax.lang.model.element.Modifier;
 import java.io.File;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 
 @ImportRuntimeHints(Hints.class)
+@InlineResources("hello")
 @SpringBootApplication
 //@RegisterReflectionForBinding (Album.class)
 public class AotApplication {
@@ -35,8 +34,7 @@ public class AotApplication {
     @Bean
     ApplicationRunner resources() {
         return args -> {
-            var xml = new ClassPathResource("hello");
-            var str = FileCopyUtils.copyToString(new InputStreamReader(xml.getInputStream()));
+            var str = InlinedResources.getAsString("hello", StandardCharsets.UTF_8);
             System.out.println("str: " + str);
         };
     }
@@ -57,6 +55,11 @@ public class AotApplication {
         return new SimpleServiceAotProcessor();
     }
 
+    @Bean
+    static InlinedResourcesAotProcessor inlinedResourcesAotProcessor() {
+        return new InlinedResourcesAotProcessor();
+    }
+
     @Bean
     static MyBeanRegistrationAotProcessor myBeanRegistrationAotProcessor() {
         return new MyBeanRegistrationAotProcessor();
@@ -86,7 +89,6 @@ class Hints implements RuntimeHintsRegistrar {
     @Override
     public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
         hints.reflection().registerType(Album.class, MemberCategory.values());
-        hints.resources().registerResource(new ClassPathResource("/hello"));
     }
 }
 
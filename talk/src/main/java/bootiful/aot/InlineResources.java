@@ -0,0 +1,17 @@
+package bootiful.aot;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// classpath resources, put on any bean's class, that are read at build time and compiled into the
+// application as constants, so reading one at runtime is no I/O and needs no resource hint
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface InlineResources {
+
+    String[] value();
+}
@@ -0,0 +1,54 @@
+package bootiful.aot;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// where the application reads the inlined resources. after AOT processing they're registered by
+// generated code before any bean is created; without it (on the JVM) they're read from the classpath
+// the first time they're asked for
+public final class InlinedResources {
+
+    private static final Map<String, byte[]> resources = new ConcurrentHashMap<>();
+
+    private InlinedResources() {
+    }
+
+    // called by the generated code: the resource's bytes, as ISO-8859-1 chunks short enough to be string constants
+    public static void register(String location, String... chunks) {
+        var length = 0;
+        for (var chunk : chunks)
+            length += chunk.length();
+        var bytes = new byte[length];
+        var offset = 0;
+        for (var chunk : chunks) {
+            var chunkBytes = chunk.getBytes(StandardCharsets.ISO_8859_1);
+            System.arraycopy(chunkBytes, 0, bytes, offset, chunkBytes.length);
+            offset += chunkBytes.length;
+        }
+        resources.put(location, bytes);
+    }
+
+    public static byte[] get(String location) {
+        return resources.computeIfAbsent(location, InlinedResources::read).clone();
+    }
+
+    public static String getAsString(String location, Charset charset) {
+        return new String(resources.computeIfAbsent(location, InlinedResources::read), charset);
+    }
+
+    static byte[] read(String location) {
+        try (var in = new ClassPathResource(location).getInputStream()) {
+            return StreamUtils.copyToByteArray(in);
+        }//
+        catch (IOException e) {
+            throw new UncheckedIOException("couldn't read the resource " + location, e);
+        }
+    }
+}
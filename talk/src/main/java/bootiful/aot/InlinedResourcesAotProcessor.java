@@ -0,0 +1,81 @@
+package bootiful.aot;
+
+import org.springframework.aot.generate.GenerationContext;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotContribution;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotProcessor;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationCode;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.javapoet.CodeBlock;
+import org.springframework.javapoet.FieldSpec;
+import org.springframework.util.ClassUtils;
+
+import javax.lang.model.element.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// finds the @InlineResources on the application's beans at build time and generates the code that
+// registers their bytes with InlinedResources
+public class InlinedResourcesAotProcessor implements BeanFactoryInitializationAotProcessor {
+
+    // a string constant can be at most 65535 bytes of modified UTF-8, and an ISO-8859-1 char takes up to two
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    @Override
+    public BeanFactoryInitializationAotContribution processAheadOfTime(ConfigurableListableBeanFactory beanFactory) {
+        var resources = new LinkedHashMap<String, byte[]>();
+        Class<?> target = null;
+        for (var beanName : beanFactory.getBeanDefinitionNames()) {
+            var type = beanFactory.getType(beanName, false);
+            if (type == null)
+                continue;
+            var inline = AnnotatedElementUtils.findMergedAnnotation(ClassUtils.getUserClass(type), InlineResources.class);
+            if (inline == null)
+                continue;
+            target = target == null ? ClassUtils.getUserClass(type) : target;
+            for (var location : inline.value())
+                resources.computeIfAbsent(location, InlinedResources::read);
+        }
+        if (resources.isEmpty())
+            return null;
+        var generatedClassTarget = target;
+        return (generationContext, beanFactoryInitializationCode) ->
+                contribute(generationContext, beanFactoryInitializationCode, generatedClassTarget, resources);
+    }
+
+    private static void contribute(GenerationContext generationContext, BeanFactoryInitializationCode code,
+                                   Class<?> target, Map<String, byte[]> resources) {
+        var fields = new ArrayList<FieldSpec>();
+        var registrations = CodeBlock.builder();
+        var index = 0;
+        for (var entry : resources.entrySet()) {
+            var chunks = CodeBlock.builder();
+            var bytes = entry.getValue();
+            var chunk = 0;
+            do {
+                var field = "RESOURCE_" + index + "_" + chunk;
+                var from = chunk * CHUNK_SIZE;
+                var constant = new String(bytes, from, Math.min(CHUNK_SIZE, bytes.length - from), StandardCharsets.ISO_8859_1);
+                fields.add(FieldSpec.builder(String.class, field, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$S", constant)
+                        .build());
+                chunks.add(chunk == 0 ? "$L" : ", $L", field);
+                chunk++;
+            }
+            while (chunk * CHUNK_SIZE < bytes.length);
+            registrations.addStatement("$T.register($S, $L)", InlinedResources.class, entry.getKey(), chunks.build());
+            index++;
+        }
+        var generatedClass = generationContext.getGeneratedClasses()
+                .addForFeatureComponent("InlinedResources", target, type -> type
+                        .addModifiers(Modifier.PUBLIC)
+                        .addFields(fields));
+        var register = generatedClass.getMethods().add("register", method -> method
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("Register the resources inlined at build time.")
+                .addCode(registrations.build()));
+        code.addInitializer(register.toMethodReference());
+    }
+}
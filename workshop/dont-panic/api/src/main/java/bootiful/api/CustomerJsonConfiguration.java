@@ -0,0 +1,21 @@
+package bootiful.api;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+class CustomerJsonConfiguration {
+
+    @Bean
+    CustomerJsonWriter customerJsonWriter(@Value("${bootiful.customers.json-cache-size:1024}") int maxCachedCustomers) {
+        return new CustomerJsonWriter(maxCachedCustomers);
+    }
+
+    @Bean
+    Module customerJsonModule(CustomerJsonWriter writer) {
+        return new SimpleModule("customers").addSerializer(new CustomerJsonSerializer(writer));
+    }
+}
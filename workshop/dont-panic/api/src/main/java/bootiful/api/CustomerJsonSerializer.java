@@ -0,0 +1,27 @@
+package bootiful.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+
+// writes each customer as the JSON its CustomerJsonWriter has cached for it
+class CustomerJsonSerializer extends JsonSerializer<Customer> {
+
+    private final CustomerJsonWriter writer;
+
+    CustomerJsonSerializer(CustomerJsonWriter writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public Class<Customer> handledType() {
+        return Customer.class;
+    }
+
+    @Override
+    public void serialize(Customer value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeRawValue(this.writer.json(value));
+    }
+}
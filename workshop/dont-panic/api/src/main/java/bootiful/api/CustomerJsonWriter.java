@@ -0,0 +1,64 @@
+package bootiful.api;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// a Customer record is immutable, so the record itself identifies
+// a version of the customer and its rendered JSON can be cached against it
+class CustomerJsonWriter {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    private final Map<Customer, SerializedString> cache;
+
+    CustomerJsonWriter(int maxCachedCustomers) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Customer, SerializedString> eldest) {
+                return size() > maxCachedCustomers;
+            }
+        };
+    }
+
+    SerializableString json(Customer customer) {
+        synchronized (this.cache) {
+            var json = this.cache.get(customer);
+            if (json != null)
+                return json;
+        }
+        var json = new SerializedString(render(customer));
+        synchronized (this.cache) {
+            this.cache.put(customer, json);
+        }
+        return json;
+    }
+
+    byte[] toBytes(Customer customer) {
+        return json(customer).asUnquotedUTF8();
+    }
+
+    private String render(Customer customer) {
+        var writer = new StringWriter();
+        try (var generator = this.jsonFactory.createGenerator(writer)) {
+            generator.writeStartObject();
+            if (customer.id() == null)
+                generator.writeNullField("id");
+            else
+                generator.writeNumberField("id", customer.id());
+            generator.writeStringField("name", customer.name());
+            generator.writeStringField("email", customer.email());
+            generator.writeEndObject();
+        }//
+        catch (IOException e) {
+            throw new UncheckedIOException("couldn't render customer #" + customer.id(), e);
+        }
+        return writer.toString();
+    }
+}
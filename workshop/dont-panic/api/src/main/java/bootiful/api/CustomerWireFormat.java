@@ -0,0 +1,42 @@
+package bootiful.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// the compact encoding of a Customer on the emails queue:
+// version (1 byte), flags (1 byte, bit 0 = id present), id (4 bytes), name and email (writeUTF)
+abstract class CustomerWireFormat {
+
+    static final String CONTENT_TYPE = "application/x-bootiful-customer";
+
+    static final int VERSION = 1;
+
+    private static final int ID_PRESENT = 1;
+
+    // bootiful.emails.wire-format is json (the default) or binary, and anything else is a mistake
+    static boolean isBinary(String wireFormat) {
+        if ("binary".equalsIgnoreCase(wireFormat))
+            return true;
+        if ("json".equalsIgnoreCase(wireFormat))
+            return false;
+        throw new IllegalArgumentException("bootiful.emails.wire-format must be json or binary, not '" + wireFormat + "'");
+    }
+
+    static byte[] encode(Customer customer) {
+        var bytes = new ByteArrayOutputStream(64);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeByte(customer.id() == null ? 0 : ID_PRESENT);
+            if (customer.id() != null)
+                out.writeInt(customer.id());
+            out.writeUTF(customer.name());
+            out.writeUTF(customer.email());
+        }//
+        catch (IOException e) {
+            throw new UncheckedIOException("couldn't encode customer #" + customer.id(), e);
+        }
+        return bytes.toByteArray();
+    }
+}
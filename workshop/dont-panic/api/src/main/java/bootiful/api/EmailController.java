@@ -1,5 +1,6 @@
 package bootiful.api;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -19,21 +20,26 @@ class EmailController {
 
     private final CustomerRepository repository;
 
-    EmailController(CustomerRepository repository, MessageChannel requests) {
+    private final MessageCredentialMinter minter;
+
+    EmailController(CustomerRepository repository, MessageChannel requests,
+                    ObjectProvider<MessageCredentialMinter> minter) {
         this.requests = requests;
         this.repository = repository;
+        this.minter = minter.getIfAvailable();
     }
 
     @PostMapping("/email")
     Map<String, Object> email(
             @AuthenticationPrincipal Jwt jwt,
             @RequestParam Integer customerId) {
-        var token = jwt.getTokenValue();
-        var message = MessageBuilder
-                .withPayload(repository.findCustomerById(customerId))
-                .setHeader("jwt", token)
-                .build();
-        var sent = this.requests.send(message);
+        var builder = MessageBuilder
+                .withPayload(repository.findCustomerById(customerId));
+        if (this.minter != null)
+            builder.setHeader(MessageCredentialMinter.HEADER_NAME, this.minter.mint(jwt));
+        else
+            builder.setHeader("jwt", jwt.getTokenValue());
+        var sent = this.requests.send(builder.build());
         return Map.of("sent", sent, "customerId", customerId);
     }
 }
@@ -1,30 +1,40 @@
 package bootiful.api;
 
 import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
 import org.springframework.integration.amqp.dsl.Amqp;
+import org.springframework.integration.core.GenericTransformer;
 import org.springframework.integration.dsl.DirectChannelSpec;
 import org.springframework.integration.dsl.IntegrationFlow;
 import org.springframework.integration.dsl.MessageChannels;
-import org.springframework.integration.json.ObjectToJsonTransformer;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
 
 @Configuration
 class EmailRequestsIntegrationFlowConfiguration {
 
     private final String destinationName = "emails";
 
+    // the processor reads both formats, so it should be upgraded before switching to binary
     @Bean
-    IntegrationFlow emailRequestsIntegrationFlow(MessageChannel requests, AmqpTemplate template) {
+    IntegrationFlow emailRequestsIntegrationFlow(MessageChannel requests, AmqpTemplate template,
+                                                 CustomerJsonWriter customerJsonWriter,
+                                                 @Value("${bootiful.emails.wire-format:json}") String wireFormat) {
         // <1>
         var outboundAmqpAdapter = Amqp
                 .outboundAdapter(template)
                 .routingKey(this.destinationName);
 
+        var binary = CustomerWireFormat.isBinary(wireFormat);
+        GenericTransformer<Customer, byte[]> encoder = binary ? CustomerWireFormat::encode : customerJsonWriter::toBytes;
         return IntegrationFlow
                 .from(requests)// <2>
-                .transform(new ObjectToJsonTransformer()) // <3>
+                .transform(Customer.class, encoder) // <3>
+                .enrichHeaders(h -> h.header(MessageHeaders.CONTENT_TYPE,
+                        binary ? CustomerWireFormat.CONTENT_TYPE : MediaType.APPLICATION_JSON_VALUE))
                 .handle(outboundAmqpAdapter) // <4>
                 .get();
     }
@@ -0,0 +1,35 @@
+package bootiful.api;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+class JwtDecoderConfiguration {
+
+    @Bean
+    SnapshotJwkSource snapshotJwkSource(RestTemplateBuilder restTemplateBuilder,
+                                        @Value("${bootiful.jwks.uri}") URI jwkSetUri,
+                                        @Value("${bootiful.jwks.snapshot}") Path snapshotFile,
+                                        @Value("${bootiful.jwks.refresh-interval:5m}") Duration refreshInterval,
+                                        @Value("${bootiful.jwks.min-refetch-interval:30s}") Duration minRefetchInterval) {
+        var restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofSeconds(5))
+                .setReadTimeout(Duration.ofSeconds(5))
+                .build();
+        return new SnapshotJwkSource(restTemplate, jwkSetUri, snapshotFile, refreshInterval, minRefetchInterval);
+    }
+
+    // replaces the decoder spring boot would otherwise build with OIDC discovery from the issuer-uri
+    @Bean
+    JwtDecoder jwtDecoder(SnapshotJwkSource snapshotJwkSource, RevokedTokens revokedTokens,
+                          @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuerUri) {
+        return SnapshotJwkSource.jwtDecoder(snapshotJwkSource, issuerUri, revokedTokens);
+    }
+}
@@ -0,0 +1,21 @@
+package bootiful.api;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+@Configuration
+@EnableConfigurationProperties(MessageCredentialProperties.class)
+class MessageCredentialConfiguration {
+
+    // without a key id, messages keep carrying the user's JWT
+    @Bean
+    @ConditionalOnProperty("bootiful.messages.key-id")
+    MessageCredentialMinter messageCredentialMinter(MessageCredentialProperties properties) {
+        return new MessageCredentialMinter(properties.keyId(), properties.keys().get(properties.keyId()),
+                properties.ttl(), 10_000, Clock.systemUTC());
+    }
+}
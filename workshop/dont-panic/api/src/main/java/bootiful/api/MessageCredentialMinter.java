@@ -0,0 +1,87 @@
+package bootiful.api;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.util.Assert;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+// mints the compact, HMAC signed credential that stands in for the user's JWT on messages
+// to the processor: <key id>.<base64url(subject \n scopes \n expiry)>.<base64url(hmac)>.
+// a credential never outlives the JWT it was minted from, and is reused until it nears expiry
+class MessageCredentialMinter {
+
+    static final String HEADER_NAME = "credential";
+
+    private record Minted(String credential, Instant expiresAt) {
+    }
+
+    private final ConcurrentHashMap<String, Minted> minted = new ConcurrentHashMap<>();
+
+    private final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+    private final String keyId;
+
+    private final SecretKeySpec key;
+
+    private final Duration ttl;
+
+    private final int maxCached;
+
+    private final Clock clock;
+
+    MessageCredentialMinter(String keyId, String base64Key, Duration ttl, int maxCached, Clock clock) {
+        Assert.hasText(keyId, "the key id must be non-empty!");
+        Assert.doesNotContain(keyId, ".", "the key id can't contain '.'");
+        this.keyId = keyId;
+        this.key = new SecretKeySpec(Base64.getDecoder().decode(Objects.requireNonNull(base64Key,
+                "there's no key '" + keyId + "'")), "HmacSHA256");
+        this.ttl = ttl;
+        this.maxCached = maxCached;
+        this.clock = clock;
+    }
+
+    String mint(Jwt jwt) {
+        var now = this.clock.instant();
+        var cached = this.minted.get(jwt.getTokenValue());
+        if (cached != null && now.plus(this.ttl.dividedBy(10)).isBefore(cached.expiresAt()))
+            return cached.credential();
+        var expiresAt = now.plus(this.ttl);
+        if (jwt.getExpiresAt() != null && jwt.getExpiresAt().isBefore(expiresAt))
+            expiresAt = jwt.getExpiresAt();
+        var credential = sign(jwt.getSubject(), scopes(jwt), expiresAt);
+        if (this.minted.size() >= this.maxCached)
+            this.minted.values().removeIf(m -> !now.isBefore(m.expiresAt()));
+        if (this.minted.size() < this.maxCached)
+            this.minted.put(jwt.getTokenValue(), new Minted(credential, expiresAt));
+        return credential;
+    }
+
+    private String sign(String subject, List<String> scopes, Instant expiresAt) {
+        Assert.isTrue(subject != null && subject.indexOf('\n') < 0, "the subject can't contain a newline");
+        var claims = subject + '\n' + String.join(" ", scopes) + '\n' + expiresAt.getEpochSecond();
+        var signed = this.keyId + '.' + this.encoder.encodeToString(claims.getBytes(StandardCharsets.UTF_8));
+        try {
+            var mac = Mac.getInstance("HmacSHA256");
+            mac.init(this.key);
+            return signed + '.' + this.encoder.encodeToString(mac.doFinal(signed.getBytes(StandardCharsets.US_ASCII)));
+        }//
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException("couldn't sign the message credential", e);
+        }
+    }
+
+    private static List<String> scopes(Jwt jwt) {
+        var scopes = jwt.getClaimAsStringList("scope");
+        return scopes == null ? List.of() : scopes;
+    }
+}
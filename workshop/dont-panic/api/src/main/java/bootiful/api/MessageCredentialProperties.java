@@ -0,0 +1,16 @@
+package bootiful.api;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+// keys are base64 encoded HMAC-SHA256 secrets shared with the processor, indexed by key id.
+// to rotate: add the new key to the processors, point key-id at it here, then retire the old one
+@ConfigurationProperties("bootiful.messages")
+record MessageCredentialProperties(
+        String keyId,
+        @DefaultValue Map<String, String> keys,
+        @DefaultValue("5m") Duration ttl) {
+}
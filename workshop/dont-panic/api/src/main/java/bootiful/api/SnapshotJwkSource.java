@@ -0,0 +1,214 @@
+package bootiful.api;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.web.client.RestOperations;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// serves the authorization server's JWK set from memory. the set is seeded from a
+// snapshot on disk (so we don't need the authorization server to boot), revalidated
+// in the background with its ETag, and refetched - once, by one thread, and no more
+// often than minRefetchInterval - when a token arrives signed with a key we don't know.
+// the snapshot's keys are trusted to verify tokens, so it's only read if no one but us could
+// have written it, and its directory is created for our user alone
+class SnapshotJwkSource implements JWKSource<SecurityContext>, InitializingBean, DisposableBean {
+
+    private static final Log log = LogFactory.getLog(SnapshotJwkSource.class);
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private record Snapshot(JWKSet jwkSet, String etag) {
+    }
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("jwks-refresh-"));
+
+    private final ReentrantLock fetchLock = new ReentrantLock();
+
+    private final RestOperations restOperations;
+
+    private final URI jwkSetUri;
+
+    private final Path snapshotFile;
+
+    private final Duration refreshInterval;
+
+    private final Duration minRefetchInterval;
+
+    private volatile Snapshot snapshot = new Snapshot(new JWKSet(), null);
+
+    private volatile long lastFetch = System.nanoTime() - Long.MAX_VALUE / 2;
+
+    SnapshotJwkSource(RestOperations restOperations, URI jwkSetUri, Path snapshotFile,
+                      Duration refreshInterval, Duration minRefetchInterval) {
+        this.restOperations = restOperations;
+        this.jwkSetUri = jwkSetUri;
+        this.snapshotFile = snapshotFile;
+        this.refreshInterval = refreshInterval;
+        this.minRefetchInterval = minRefetchInterval;
+    }
+
+    static JwtDecoder jwtDecoder(JWKSource<SecurityContext> jwkSource, String issuer, OAuth2TokenValidator<Jwt> validator) {
+        var jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        // spring security validates the claims
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        var decoder = new NimbusJwtDecoder(jwtProcessor);
+        decoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(JwtValidators.createDefaultWithIssuer(issuer), validator));
+        return decoder;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        loadSnapshot();
+        this.scheduler.scheduleWithFixedDelay(this::refresh, 0,
+                this.refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void loadSnapshot() {
+        if (!Files.exists(this.snapshotFile))
+            return;
+        try {
+            if (!isPrivate(this.snapshotFile)) {
+                log.warn("ignoring the JWK set snapshot " + this.snapshotFile +
+                         ": it or its directory can be written by someone other than " + System.getProperty("user.name"));
+                return;
+            }
+            this.snapshot = new Snapshot(JWKSet.parse(Files.readString(this.snapshotFile)), null);
+        }//
+        catch (IOException | ParseException e) {
+            log.warn("couldn't read the JWK set snapshot " + this.snapshotFile, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        this.scheduler.shutdownNow();
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        var observed = this.snapshot;
+        var keys = jwkSelector.select(observed.jwkSet());
+        if (!keys.isEmpty())
+            return keys;
+        this.fetchLock.lock();
+        try {
+            // another thread may have fetched a fresh set while we waited for the lock
+            if (this.snapshot == observed &&
+                System.nanoTime() - this.lastFetch >= this.minRefetchInterval.toNanos())
+                fetch();
+        }//
+        finally {
+            this.fetchLock.unlock();
+        }
+        return jwkSelector.select(this.snapshot.jwkSet());
+    }
+
+    private void refresh() {
+        this.fetchLock.lock();
+        try {
+            fetch();
+        }//
+        catch (KeySourceException e) {
+            log.warn("couldn't refresh the JWK set from " + this.jwkSetUri, e);
+        }//
+        finally {
+            this.fetchLock.unlock();
+        }
+    }
+
+    private void fetch() throws KeySourceException {
+        this.lastFetch = System.nanoTime();
+        var current = this.snapshot;
+        var headers = new HttpHeaders();
+        if (current.etag() != null)
+            headers.setIfNoneMatch(current.etag());
+        try {
+            var response = this.restOperations.exchange(this.jwkSetUri, HttpMethod.GET,
+                    new HttpEntity<>(headers), String.class);
+            if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED) || response.getBody() == null)
+                return;
+            var jwkSet = JWKSet.parse(response.getBody());
+            this.snapshot = new Snapshot(jwkSet, response.getHeaders().getETag());
+            persist(jwkSet);
+        }//
+        catch (Exception e) {
+            throw new KeySourceException("couldn't fetch the JWK set from " + this.jwkSetUri, e);
+        }
+    }
+
+    private void persist(JWKSet jwkSet) {
+        try {
+            var directory = this.snapshotFile.toAbsolutePath().getParent();
+            if (isPosix(directory))
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+            else
+                Files.createDirectories(directory);
+            var temp = Files.createTempFile(directory, "jwks", ".json");
+            Files.writeString(temp, jwkSet.toString(true));
+            Files.move(temp, this.snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }//
+        catch (IOException e) {
+            log.warn("couldn't write the JWK set snapshot " + this.snapshotFile, e);
+        }
+    }
+
+    static boolean isPrivate(Path file) throws IOException {
+        var user = file.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        for (var path : List.of(file, file.toAbsolutePath().getParent())) {
+            if (!Files.getOwner(path).equals(user))
+                return false;
+            if (isPosix(path)) {
+                var permissions = Files.getPosixFilePermissions(path);
+                if (permissions.contains(PosixFilePermission.GROUP_WRITE) ||
+                    permissions.contains(PosixFilePermission.OTHERS_WRITE))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+}
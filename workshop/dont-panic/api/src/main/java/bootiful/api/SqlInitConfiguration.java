@@ -0,0 +1,23 @@
+package bootiful.api;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+class SqlInitConfiguration {
+
+    // takes the place of the initializer spring boot would configure from the same spring.sql.init properties
+    @Bean
+    @ConditionalOnProperty(value = "bootiful.sql.init.skip-unchanged", havingValue = "true")
+    ChecksumSqlInitializer dataSourceScriptDatabaseInitializer(DataSource dataSource, SqlInitializationProperties properties,
+                                                               @Value("${spring.application.name:api}") String application) {
+        return new ChecksumSqlInitializer(dataSource, SqlDataSourceScriptDatabaseInitializer.getSettings(properties),
+                application);
+    }
+}
@@ -0,0 +1,52 @@
+package bootiful.api;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+// runs a hot path enough times for the JIT to compile it before the application takes traffic,
+// timing the last tenth of the iterations one by one to report the latency it settled at
+class WarmUp {
+
+    private static final Log log = LogFactory.getLog(WarmUp.class);
+
+    interface Action {
+
+        void run(int iteration) throws Exception;
+    }
+
+    record Result(String name, int iterations, Duration elapsed, Duration p50, Duration p99) {
+    }
+
+    static Result run(String name, int iterations, Action action) throws Exception {
+        Assert.isTrue(iterations > 0, "there must be at least one iteration");
+        var measured = new long[Math.max(1, iterations / 10)];
+        var unmeasured = iterations - measured.length;
+        var start = System.nanoTime();
+        for (var i = 0; i < unmeasured; i++)
+            action.run(i);
+        for (var i = 0; i < measured.length; i++) {
+            var before = System.nanoTime();
+            action.run(unmeasured + i);
+            measured[i] = System.nanoTime() - before;
+        }
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+        Arrays.sort(measured);
+        var result = new Result(name, iterations, elapsed, Duration.ofNanos(percentile(measured, 0.5)),
+                Duration.ofNanos(percentile(measured, 0.99)));
+        log.info("warmed up " + name + " with " + iterations + " iterations in " + elapsed.toMillis() +
+                 "ms, settling at p50 " + micros(result.p50()) + "us and p99 " + micros(result.p99()) + "us");
+        return result;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.max(0, Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1))];
+    }
+
+    private static long micros(Duration duration) {
+        return duration.toNanos() / 1_000;
+    }
+}
@@ -0,0 +1,124 @@
+package bootiful.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.NativeDetector;
+import org.springframework.http.MediaType;
+import org.springframework.integration.core.GenericTransformer;
+import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.integration.dsl.MessageChannels;
+import org.springframework.integration.dsl.context.IntegrationFlowContext;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+// on the JVM the first few thousand /customers and /email requests run interpreted, so the p99
+// spikes after every deploy. with bootiful.warm-up.enabled this renders customers through the
+// same ObjectMapper as /customers, and sends email requests through a copy of the email requests
+// flow whose outbound adapter does nothing, before the application runners return and spring boot
+// reports the application ready. it's skipped in a native image, which is compiled already
+@Configuration
+@ConditionalOnProperty(value = "bootiful.warm-up.enabled", havingValue = "true")
+class WarmUpConfiguration {
+
+    private static final Log log = LogFactory.getLog(WarmUpConfiguration.class);
+
+    @Bean
+    ApplicationRunner warmUpRunner(ObjectMapper objectMapper, CustomerJsonWriter customerJsonWriter,
+                                   IntegrationFlowContext integrationFlowContext,
+                                   MessageCredentialProperties messageCredentialProperties,
+                                   @Value("${bootiful.emails.wire-format:json}") String wireFormat,
+                                   @Value("${bootiful.warm-up.iterations:10000}") int iterations) {
+        return args -> {
+            if (NativeDetector.inNativeImage())
+                return;
+            try {
+                WarmUp.run("customer serialization", iterations, i -> objectMapper.writeValueAsBytes(customers(i)));
+                warmUpEmailRequests(integrationFlowContext, customerJsonWriter, warmUpMinter(messageCredentialProperties),
+                        wireFormat, iterations);
+            }//
+            catch (Exception e) {
+                // a slow first few requests are better than not starting
+                log.warn("couldn't warm up the api", e);
+            }
+        };
+    }
+
+    private static void warmUpEmailRequests(IntegrationFlowContext integrationFlowContext,
+                                            CustomerJsonWriter customerJsonWriter, MessageCredentialMinter minter,
+                                            String wireFormat, int iterations) throws Exception {
+        var binary = CustomerWireFormat.isBinary(wireFormat);
+        GenericTransformer<Customer, byte[]> encoder = binary ? CustomerWireFormat::encode : customerJsonWriter::toBytes;
+        var registration = integrationFlowContext
+                .registration(IntegrationFlow
+                        .from(MessageChannels.direct())
+                        .transform(Customer.class, encoder)
+                        .enrichHeaders(h -> h.header(MessageHeaders.CONTENT_TYPE,
+                                binary ? CustomerWireFormat.CONTENT_TYPE : MediaType.APPLICATION_JSON_VALUE))
+                        .handle(message -> {
+                        })
+                        .get())
+                .register();
+        try {
+            var requests = registration.getInputChannel();
+            WarmUp.run("email requests", iterations, i -> {
+                var builder = MessageBuilder.withPayload(customer(i));
+                var jwt = jwt(i);
+                if (minter != null)
+                    builder.setHeader(MessageCredentialMinter.HEADER_NAME, minter.mint(jwt));
+                else
+                    builder.setHeader("jwt", jwt.getTokenValue());
+                requests.send(builder.build());
+            });
+        }//
+        finally {
+            registration.destroy();
+        }
+    }
+
+    // the warm-up mints through a minter of its own, with a throwaway key, so that none of its
+    // synthetic credentials end up cached in the minter that serves real requests
+    private static MessageCredentialMinter warmUpMinter(MessageCredentialProperties properties) {
+        if (properties.keyId() == null)
+            return null;
+        var key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return new MessageCredentialMinter(properties.keyId(), Base64.getEncoder().encodeToString(key),
+                properties.ttl(), 64, Clock.systemUTC());
+    }
+
+    // a page of customers, some already in the CustomerJsonWriter cache and some not
+    private static List<Customer> customers(int iteration) {
+        var customers = new ArrayList<Customer>(8);
+        for (var i = 0; i < 8; i++)
+            customers.add(customer(iteration * 8 + i));
+        return customers;
+    }
+
+    private static Customer customer(int i) {
+        var id = i % 4096;
+        return new Customer(id, "Customer " + id, "customer" + id + "@email.com");
+    }
+
+    private static Jwt jwt(int i) {
+        return Jwt.withTokenValue("warm-up-" + (i % 64))
+                .header("alg", "RS256")
+                .subject("warm-up")
+                .claim("scope", List.of("user.read"))
+                .expiresAt(Instant.now().plusSeconds(60))
+                .build();
+    }
+}
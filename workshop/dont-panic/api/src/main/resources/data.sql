@@ -1,9 +1,11 @@
-delete from customer;
-insert into customer (name,email) values ('Violetta Giorgieva', 'vg@email.com');
-insert into customer (name,email) values ('Madhura Bhave' , 'mb@email.com');
-insert into customer (name,email) values ('David Syer'  ,'ds@email.com');
-insert into customer (name,email) values ('Josh Long' , 'jl@email.com');
-insert into customer (name,email) values ('Stéphane Nicoll' , 'sn@email.com');
-insert into customer (name,email) values ('Jürgen Hoeller' , 'jh@email.com');
-insert into customer (name,email) values ('Audrey Neveu' , 'an@email.com');
-insert into customer (name,email) values ('Yuxin Bae' , 'yb@email.com');
\ No newline at end of file
+insert into customer (name, email)
+select seed.name, seed.email
+from (values ('Violetta Giorgieva', 'vg@email.com'),
+             ('Madhura Bhave', 'mb@email.com'),
+             ('David Syer', 'ds@email.com'),
+             ('Josh Long', 'jl@email.com'),
+             ('Stéphane Nicoll', 'sn@email.com'),
+             ('Jürgen Hoeller', 'jh@email.com'),
+             ('Audrey Neveu', 'an@email.com'),
+             ('Yuxin Bae', 'yb@email.com')) as seed (name, email)
+where not exists (select 1 from customer c where c.email = seed.email);
@@ -0,0 +1,39 @@
+package bootiful.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class CustomerJsonWriterTests {
+
+	private final CustomerJsonWriter writer = new CustomerJsonWriter(2);
+
+	@Test
+	void rendersTheSameJsonAsJackson() throws Exception {
+		var customer = new Customer(1, "J\u00fcrgen \"Juergen\" Hoeller", "jh@email.com");
+		var expected = new ObjectMapper().writeValueAsString(customer);
+		Assertions.assertEquals(expected, new String(this.writer.toBytes(customer), StandardCharsets.UTF_8));
+		Assertions.assertEquals("{\"id\":null,\"name\":\"a\",\"email\":\"b\"}",
+				new String(this.writer.toBytes(new Customer(null, "a", "b")), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void cachesRenderedJsonPerCustomerVersion() {
+		var customer = new Customer(1, "Josh Long", "jl@email.com");
+		Assertions.assertSame(this.writer.json(customer), this.writer.json(new Customer(1, "Josh Long", "jl@email.com")));
+		Assertions.assertNotSame(this.writer.json(customer), this.writer.json(new Customer(1, "Josh Long", "josh@email.com")));
+	}
+
+	@Test
+	void serializesCollectionsThroughTheModule() throws Exception {
+		var objectMapper = new ObjectMapper()
+				.registerModule(new SimpleModule().addSerializer(new CustomerJsonSerializer(this.writer)));
+		var customers = List.of(new Customer(1, "a", "b"), new Customer(2, "c", "d"));
+		Assertions.assertEquals(new ObjectMapper().writeValueAsString(customers), objectMapper.writeValueAsString(customers));
+	}
+
+}
@@ -0,0 +1,71 @@
+package bootiful.api;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+// the processor's copy of RevokedTokens is tested on its own; this checks the api's copy
+// the way the api uses it, as a validator on the decoder that authenticates every request
+class RevokedTokensTests {
+
+	private static final String ISSUER = "http://localhost:9090";
+
+	private final RevokedTokens revokedTokens = new RevokedTokens(Duration.ofMinutes(1), Clock.systemUTC());
+
+	private final RSAKey key;
+
+	RevokedTokensTests() throws JOSEException {
+		this.key = new RSAKeyGenerator(2048).keyID("k1").generate();
+	}
+
+	private String token(String jti, Instant expiresAt) throws JOSEException {
+		var claims = new JWTClaimsSet.Builder()
+				.issuer(ISSUER)
+				.subject("jlong")
+				.jwtID(jti)
+				.issueTime(new Date())
+				.expirationTime(Date.from(expiresAt))
+				.build();
+		var jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(this.key.getKeyID()).build(), claims);
+		jwt.sign(new RSASSASigner(this.key));
+		return jwt.serialize();
+	}
+
+	@Test
+	void theDecoderRejectsRevokedTokens() throws Exception {
+		var decoder = SnapshotJwkSource.jwtDecoder(new ImmutableJWKSet<>(new JWKSet(this.key.toPublicJWK())),
+				ISSUER, this.revokedTokens);
+		var expiresAt = Instant.now().plus(Duration.ofMinutes(5));
+		var revoked = token("a", expiresAt);
+		var other = token("b", expiresAt);
+		Assertions.assertEquals("jlong", decoder.decode(revoked).getSubject());
+
+		this.revokedTokens.revoke("a " + expiresAt.getEpochSecond());
+		var e = Assertions.assertThrows(JwtValidationException.class, () -> decoder.decode(revoked));
+		Assertions.assertTrue(e.getErrors().stream().anyMatch(error -> error.getDescription().contains("revoked")));
+		Assertions.assertEquals("jlong", decoder.decode(other).getSubject());
+	}
+
+	@Test
+	void ignoresExpiredAndMalformedRevocations() {
+		this.revokedTokens.revoke("a " + Instant.now().minusSeconds(1).getEpochSecond());
+		this.revokedTokens.revoke("b");
+		this.revokedTokens.revoke("c soon");
+		Assertions.assertEquals(0, this.revokedTokens.size());
+	}
+}
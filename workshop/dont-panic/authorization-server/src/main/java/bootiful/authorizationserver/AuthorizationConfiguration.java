@@ -1,24 +1,75 @@
 package bootiful.authorizationserver;
 
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.ExchangeBuilder;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.security.crypto.encrypt.Encryptors;
 import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationConsentService;
 import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationService;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.util.Assert;
+
+import java.time.Clock;
+import java.time.Duration;
 
 @Configuration
 class AuthorizationConfiguration {
 
     @Bean
-    JdbcOAuth2AuthorizationConsentService jdbcOAuth2AuthorizationConsentService(
-            JdbcOperations jdbcOperations, RegisteredClientRepository repository) {
-        return new JdbcOAuth2AuthorizationConsentService(jdbcOperations, repository);
+    CachingOAuth2AuthorizationConsentService jdbcOAuth2AuthorizationConsentService(
+            JdbcOperations jdbcOperations, RegisteredClientRepository repository,
+            @Value("${bootiful.consents.cache.ttl:5m}") Duration ttl,
+            @Value("${bootiful.consents.cache.negative-ttl:30s}") Duration negativeTtl,
+            @Value("${bootiful.consents.cache.max-size:10000}") int maxSize) {
+        return new CachingOAuth2AuthorizationConsentService(
+                new JdbcOAuth2AuthorizationConsentService(jdbcOperations, repository),
+                ttl, negativeTtl, maxSize, Clock.systemUTC());
+    }
+
+    // picked up by every filter chain's request cache, so it's used on the way to the login page.
+    // whoever knows the password can mint a saved request and so pick the post-login redirect, so
+    // none ships with the application and the cookie can't be turned on without one
+    @Bean
+    @ConditionalOnProperty(value = "bootiful.authorization-requests.storage", havingValue = "cookie")
+    EncryptedCookieRequestCache encryptedCookieRequestCache(
+            @Value("${bootiful.authorization-requests.password:}") String password,
+            @Value("${bootiful.authorization-requests.salt:}") String salt,
+            @Value("${bootiful.authorization-requests.max-age:10m}") Duration maxAge,
+            @Value("${bootiful.authorization-requests.max-cookie-size:3072}") int maxCookieSize) {
+        Assert.hasText(password, "bootiful.authorization-requests.storage=cookie needs bootiful.authorization-requests.password");
+        Assert.hasText(salt, "bootiful.authorization-requests.storage=cookie needs bootiful.authorization-requests.salt");
+        return new EncryptedCookieRequestCache(Encryptors.delux(password, salt), maxAge, maxCookieSize, Clock.systemUTC());
+    }
+
+    @Bean
+    FanoutExchange revocationsExchange(@Value("${bootiful.revocations.exchange:revocations}") String exchange) {
+        return ExchangeBuilder.fanoutExchange(exchange).build();
     }
 
+    // the publisher sits under the rotation service, so the revocation of a reused refresh token's
+    // whole authorization, which the rotation service saves itself, is published too
     @Bean
-    JdbcOAuth2AuthorizationService jdbcOAuth2AuthorizationService(
-            JdbcOperations jdbcOperations, RegisteredClientRepository rcr) {
-        return new JdbcOAuth2AuthorizationService(jdbcOperations, rcr);
+    RefreshTokenRotationAuthorizationService jdbcOAuth2AuthorizationService(
+            JdbcOperations jdbcOperations, RegisteredClientRepository rcr,
+            RevokedRefreshTokenRepository revokedRefreshTokenRepository,
+            AmqpTemplate amqpTemplate, FanoutExchange revocationsExchange,
+            @Value("${bootiful.authorizations.write-behind.enabled:false}") boolean writeBehind,
+            @Value("${bootiful.authorizations.write-behind.capacity:10000}") int capacity,
+            @Value("${bootiful.authorizations.write-behind.batch-size:100}") int batchSize,
+            @Value("${bootiful.authorizations.write-behind.flush-interval:100ms}") Duration flushInterval,
+            @Value("${bootiful.refresh-tokens.revoked.expected-insertions:1000000}") long expectedRevocations,
+            @Value("${bootiful.refresh-tokens.revoked.false-positive-rate:0.001}") double falsePositiveRate) {
+        var authorizationService = writeBehind ?
+                new WriteBehindOAuth2AuthorizationService(jdbcOperations, rcr, capacity, batchSize, flushInterval) :
+                new JdbcOAuth2AuthorizationService(jdbcOperations, rcr);
+        var publishing = new RevocationPublishingAuthorizationService(authorizationService, amqpTemplate,
+                revocationsExchange.getName(), Clock.systemUTC());
+        return new RefreshTokenRotationAuthorizationService(publishing, revokedRefreshTokenRepository,
+                new BloomFilter(expectedRevocations, falsePositiveRate));
     }
 }
@@ -0,0 +1,56 @@
+package bootiful.authorizationserver;
+
+import org.springframework.util.Assert;
+
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// a set that can only say "maybe" or "definitely not", in a fixed number of bits. it's fed
+// sha-256 hex digests, which are already uniformly distributed, so two 64 bit words of the digest
+// stand in for the two hash functions that every other probe is derived from
+class BloomFilter {
+
+    private final AtomicLongArray bits;
+
+    private final long size;
+
+    private final int hashes;
+
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        Assert.isTrue(expectedInsertions > 0, "the expected insertions must be positive");
+        Assert.isTrue(falsePositiveRate > 0 && falsePositiveRate < 1, "the false positive rate must be between 0 and 1");
+        var bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        var words = (int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.size = (long) words * 64;
+        this.hashes = Math.max(1, (int) Math.round((double) this.size / expectedInsertions * Math.log(2)));
+    }
+
+    void put(String sha256Hex) {
+        var h1 = HexFormat.fromHexDigitsToLong(sha256Hex, 0, 16);
+        var h2 = HexFormat.fromHexDigitsToLong(sha256Hex, 16, 32);
+        for (var i = 0; i < this.hashes; i++) {
+            var bit = Math.floorMod(h1 + i * h2, this.size);
+            var word = (int) (bit >>> 6);
+            var mask = 1L << (bit & 63);
+            long current;
+            do {
+                current = this.bits.get(word);
+                if ((current & mask) != 0)
+                    break;
+            }
+            while (!this.bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    boolean mightContain(String sha256Hex) {
+        var h1 = HexFormat.fromHexDigitsToLong(sha256Hex, 0, 16);
+        var h2 = HexFormat.fromHexDigitsToLong(sha256Hex, 16, 32);
+        for (var i = 0; i < this.hashes; i++) {
+            var bit = Math.floorMod(h1 + i * h2, this.size);
+            if ((this.bits.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0)
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,101 @@
+package bootiful.authorizationserver;
+
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationConsent;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationConsentService;
+import org.springframework.util.Assert;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// the authorize endpoint asks for the consent on every request, and consents almost never change,
+// so remember what the delegate said, including that there wasn't one. saving or removing a
+// consent here invalidates it straight away; a change made through another instance shows up
+// here once the entry expires. a lookup that raced with a change isn't cached, so a stale read
+// can't be put back after the invalidation: the count of changes is checked again once the
+// entry is in, and the entry taken back out if a change slipped in between
+class CachingOAuth2AuthorizationConsentService implements OAuth2AuthorizationConsentService {
+
+    private record Key(String registeredClientId, String principalName) {
+    }
+
+    private record Entry(OAuth2AuthorizationConsent consent, Instant expires) {
+    }
+
+    private final ConcurrentHashMap<Key, Entry> consents = new ConcurrentHashMap<>();
+
+    private final AtomicLong changes = new AtomicLong();
+
+    private final OAuth2AuthorizationConsentService delegate;
+
+    private final Duration ttl;
+
+    private final Duration negativeTtl;
+
+    private final int maxSize;
+
+    private final Clock clock;
+
+    CachingOAuth2AuthorizationConsentService(OAuth2AuthorizationConsentService delegate, Duration ttl,
+                                             Duration negativeTtl, int maxSize, Clock clock) {
+        Assert.isTrue(maxSize > 0, "the maximum size must be positive");
+        this.delegate = delegate;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.maxSize = maxSize;
+        this.clock = clock;
+    }
+
+    @Override
+    public void save(OAuth2AuthorizationConsent authorizationConsent) {
+        this.delegate.save(authorizationConsent);
+        invalidate(authorizationConsent);
+    }
+
+    @Override
+    public void remove(OAuth2AuthorizationConsent authorizationConsent) {
+        this.delegate.remove(authorizationConsent);
+        invalidate(authorizationConsent);
+    }
+
+    @Override
+    public OAuth2AuthorizationConsent findById(String registeredClientId, String principalName) {
+        var key = new Key(registeredClientId, principalName);
+        var now = this.clock.instant();
+        var cached = this.consents.get(key);
+        if (cached != null && now.isBefore(cached.expires()))
+            return cached.consent();
+        var changes = this.changes.get();
+        var consent = this.delegate.findById(registeredClientId, principalName);
+        if (this.changes.get() == changes) {
+            makeRoom(now);
+            var entry = new Entry(consent, now.plus(consent == null ? this.negativeTtl : this.ttl));
+            this.consents.put(key, entry);
+            if (this.changes.get() != changes)
+                this.consents.remove(key, entry);
+        }
+        return consent;
+    }
+
+    int size() {
+        return this.consents.size();
+    }
+
+    private void invalidate(OAuth2AuthorizationConsent consent) {
+        this.changes.incrementAndGet();
+        this.consents.remove(new Key(consent.getRegisteredClientId(), consent.getPrincipalName()));
+    }
+
+    private void makeRoom(Instant now) {
+        if (this.consents.size() < this.maxSize)
+            return;
+        this.consents.values().removeIf(entry -> !now.isBefore(entry.expires()));
+        var iterator = this.consents.keySet().iterator();
+        while (this.consents.size() >= this.maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package bootiful.authorizationserver;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// spring.sql.init.mode=always runs every schema and data script on every start. this records the
+// SHA-256 of each script it runs in sql_init_scripts and, from then on, only runs the ones whose
+// contents have changed, so an ordinary restart costs two statements. the scripts are still written
+// to be safe to run again (create ... if not exists, insert where absent), because a changed one is
+// run in full. every application sharing the database records its scripts in the same table, so a
+// script is recorded under the application's name and its location. delete a script's row to have
+// it run again
+class ChecksumSqlInitializer extends SqlDataSourceScriptDatabaseInitializer {
+
+    private static final Log log = LogFactory.getLog(ChecksumSqlInitializer.class);
+
+    private static final String CREATE_TABLE = """
+            create table if not exists sql_init_scripts
+            (
+                script     varchar(255) not null primary key,
+                checksum   char(64)     not null,
+                applied_at timestamp    not null
+            )
+            """;
+
+    private static final String UPSERT_SCRIPT = """
+            insert into sql_init_scripts (script, checksum, applied_at) values (?, ?, current_timestamp)
+            on conflict (script) do update set checksum = excluded.checksum, applied_at = excluded.applied_at
+            """;
+
+    private final JdbcTemplate jdbc;
+
+    private final String application;
+
+    private Map<String, String> applied;
+
+    ChecksumSqlInitializer(DataSource dataSource, DatabaseInitializationSettings settings, String application) {
+        super(dataSource, settings);
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.application = application;
+    }
+
+    @Override
+    protected void runScripts(Scripts scripts) {
+        var checksums = new LinkedHashMap<String, String>();
+        var changed = changed(this.application, scripts, applied(), checksums);
+        if (changed.isEmpty()) {
+            log.debug("none of the SQL scripts have changed");
+            return;
+        }
+        super.runScripts(new Scripts(changed)
+                .continueOnError(scripts.isContinueOnError())
+                .separator(scripts.getSeparator())
+                .encoding(scripts.getEncoding()));
+        this.jdbc.batchUpdate(UPSERT_SCRIPT, checksums.entrySet().stream()
+                .map(e -> new Object[]{e.getKey(), e.getValue()})
+                .toList());
+        this.applied.putAll(checksums);
+        log.info("ran the changed SQL scripts " + checksums.keySet());
+    }
+
+    // the scripts whose checksum isn't the one recorded, collecting their new checksums
+    static List<Resource> changed(String application, Iterable<Resource> scripts, Map<String, String> applied,
+                                  Map<String, String> checksums) {
+        var changed = new ArrayList<Resource>();
+        for (var script : scripts) {
+            var key = application + ":" + location(script);
+            var checksum = checksum(script);
+            if (!checksum.equals(applied.get(key))) {
+                changed.add(script);
+                checksums.put(key, checksum);
+            }
+        }
+        return changed;
+    }
+
+    // where the script lives: its path inside the jar, so it doesn't change with where the jar is, or its URL
+    static String location(Resource script) {
+        try {
+            var url = script.getURL().toString();
+            var inJar = url.lastIndexOf("!/");
+            return inJar < 0 ? url : url.substring(inJar + 2);
+        }//
+        catch (IOException e) {
+            return script.getDescription();
+        }
+    }
+
+    static String checksum(Resource script) {
+        try (var in = script.getInputStream()) {
+            var digest = MessageDigest.getInstance("SHA-256").digest(in.readAllBytes());
+            return HexFormat.of().formatHex(digest);
+        }//
+        catch (IOException e) {
+            throw new UncheckedIOException("couldn't read the SQL script " + script, e);
+        }//
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // read once, the schema and the data scripts are run separately
+    private Map<String, String> applied() {
+        if (this.applied == null) {
+            this.jdbc.execute(CREATE_TABLE);
+            this.applied = new HashMap<>();
+            this.jdbc.query("select script, checksum from sql_init_scripts",
+                    rs -> { this.applied.put(rs.getString("script"), rs.getString("checksum")); });
+        }
+        return this.applied;
+    }
+}
@@ -1,6 +1,6 @@
 package bootiful.authorizationserver;
 
-import org.springframework.boot.ApplicationRunner;
+import bootiful.authorizationserver.startup.StartupTask;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -10,6 +10,7 @@ import org.springframework.security.oauth2.core.oidc.OidcScopes;
 import org.springframework.security.oauth2.server.authorization.client.JdbcRegisteredClientRepository;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
 
 import java.util.Set;
 import java.util.UUID;
@@ -25,8 +26,8 @@ class ClientsConfiguration {
 
     //<2>
     @Bean
-    ApplicationRunner clientsRunner(RegisteredClientRepository repository) {
-        return args -> {
+    StartupTask clientsRunner(RegisteredClientRepository repository) {
+        return StartupTask.of("clients", () -> {
             var clientId = "crm";
             if (repository.findByClientId(clientId) == null) {
                 repository.save(
@@ -41,9 +42,10 @@ class ClientsConfiguration {
                                         AuthorizationGrantType.REFRESH_TOKEN)))
                                 .redirectUri("http://127.0.0.1:8082/login/oauth2/code/spring")
                                 .scopes(scopes -> scopes.addAll(Set.of("user.read", "user.write", OidcScopes.OPENID)))
+                                .tokenSettings(TokenSettings.builder().reuseRefreshTokens(false).build())
                                 .build()
                 );
             }
-        };
+        });
     }
 }
@@ -0,0 +1,153 @@
+package bootiful.authorizationserver;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.encrypt.TextEncryptor;
+import org.springframework.security.web.savedrequest.HttpSessionRequestCache;
+import org.springframework.security.web.savedrequest.RequestCache;
+import org.springframework.security.web.savedrequest.SavedRequest;
+import org.springframework.security.web.savedrequest.SimpleSavedRequest;
+import org.springframework.security.web.util.UrlUtils;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.MediaTypeRequestMatcher;
+import org.springframework.security.web.util.matcher.NegatedRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestHeaderRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.WebUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+
+// remembers the request that sent the user to the login page (for us, the /oauth2/authorize
+// request) in a cookie rather than in the session, so the authorize, login and redirect round trip
+// doesn't write a DefaultSavedRequest to spring_session_attributes and back out again, and any
+// instance can finish it. the url and an expiry are sealed with an authenticated cipher (aes/gcm)
+// so the cookie can't be read or altered; a request too big for the cookie is kept in the session
+class EncryptedCookieRequestCache implements RequestCache {
+
+    static final String COOKIE_NAME = "AUTHORIZATION_REQUEST";
+
+    private static final String MATCHING_REQUEST_PARAMETER_NAME = "continue";
+
+    private static final Log log = LogFactory.getLog(EncryptedCookieRequestCache.class);
+
+    private final HttpSessionRequestCache sessions = new HttpSessionRequestCache();
+
+    private final RequestMatcher requestMatcher = savedRequestMatcher();
+
+    private final TextEncryptor encryptor;
+
+    private final Duration maxAge;
+
+    private final int maxCookieSize;
+
+    private final Clock clock;
+
+    EncryptedCookieRequestCache(TextEncryptor encryptor, Duration maxAge, int maxCookieSize, Clock clock) {
+        this.encryptor = encryptor;
+        this.maxAge = maxAge;
+        this.maxCookieSize = maxCookieSize;
+        this.clock = clock;
+        this.sessions.setRequestMatcher(this.requestMatcher);
+    }
+
+    // the requests spring security would save by default: page views, not api calls or assets
+    private static RequestMatcher savedRequestMatcher() {
+        var json = new MediaTypeRequestMatcher(MediaType.APPLICATION_JSON);
+        json.setIgnoredMediaTypes(Collections.singleton(MediaType.ALL));
+        return new AndRequestMatcher(
+                new AntPathRequestMatcher("/**", "GET"),
+                new NegatedRequestMatcher(new AntPathRequestMatcher("/**/favicon.*")),
+                new NegatedRequestMatcher(json),
+                new NegatedRequestMatcher(new RequestHeaderRequestMatcher("X-Requested-With", "XMLHttpRequest")));
+    }
+
+    @Override
+    public void saveRequest(HttpServletRequest request, HttpServletResponse response) {
+        if (!this.requestMatcher.matches(request))
+            return;
+        var url = redirectUrl(request);
+        var expires = this.clock.instant().plus(this.maxAge);
+        var value = this.encryptor.encrypt(expires.getEpochSecond() + "\n" + url);
+        if (value.length() > this.maxCookieSize) {
+            // a cookie from an earlier request would otherwise win over the one kept in the session
+            if (WebUtils.getCookie(request, COOKIE_NAME) != null)
+                response.addCookie(cookie(request, "", 0));
+            this.sessions.saveRequest(request, response);
+            return;
+        }
+        response.addCookie(cookie(request, value, (int) this.maxAge.toSeconds()));
+    }
+
+    @Override
+    public SavedRequest getRequest(HttpServletRequest request, HttpServletResponse response) {
+        var cookie = WebUtils.getCookie(request, COOKIE_NAME);
+        if (cookie == null)
+            return this.sessions.getRequest(request, response);
+        var url = decrypt(cookie.getValue());
+        if (url == null) {
+            response.addCookie(cookie(request, "", 0));
+            return null;
+        }
+        return new SimpleSavedRequest(url);
+    }
+
+    @Override
+    public HttpServletRequest getMatchingRequest(HttpServletRequest request, HttpServletResponse response) {
+        if (request.getParameter(MATCHING_REQUEST_PARAMETER_NAME) == null)
+            return null;
+        var cookie = WebUtils.getCookie(request, COOKIE_NAME);
+        if (cookie == null)
+            return this.sessions.getMatchingRequest(request, response);
+        var url = decrypt(cookie.getValue());
+        if (url == null || !url.equals(UrlUtils.buildFullRequestUrl(request)))
+            return null;
+        // only GETs are kept here, so there's nothing to restore beyond the url itself
+        response.addCookie(cookie(request, "", 0));
+        return request;
+    }
+
+    @Override
+    public void removeRequest(HttpServletRequest request, HttpServletResponse response) {
+        if (WebUtils.getCookie(request, COOKIE_NAME) != null)
+            response.addCookie(cookie(request, "", 0));
+        this.sessions.removeRequest(request, response);
+    }
+
+    private String decrypt(String value) {
+        try {
+            var plain = this.encryptor.decrypt(value);
+            var newline = plain.indexOf('\n');
+            var expires = Instant.ofEpochSecond(Long.parseLong(plain.substring(0, newline)));
+            return this.clock.instant().isBefore(expires) ? plain.substring(newline + 1) : null;
+        }//
+        catch (RuntimeException e) {
+            log.debug("ignoring a saved request cookie that couldn't be decrypted", e);
+            return null;
+        }
+    }
+
+    // the url the user comes back to after login, marked so that only that request looks for it
+    private static String redirectUrl(HttpServletRequest request) {
+        var url = UrlUtils.buildFullRequestUrl(request);
+        return url + (StringUtils.hasText(request.getQueryString()) ? "&" : "?") + MATCHING_REQUEST_PARAMETER_NAME;
+    }
+
+    private static Cookie cookie(HttpServletRequest request, String value, int maxAge) {
+        var cookie = new Cookie(COOKIE_NAME, value);
+        cookie.setPath(StringUtils.hasLength(request.getContextPath()) ? request.getContextPath() : "/");
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        cookie.setMaxAge(maxAge);
+        cookie.setAttribute("SameSite", "Lax");
+        return cookie;
+    }
+}
@@ -0,0 +1,113 @@
+package bootiful.authorizationserver;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// an expired refresh token can't be used again anyway, so its row is only kept until the next
+// cleanup, which deletes them a batch at a time (like the expired session cleanup) on its own thread
+@Component
+class JdbcRevokedRefreshTokenRepository implements RevokedRefreshTokenRepository, InitializingBean, DisposableBean {
+
+    private static final Log log = LogFactory.getLog(JdbcRevokedRefreshTokenRepository.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String DELETE_EXPIRED = """
+            delete from oauth2_revoked_refresh_tokens
+            where token_hash in (
+                select token_hash from oauth2_revoked_refresh_tokens
+                where expires_at < ?
+                limit ?
+                for update skip locked
+            )
+            """;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("revoked-refresh-token-cleanup-"));
+
+    private final JdbcTemplate jdbc;
+
+    private final Duration cleanupInterval;
+
+    JdbcRevokedRefreshTokenRepository(JdbcTemplate jdbc,
+                                      @Value("${bootiful.refresh-tokens.revoked.cleanup-interval:1h}") Duration cleanupInterval) {
+        this.jdbc = jdbc;
+        this.cleanupInterval = cleanupInterval;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                deleteExpired();
+            }//
+            catch (Throwable throwable) {
+                log.warn("couldn't delete the expired revoked refresh tokens", throwable);
+            }
+        }, 0, this.cleanupInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        this.scheduler.shutdownNow();
+    }
+
+    @Override
+    public Optional<RevokedRefreshToken> findByTokenHash(String tokenHash) {
+        return this.jdbc.query("select * from oauth2_revoked_refresh_tokens where token_hash = ?",
+                        (rs, rowNum) -> new RevokedRefreshToken(rs.getString("token_hash"),
+                                rs.getString("authorization_id"), rs.getBoolean("rotated"),
+                                rs.getTimestamp("expires_at").toInstant()),
+                        tokenHash)
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    public void save(RevokedRefreshToken token) {
+        var sql = """
+                insert into oauth2_revoked_refresh_tokens (token_hash, authorization_id, rotated, expires_at)
+                values (?, ?, ?, ?)
+                on conflict (token_hash) do nothing
+                """;
+        this.jdbc.update(sql, token.tokenHash(), token.authorizationId(), token.rotated(),
+                Timestamp.from(token.expiresAt()));
+    }
+
+    @Override
+    public void forEachUnexpired(Consumer<String> tokenHashes) {
+        this.jdbc.query("select token_hash from oauth2_revoked_refresh_tokens where expires_at >= ?",
+                rs -> {
+                    tokenHashes.accept(rs.getString("token_hash"));
+                }, Timestamp.from(Instant.now()));
+    }
+
+    int deleteExpired() {
+        var now = Timestamp.from(Instant.now());
+        var total = 0;
+        int deleted;
+        do {
+            deleted = this.jdbc.update(DELETE_EXPIRED, now, BATCH_SIZE);
+            total += deleted;
+        }
+        while (deleted == BATCH_SIZE && !Thread.currentThread().isInterrupted());
+        if (total > 0 && log.isDebugEnabled())
+            log.debug("deleted " + total + " expired revoked refresh tokens");
+        return total;
+    }
+}
@@ -0,0 +1,137 @@
+package bootiful.authorizationserver;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+
+// with rotation each refresh hands out a new refresh token, and a rotated-out one turning up again
+// means it's been copied, so the whole authorization (every token descended from the same login)
+// is revoked. an authorization found by its refresh token carries that token in an attribute through
+// the refresh token grant to the save, so a save that replaces it is a rotation, and no save needs to
+// read the stored authorization to find out. rotated and revoked tokens are remembered by hash in oauth2_revoked_refresh_tokens and in a bloom filter
+// rebuilt from it at startup, so a refresh token that's never been rotated or revoked (nearly all
+// of them) is waved through without asking the database about reuse
+class RefreshTokenRotationAuthorizationService implements OAuth2AuthorizationService, InitializingBean, DisposableBean {
+
+    private static final Log log = LogFactory.getLog(RefreshTokenRotationAuthorizationService.class);
+
+    private static final String PREVIOUS_REFRESH_TOKEN_ATTRIBUTE = "bootiful.previous-refresh-token";
+
+    private static final Instant NEVER = Instant.parse("9999-12-31T00:00:00Z");
+
+    private final OAuth2AuthorizationService delegate;
+
+    private final RevokedRefreshTokenRepository repository;
+
+    private final BloomFilter revoked;
+
+    RefreshTokenRotationAuthorizationService(OAuth2AuthorizationService delegate, RevokedRefreshTokenRepository repository,
+                                             BloomFilter revoked) {
+        this.delegate = delegate;
+        this.repository = repository;
+        this.revoked = revoked;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (this.delegate instanceof InitializingBean initializingBean)
+            initializingBean.afterPropertiesSet();
+        this.repository.forEachUnexpired(this.revoked::put);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (this.delegate instanceof DisposableBean disposableBean)
+            disposableBean.destroy();
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        OAuth2RefreshToken previous = authorization.getAttribute(PREVIOUS_REFRESH_TOKEN_ATTRIBUTE);
+        if (previous != null)
+            authorization = OAuth2Authorization.from(authorization)
+                    .attributes(attributes -> attributes.remove(PREVIOUS_REFRESH_TOKEN_ATTRIBUTE))
+                    .build();
+        var current = authorization.getRefreshToken();
+        if (previous != null && (current == null || !current.getToken().getTokenValue().equals(previous.getTokenValue())))
+            revoke(authorization.getId(), previous, true);
+        if (current != null && current.isInvalidated()) {
+            var hash = hash(current.getToken().getTokenValue());
+            if (!this.revoked.mightContain(hash))
+                revoke(authorization.getId(), current.getToken(), false);
+        }
+        this.delegate.save(authorization);
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        this.delegate.remove(authorization);
+    }
+
+    @Override
+    public OAuth2Authorization findById(String id) {
+        return this.delegate.findById(id);
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        if (!OAuth2TokenType.REFRESH_TOKEN.equals(tokenType))
+            return this.delegate.findByToken(token, tokenType);
+        var hash = hash(token);
+        if (this.revoked.mightContain(hash)) {
+            var revokedToken = this.repository.findByTokenHash(hash);
+            if (revokedToken.isPresent() && revokedToken.get().rotated()) {
+                revokeFamily(revokedToken.get().authorizationId());
+                return null;
+            }
+        }
+        var authorization = this.delegate.findByToken(token, tokenType);
+        if (authorization == null || authorization.getRefreshToken() == null)
+            return authorization;
+        return OAuth2Authorization.from(authorization)
+                .attribute(PREVIOUS_REFRESH_TOKEN_ATTRIBUTE, authorization.getRefreshToken().getToken())
+                .build();
+    }
+
+    private void revoke(String authorizationId, OAuth2RefreshToken token, boolean rotated) {
+        var hash = hash(token.getTokenValue());
+        var expiresAt = token.getExpiresAt() != null ? token.getExpiresAt() : NEVER;
+        this.repository.save(new RevokedRefreshToken(hash, authorizationId, rotated, expiresAt));
+        this.revoked.put(hash);
+    }
+
+    private void revokeFamily(String authorizationId) {
+        var authorization = this.delegate.findById(authorizationId);
+        if (authorization == null)
+            return;
+        log.warn("a rotated refresh token for authorization " + authorizationId + " (client " +
+                 authorization.getRegisteredClientId() + ", principal " + authorization.getPrincipalName() +
+                 ") was used again, so all of its tokens have been revoked");
+        var builder = OAuth2Authorization.from(authorization);
+        for (var token : new OAuth2Authorization.Token<?>[]{authorization.getAccessToken(), authorization.getRefreshToken()})
+            if (token != null && !token.isInvalidated())
+                builder.token(token.getToken(), metadata -> metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, true));
+        save(builder.build());
+    }
+
+    static String hash(String token) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        }//
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package bootiful.authorizationserver;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+
+import java.time.Clock;
+
+// the resource servers only check an access token's signature, so without help they'd accept it
+// until it expires. whenever an authorization is saved with its access token invalidated (revocation,
+// a reused refresh token or authorization code) or is removed, the token's jti and expiry are
+// published to a fanout exchange, and every api and processor instance keeps them in a deny set
+class RevocationPublishingAuthorizationService implements OAuth2AuthorizationService, InitializingBean, DisposableBean {
+
+    private static final Log log = LogFactory.getLog(RevocationPublishingAuthorizationService.class);
+
+    private final OAuth2AuthorizationService delegate;
+
+    private final AmqpTemplate amqpTemplate;
+
+    private final String exchange;
+
+    private final Clock clock;
+
+    RevocationPublishingAuthorizationService(OAuth2AuthorizationService delegate, AmqpTemplate amqpTemplate,
+                                             String exchange, Clock clock) {
+        this.delegate = delegate;
+        this.amqpTemplate = amqpTemplate;
+        this.exchange = exchange;
+        this.clock = clock;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (this.delegate instanceof InitializingBean initializingBean)
+            initializingBean.afterPropertiesSet();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (this.delegate instanceof DisposableBean disposableBean)
+            disposableBean.destroy();
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        this.delegate.save(authorization);
+        var accessToken = authorization.getAccessToken();
+        if (accessToken != null && accessToken.isInvalidated())
+            publish(accessToken);
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        this.delegate.remove(authorization);
+        var accessToken = authorization.getAccessToken();
+        if (accessToken != null)
+            publish(accessToken);
+    }
+
+    @Override
+    public OAuth2Authorization findById(String id) {
+        return this.delegate.findById(id);
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        return this.delegate.findByToken(token, tokenType);
+    }
+
+    private void publish(OAuth2Authorization.Token<OAuth2AccessToken> accessToken) {
+        var expiresAt = accessToken.getToken().getExpiresAt();
+        var claims = accessToken.getClaims();
+        if (expiresAt == null || !expiresAt.isAfter(this.clock.instant()) || claims == null ||
+            !(claims.get("jti") instanceof String jti))
+            return;
+        try {
+            this.amqpTemplate.convertAndSend(this.exchange, "", revocation(jti, expiresAt.getEpochSecond()));
+        }//
+        catch (AmqpException e) {
+            // the token still fails at the authorization server, it's only the resource servers that won't know
+            log.warn("couldn't publish the revocation of access token " + jti, e);
+        }
+    }
+
+    // what the resource servers parse: the jti and the expiry in epoch seconds
+    static String revocation(String jti, long expiresAt) {
+        return jti + " " + expiresAt;
+    }
+}
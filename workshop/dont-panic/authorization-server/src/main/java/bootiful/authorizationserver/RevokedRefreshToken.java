@@ -0,0 +1,7 @@
+package bootiful.authorizationserver;
+
+import java.time.Instant;
+
+// a refresh token that may no longer be used: either replaced by a newer one (rotated) or revoked
+record RevokedRefreshToken(String tokenHash, String authorizationId, boolean rotated, Instant expiresAt) {
+}
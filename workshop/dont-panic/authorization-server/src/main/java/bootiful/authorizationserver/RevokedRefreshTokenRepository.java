@@ -0,0 +1,14 @@
+package bootiful.authorizationserver;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+interface RevokedRefreshTokenRepository {
+
+    Optional<RevokedRefreshToken> findByTokenHash(String tokenHash);
+
+    void save(RevokedRefreshToken token);
+
+    // hands over the tokens that haven't expired yet
+    void forEachUnexpired(Consumer<String> tokenHashes);
+}
@@ -1,6 +1,6 @@
 package bootiful.authorizationserver;
 
-import org.springframework.boot.ApplicationRunner;
+import bootiful.authorizationserver.startup.StartupTask;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.core.userdetails.User;
@@ -20,8 +20,8 @@ class UsersConfiguration {
     }
 
     @Bean
-    ApplicationRunner usersRunner(PasswordEncoder passwordEncoder, UserDetailsManager userDetailsManager) {
-        return args -> {
+    StartupTask usersRunner(PasswordEncoder passwordEncoder, UserDetailsManager userDetailsManager) {
+        return StartupTask.of("users", () -> {
             // <1>
             var builder = User.builder().roles("USER").passwordEncoder(passwordEncoder::encode);
             // <2>
@@ -35,6 +35,6 @@ class UsersConfiguration {
                     userDetailsManager.createUser(user);
                 }
             });
-        };
+        });
     }
 }
@@ -0,0 +1,278 @@
+package bootiful.authorizationserver;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.support.lob.LobCreator;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.server.authorization.JdbcOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.util.Assert;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// a client_credentials token is a self-contained jwt, so the client doesn't need to wait for its
+// oauth2_authorization row. those saves go into a bounded queue that a background writer inserts
+// in jdbc batches; until then they're answered from memory, so introspection and revocation still
+// see them. when the queue is full the save happens inline, as it always did. a row that couldn't be
+// written stays queued and is tried again with the next batch, and whatever hasn't been written at
+// shutdown is written before the service goes away. every other grant is saved inline
+class WriteBehindOAuth2AuthorizationService extends JdbcOAuth2AuthorizationService
+        implements InitializingBean, DisposableBean {
+
+    private static final Log log = LogFactory.getLog(WriteBehindOAuth2AuthorizationService.class);
+
+    private static final List<String> COLUMNS = List.of("id", "registered_client_id", "principal_name",
+            "authorization_grant_type", "authorized_scopes", "attributes", "state",
+            "authorization_code_value", "authorization_code_issued_at", "authorization_code_expires_at", "authorization_code_metadata",
+            "access_token_value", "access_token_issued_at", "access_token_expires_at", "access_token_metadata",
+            "access_token_type", "access_token_scopes",
+            "oidc_id_token_value", "oidc_id_token_issued_at", "oidc_id_token_expires_at", "oidc_id_token_metadata",
+            "refresh_token_value", "refresh_token_issued_at", "refresh_token_expires_at", "refresh_token_metadata",
+            "user_code_value", "user_code_issued_at", "user_code_expires_at", "user_code_metadata",
+            "device_code_value", "device_code_issued_at", "device_code_expires_at", "device_code_metadata");
+
+    // a queued authorization may be saved again (revoked, say) after it's been written, so this upserts
+    private static final String UPSERT_AUTHORIZATION_SQL = "insert into oauth2_authorization (" +
+            String.join(", ", COLUMNS) + ") values (" +
+            COLUMNS.stream().map(c -> "?").collect(Collectors.joining(", ")) + ") on conflict (id) do update set " +
+            COLUMNS.stream().skip(1).map(c -> c + " = excluded." + c).collect(Collectors.joining(", "));
+
+    private final ConcurrentHashMap<String, OAuth2Authorization> pending = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, String> pendingByAccessToken = new ConcurrentHashMap<>();
+
+    // the ids being written, and whether they've been removed since
+    private final ConcurrentHashMap<String, Boolean> writing = new ConcurrentHashMap<>();
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(
+            new CustomizableThreadFactory("authorization-writer-"));
+
+    private final BlockingQueue<String> queue;
+
+    private final int batchSize;
+
+    private final Duration flushInterval;
+
+    private volatile boolean running = true;
+
+    WriteBehindOAuth2AuthorizationService(JdbcOperations jdbcOperations, RegisteredClientRepository repository,
+                                          int capacity, int batchSize, Duration flushInterval) {
+        super(jdbcOperations, repository);
+        Assert.isTrue(capacity > 0 && batchSize > 0, "the capacity and batch size must be positive");
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.writer.submit(() -> {
+            // written again with the next batch: they failed, or were saved again while they were being written
+            var retries = new ArrayList<String>();
+            var ids = new ArrayList<String>(this.batchSize);
+            while (this.running) {
+                try {
+                    var first = this.queue.poll(this.flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                    ids.addAll(retries);
+                    retries.clear();
+                    if (first != null) {
+                        ids.add(first);
+                        this.queue.drainTo(ids, Math.max(0, this.batchSize - ids.size()));
+                    }
+                    if (!ids.isEmpty())
+                        retries.addAll(write(ids));
+                }//
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }//
+                catch (Throwable throwable) {
+                    log.error("couldn't write the queued authorizations", throwable);
+                }//
+                finally {
+                    ids.clear();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        this.running = false;
+        this.writer.shutdown();
+        // anything the writer drops when it's interrupted is still pending, so the flush writes it
+        if (!this.writer.awaitTermination(10, TimeUnit.SECONDS))
+            this.writer.shutdownNow();
+        flush();
+    }
+
+    @Override
+    public void save(OAuth2Authorization authorization) {
+        if (!this.running || !AuthorizationGrantType.CLIENT_CREDENTIALS.equals(authorization.getAuthorizationGrantType())) {
+            super.save(authorization);
+            return;
+        }
+        var id = authorization.getId();
+        var accessToken = authorization.getAccessToken();
+        if (accessToken != null)
+            this.pendingByAccessToken.put(accessToken.getToken().getTokenValue(), id);
+        // if it's already queued, the writer picks up this newer version when it gets there
+        if (this.pending.put(id, authorization) == null && !this.queue.offer(id)) {
+            forget(id, authorization);
+            super.save(authorization);
+        }
+    }
+
+    @Override
+    public void remove(OAuth2Authorization authorization) {
+        var id = authorization.getId();
+        var queued = this.pending.remove(id);
+        if (queued != null)
+            forgetAccessToken(queued);
+        // if the writer is in the middle of writing it, it deletes the row again once it has
+        this.writing.computeIfPresent(id, (key, removed) -> true);
+        super.remove(authorization);
+    }
+
+    @Override
+    public OAuth2Authorization findById(String id) {
+        var queued = this.pending.get(id);
+        return queued != null ? queued : super.findById(id);
+    }
+
+    @Override
+    public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
+        if (tokenType == null || OAuth2TokenType.ACCESS_TOKEN.equals(tokenType)) {
+            var id = this.pendingByAccessToken.get(token);
+            var queued = id == null ? null : this.pending.get(id);
+            if (queued != null)
+                return queued;
+        }
+        return super.findByToken(token, tokenType);
+    }
+
+    int queued() {
+        return this.pending.size();
+    }
+
+    // writes everything that hasn't been written yet, on the caller's thread: what's queued, what the
+    // writer is going to try again and what it was in the middle of writing if it was stopped
+    void flush() {
+        var ids = new ArrayList<>(this.pending.keySet());
+        var unwritten = 0;
+        for (var i = 0; i < ids.size(); i += this.batchSize)
+            unwritten += write(ids.subList(i, Math.min(ids.size(), i + this.batchSize))).size();
+        if (unwritten > 0)
+            log.error(unwritten + " authorizations couldn't be written and are still queued");
+    }
+
+    // returns the ids that have to be written again
+    private List<String> write(List<String> ids) {
+        var batch = new LinkedHashMap<String, OAuth2Authorization>();
+        for (var id : ids) {
+            // marked before it's read, so a remove from here on knows the row may be written after its delete
+            this.writing.put(id, false);
+            var authorization = this.pending.get(id);
+            if (authorization != null)
+                batch.put(id, authorization);
+            else
+                this.writing.remove(id);
+        }
+        var unwritten = new ArrayList<String>();
+        if (batch.isEmpty())
+            return unwritten;
+        var written = new ArrayList<>(batch.values());
+        try {
+            upsert(written);
+        }//
+        catch (RuntimeException e) {
+            log.warn("couldn't write a batch of " + written.size() + " authorizations, so writing them one at a time", e);
+            written.clear();
+            for (var authorization : batch.values()) {
+                try {
+                    upsert(List.of(authorization));
+                    written.add(authorization);
+                }//
+                catch (RuntimeException ex) {
+                    log.error("couldn't write authorization " + authorization.getId() + ", so it stays queued", ex);
+                    this.writing.remove(authorization.getId());
+                    unwritten.add(authorization.getId());
+                }
+            }
+        }
+        for (var authorization : written) {
+            var id = authorization.getId();
+            if (Boolean.TRUE.equals(this.writing.remove(id)))
+                super.remove(authorization);
+            // saved again while it was being written, so it needs writing again
+            else if (!forget(id, authorization) && this.pending.containsKey(id))
+                unwritten.add(id);
+        }
+        return unwritten;
+    }
+
+    private void upsert(List<OAuth2Authorization> authorizations) {
+        var parameters = authorizations.stream().map(getAuthorizationParametersMapper()).toList();
+        try (var lobCreator = getLobHandler().getLobCreator()) {
+            getJdbcOperations().batchUpdate(UPSERT_AUTHORIZATION_SQL, new BatchPreparedStatementSetter() {
+
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    setParameters(ps, lobCreator, parameters.get(i));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return parameters.size();
+                }
+            });
+        }
+    }
+
+    // the same binding JdbcOAuth2AuthorizationService does for its own insert
+    private static void setParameters(PreparedStatement ps, LobCreator lobCreator, List<SqlParameterValue> parameters) throws SQLException {
+        var index = 1;
+        for (var parameter : parameters) {
+            if (parameter.getSqlType() == Types.BLOB)
+                lobCreator.setBlobAsBytes(ps, index, (byte[]) parameter.getValue());
+            else
+                StatementCreatorUtils.setParameterValue(ps, index, parameter, parameter.getValue());
+            index++;
+        }
+    }
+
+    private boolean forget(String id, OAuth2Authorization authorization) {
+        var forgotten = this.pending.remove(id, authorization);
+        if (forgotten)
+            forgetAccessToken(authorization);
+        return forgotten;
+    }
+
+    private void forgetAccessToken(OAuth2Authorization authorization) {
+        var accessToken = authorization.getAccessToken();
+        if (accessToken != null)
+            this.pendingByAccessToken.remove(accessToken.getToken().getTokenValue(), authorization.getId());
+    }
+}
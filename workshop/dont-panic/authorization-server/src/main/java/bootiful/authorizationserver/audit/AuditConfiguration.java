@@ -0,0 +1,44 @@
+package bootiful.authorizationserver.audit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+
+@Configuration
+@ConditionalOnProperty(value = "bootiful.audit.enabled", havingValue = "true")
+class AuditConfiguration {
+
+    @Bean
+    AuditRingBuffer auditRingBuffer(@Value("${bootiful.audit.capacity:16384}") int capacity) {
+        return new AuditRingBuffer(Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1);
+    }
+
+    @Bean
+    AuditEventListener auditEventListener(AuditRingBuffer auditRingBuffer) {
+        return new AuditEventListener(auditRingBuffer);
+    }
+
+    @Bean
+    AuditWriter auditWriter(AuditRingBuffer auditRingBuffer, JdbcOperations jdbcOperations,
+                            @Value("${bootiful.audit.directory}") Path directory,
+                            @Value("${bootiful.audit.max-file-size:64MB}") DataSize maxFileSize,
+                            @Value("${bootiful.audit.max-files:10}") int maxFiles,
+                            @Value("${bootiful.audit.idle-wait:10ms}") Duration idleWait,
+                            @Value("${bootiful.audit.jdbc.enabled:false}") boolean jdbc,
+                            @Value("${bootiful.audit.jdbc.batch-size:500}") int batchSize) throws IOException {
+        var sinks = new ArrayList<AuditSink>();
+        sinks.add(new MappedFileAuditSink(directory, maxFileSize.toBytes(),
+                (int) Math.min(DataSize.ofMegabytes(1).toBytes(), maxFileSize.toBytes()), maxFiles));
+        if (jdbc)
+            sinks.add(new JdbcAuditSink(jdbcOperations, batchSize));
+        return new AuditWriter(auditRingBuffer, sinks, idleWait);
+    }
+}
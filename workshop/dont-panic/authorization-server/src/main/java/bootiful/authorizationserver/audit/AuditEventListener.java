@@ -0,0 +1,72 @@
+package bootiful.authorizationserver.audit;
+
+import org.springframework.context.ApplicationListener;
+import org.springframework.security.authentication.event.AbstractAuthenticationEvent;
+import org.springframework.security.authentication.event.AbstractAuthenticationFailureEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.authentication.event.LogoutSuccessEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AccessTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AuthorizationCodeRequestAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2TokenRevocationAuthenticationToken;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+// spring boot gives every authentication manager an event publisher, the authorization server's
+// endpoints included, so a token being issued is an authentication success like a login. this runs
+// on the request thread, so all it does is offer the event to the ring buffer. the other
+// authentication events (interactive success, session fixation protection) accompany a success
+// that's already been recorded, so they're ignored
+class AuditEventListener implements ApplicationListener<AbstractAuthenticationEvent> {
+
+    private static final String AUTHORIZATION_SERVER_PACKAGE = "org.springframework.security.oauth2.server.authorization";
+
+    private final AuditRingBuffer buffer;
+
+    AuditEventListener(AuditRingBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void onApplicationEvent(AbstractAuthenticationEvent event) {
+        var authentication = event.getAuthentication();
+        var timestamp = event.getTimestamp();
+        if (event instanceof AbstractAuthenticationFailureEvent failure) {
+            this.buffer.offer(timestamp, "authentication_failure", authentication.getName(), null,
+                    failure.getException().getClass().getSimpleName());
+        }//
+        else if (event instanceof LogoutSuccessEvent) {
+            this.buffer.offer(timestamp, "logout", authentication.getName(), null, remoteAddress(authentication));
+        }//
+        else if (event instanceof AuthenticationSuccessEvent) {
+            onAuthenticationSuccess(authentication, timestamp);
+        }
+    }
+
+    private void onAuthenticationSuccess(Authentication authentication, long timestamp) {
+        if (authentication instanceof OAuth2AccessTokenAuthenticationToken token) {
+            var accessToken = token.getAccessToken();
+            this.buffer.offer(timestamp, "token_issued", authentication.getName(),
+                    token.getRegisteredClient().getClientId(),
+                    "scope=" + String.join(" ", accessToken.getScopes()) + " expires_at=" + accessToken.getExpiresAt() +
+                    (token.getRefreshToken() != null ? " refresh_token" : ""));
+        }//
+        else if (authentication instanceof OAuth2AuthorizationCodeRequestAuthenticationToken request &&
+                 request.getAuthorizationCode() != null) {
+            this.buffer.offer(timestamp, "authorization_code_issued", ((Authentication) request.getPrincipal()).getName(),
+                    request.getClientId(), "scope=" + String.join(" ", request.getScopes()));
+        }//
+        else if (authentication instanceof OAuth2TokenRevocationAuthenticationToken revocation) {
+            this.buffer.offer(timestamp, "token_revoked", authentication.getName(),
+                    ((Authentication) revocation.getPrincipal()).getName(), revocation.getTokenTypeHint());
+        }//
+        // client authentication, introspection and user info are either part of the above or not worth keeping
+        else if (!authentication.getClass().getPackageName().startsWith(AUTHORIZATION_SERVER_PACKAGE)) {
+            this.buffer.offer(timestamp, "login", authentication.getName(), null, remoteAddress(authentication));
+        }
+    }
+
+    private static String remoteAddress(Authentication authentication) {
+        return authentication.getDetails() instanceof WebAuthenticationDetails details ?
+                details.getRemoteAddress() : null;
+    }
+}
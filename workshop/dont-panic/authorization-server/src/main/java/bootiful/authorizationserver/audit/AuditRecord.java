@@ -0,0 +1,19 @@
+package bootiful.authorizationserver.audit;
+
+import java.time.Instant;
+
+// one entry in the audit trail, as the writer thread hands it to the sinks
+record AuditRecord(long timestamp, String type, String principal, String clientId, String detail) {
+
+    // a line of the audit file: tab separated, with tabs and line breaks in the values flattened
+    String toLine() {
+        return Instant.ofEpochMilli(this.timestamp) + "\t" + this.type + "\t" + clean(this.principal) + "\t" +
+               clean(this.clientId) + "\t" + clean(this.detail) + "\n";
+    }
+
+    private static String clean(String value) {
+        if (value == null)
+            return "-";
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
@@ -0,0 +1,92 @@
+package bootiful.authorizationserver.audit;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// a fixed array of slots allocated up front, which request threads claim with a compare-and-set on
+// the claimed sequence and a single writer thread reads in sequence order. a slot is published by
+// the volatile write of its sequence, after its fields, so the writer never sees it half written.
+// when every slot is waiting for the writer the event is dropped and counted rather than making
+// the request wait, so a burst costs some audit entries but never latency or memory
+class AuditRingBuffer {
+
+    private static final class Slot {
+
+        volatile long sequence = -1;
+
+        long timestamp;
+
+        String type, principal, clientId, detail;
+    }
+
+    private final Slot[] slots;
+
+    private final int mask;
+
+    private final AtomicLong claimed = new AtomicLong();
+
+    // the next sequence the writer will read, everything before it can be reused
+    private volatile long consumed;
+
+    private final LongAdder dropped = new LongAdder();
+
+    AuditRingBuffer(int capacity) {
+        Assert.isTrue(capacity > 0 && Integer.bitCount(capacity) == 1, "the capacity must be a power of two");
+        this.slots = new Slot[capacity];
+        for (var i = 0; i < capacity; i++)
+            this.slots[i] = new Slot();
+        this.mask = capacity - 1;
+    }
+
+    boolean offer(long timestamp, String type, String principal, String clientId, String detail) {
+        long sequence;
+        do {
+            sequence = this.claimed.get();
+            if (sequence - this.consumed >= this.slots.length) {
+                this.dropped.increment();
+                return false;
+            }
+        }
+        while (!this.claimed.compareAndSet(sequence, sequence + 1));
+        var slot = this.slots[(int) (sequence & this.mask)];
+        slot.timestamp = timestamp;
+        slot.type = type;
+        slot.principal = principal;
+        slot.clientId = clientId;
+        slot.detail = detail;
+        slot.sequence = sequence;
+        return true;
+    }
+
+    // only ever called from the writer thread
+    int drain(Consumer<AuditRecord> consumer, int max) {
+        var next = this.consumed;
+        var drained = 0;
+        while (drained < max) {
+            var slot = this.slots[(int) (next & this.mask)];
+            if (slot.sequence != next)
+                break;
+            var record = new AuditRecord(slot.timestamp, slot.type, slot.principal, slot.clientId, slot.detail);
+            slot.type = slot.principal = slot.clientId = slot.detail = null;
+            this.consumed = ++next;
+            drained++;
+            consumer.accept(record);
+        }
+        return drained;
+    }
+
+    int capacity() {
+        return this.slots.length;
+    }
+
+    int size() {
+        return (int) (this.claimed.get() - this.consumed);
+    }
+
+    long dropped() {
+        return this.dropped.sum();
+    }
+}
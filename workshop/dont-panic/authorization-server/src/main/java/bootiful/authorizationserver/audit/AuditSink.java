@@ -0,0 +1,13 @@
+package bootiful.authorizationserver.audit;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// somewhere the audit writer puts records. only ever called from the writer thread
+interface AuditSink extends Closeable {
+
+    void write(AuditRecord record) throws IOException;
+
+    // called once the ring buffer has been drained, so batching sinks can write what they're holding
+    void flush() throws IOException;
+}
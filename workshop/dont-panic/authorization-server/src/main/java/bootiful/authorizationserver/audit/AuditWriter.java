@@ -0,0 +1,101 @@
+package bootiful.authorizationserver.audit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// the single thread that drains the ring buffer into the sinks. it spins through whatever's
+// waiting, flushes once the buffer is empty and then parks for idleWait, so a quiet server
+// costs a wake up every few milliseconds and a busy one writes in large runs
+class AuditWriter implements InitializingBean, DisposableBean {
+
+    private static final Log log = LogFactory.getLog(AuditWriter.class);
+
+    private static final int DRAIN_SIZE = 1024;
+
+    private final AuditRingBuffer buffer;
+
+    private final List<AuditSink> sinks;
+
+    private final long idleWaitNanos;
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    private long reportedDrops;
+
+    AuditWriter(AuditRingBuffer buffer, List<AuditSink> sinks, Duration idleWait) {
+        this.buffer = buffer;
+        this.sinks = sinks;
+        this.idleWaitNanos = idleWait.toNanos();
+        this.thread = new CustomizableThreadFactory("audit-writer-").newThread(this::run);
+        this.thread.setDaemon(true);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.thread.start();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        this.running = false;
+        LockSupport.unpark(this.thread);
+        this.thread.join(TimeUnit.SECONDS.toMillis(10));
+        // whatever was offered while the thread stopped
+        if (!this.thread.isAlive())
+            drain();
+        for (var sink : this.sinks)
+            sink.close();
+    }
+
+    private void run() {
+        while (this.running) {
+            if (drain() == 0)
+                LockSupport.parkNanos(this, this.idleWaitNanos);
+        }
+    }
+
+    int drain() {
+        var total = 0;
+        int drained;
+        while ((drained = this.buffer.drain(this::write, DRAIN_SIZE)) > 0)
+            total += drained;
+        if (total > 0) {
+            for (var sink : this.sinks) {
+                try {
+                    sink.flush();
+                }//
+                catch (IOException | RuntimeException e) {
+                    log.warn("couldn't flush the audit sink " + sink, e);
+                }
+            }
+        }
+        var dropped = this.buffer.dropped();
+        if (dropped > this.reportedDrops) {
+            log.warn((dropped - this.reportedDrops) + " audit events were dropped because the ring buffer was full");
+            this.reportedDrops = dropped;
+        }
+        return total;
+    }
+
+    private void write(AuditRecord record) {
+        for (var sink : this.sinks) {
+            try {
+                sink.write(record);
+            }//
+            catch (IOException | RuntimeException e) {
+                log.warn("couldn't write an audit event to " + sink, e);
+            }
+        }
+    }
+}
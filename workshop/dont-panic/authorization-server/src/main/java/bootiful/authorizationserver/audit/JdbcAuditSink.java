@@ -0,0 +1,71 @@
+package bootiful.authorizationserver.audit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.util.Assert;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+// copies the audit trail into oauth2_audit_events a batch at a time. a batch the database refuses
+// is logged and dropped: the file still has it, and holding on would only back up the ring buffer
+class JdbcAuditSink implements AuditSink {
+
+    private static final Log log = LogFactory.getLog(JdbcAuditSink.class);
+
+    private static final String INSERT_EVENT = """
+            insert into oauth2_audit_events (occurred_at, type, principal_name, client_id, detail)
+            values (?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcOperations jdbc;
+
+    private final int batchSize;
+
+    private final List<AuditRecord> batch;
+
+    JdbcAuditSink(JdbcOperations jdbc, int batchSize) {
+        Assert.isTrue(batchSize > 0, "the batch size must be positive");
+        this.jdbc = jdbc;
+        this.batchSize = batchSize;
+        this.batch = new ArrayList<>(batchSize);
+    }
+
+    @Override
+    public void write(AuditRecord record) {
+        this.batch.add(record);
+        if (this.batch.size() >= this.batchSize)
+            flush();
+    }
+
+    @Override
+    public void flush() {
+        if (this.batch.isEmpty())
+            return;
+        try {
+            this.jdbc.batchUpdate(INSERT_EVENT, this.batch, this.batch.size(), (ps, record) -> {
+                ps.setTimestamp(1, new Timestamp(record.timestamp()));
+                ps.setString(2, record.type());
+                ps.setString(3, truncate(record.principal(), 200));
+                ps.setString(4, truncate(record.clientId(), 100));
+                ps.setString(5, truncate(record.detail(), 1000));
+            });
+        }//
+        catch (DataAccessException e) {
+            log.warn("couldn't write " + this.batch.size() + " audit events to the database", e);
+        }
+        this.batch.clear();
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private static String truncate(String value, int length) {
+        return value == null || value.length() <= length ? value : value.substring(0, length);
+    }
+}
@@ -0,0 +1,157 @@
+package bootiful.authorizationserver.audit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// appends audit lines to audit.<n>.log through a memory mapped region of the file, so a write is a
+// copy into the page cache with no system call. the region is remapped further along as it fills and
+// the file is rolled once it reaches maxFileSize, keeping the newest maxFiles. the file is truncated
+// to what's been written when it's closed; after a crash the tail of the last one is zero bytes.
+// the directory and files are created for our user alone, and a directory someone else could have
+// created or could write to is refused, so the trail can't be read, replaced or redirected
+class MappedFileAuditSink implements AuditSink {
+
+    private static final Log log = LogFactory.getLog(MappedFileAuditSink.class);
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private static final Set<PosixFilePermission> OWNER_READ_WRITE = PosixFilePermissions.fromString("rw-------");
+
+    private static final Pattern FILE_NAME = Pattern.compile("audit\\.(\\d+)\\.log");
+
+    private final Path directory;
+
+    private final long maxFileSize;
+
+    private final int regionSize;
+
+    private final int maxFiles;
+
+    private int index;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer region;
+
+    private long written;
+
+    MappedFileAuditSink(Path directory, long maxFileSize, int regionSize, int maxFiles) throws IOException {
+        Assert.isTrue(maxFileSize >= regionSize && regionSize > 0, "the file size must be at least the region size");
+        Assert.isTrue(maxFiles > 0, "at least one file must be kept");
+        this.directory = createPrivateDirectory(directory);
+        this.maxFileSize = maxFileSize;
+        this.regionSize = regionSize;
+        this.maxFiles = maxFiles;
+        // never append to a file from an earlier run, it may end in the zeros of an unfinished region
+        this.index = indexes().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+        open();
+    }
+
+    @Override
+    public void write(AuditRecord record) throws IOException {
+        var bytes = record.toLine().getBytes(StandardCharsets.UTF_8);
+        if (this.written > 0 && this.written + bytes.length > this.maxFileSize)
+            roll();
+        if (this.region.remaining() < bytes.length)
+            map(Math.max(this.regionSize, bytes.length));
+        this.region.put(bytes);
+        this.written += bytes.length;
+    }
+
+    // the mapped pages are already the page cache's, so there's nothing to do until the file is closed
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.channel == null)
+            return;
+        this.region.force();
+        this.region = null;
+        this.channel.truncate(this.written);
+        this.channel.close();
+        this.channel = null;
+    }
+
+    Path currentFile() {
+        return file(this.index);
+    }
+
+    private void roll() throws IOException {
+        close();
+        this.index++;
+        open();
+        var indexes = indexes();
+        indexes.sort(null);
+        for (var i = 0; i < indexes.size() - this.maxFiles; i++) {
+            try {
+                Files.deleteIfExists(file(indexes.get(i)));
+            }//
+            catch (IOException e) {
+                log.warn("couldn't delete the old audit file " + file(indexes.get(i)), e);
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        var options = Set.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.channel = isPosix(this.directory) ?
+                FileChannel.open(currentFile(), options, PosixFilePermissions.asFileAttribute(OWNER_READ_WRITE)) :
+                FileChannel.open(currentFile(), options);
+        this.written = 0;
+        this.region = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, this.regionSize);
+    }
+
+    private void map(int size) throws IOException {
+        this.region = this.channel.map(FileChannel.MapMode.READ_WRITE, this.written, size);
+    }
+
+    private static Path createPrivateDirectory(Path directory) throws IOException {
+        if (isPosix(directory))
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        else
+            Files.createDirectories(directory);
+        var user = directory.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (Files.isSymbolicLink(directory) || !Files.getOwner(directory).equals(user) ||
+            (isPosix(directory) && !OWNER_ONLY.containsAll(Files.getPosixFilePermissions(directory))))
+            throw new IOException("the audit directory " + directory + " must be a directory that only " +
+                                  user.getName() + " can read and write");
+        return directory;
+    }
+
+    private static boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    private Path file(int index) {
+        return this.directory.resolve("audit." + index + ".log");
+    }
+
+    private ArrayList<Integer> indexes() throws IOException {
+        var indexes = new ArrayList<Integer>();
+        try (var files = Files.list(this.directory)) {
+            files.forEach(file -> {
+                var matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches())
+                    indexes.add(Integer.parseInt(matcher.group(1)));
+            });
+        }
+        return indexes;
+    }
+}
@@ -1,7 +1,7 @@
 package bootiful.authorizationserver.keys;
 
+import bootiful.authorizationserver.startup.StartupTask;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
@@ -21,11 +21,10 @@ class LifecycleConfiguration {
 
     // <.>
     @Bean
-    ApplicationListener<ApplicationReadyEvent> applicationReadyListener(
-            ApplicationEventPublisher publisher, RsaKeyPairRepository repository) {
-        return event -> {
+    StartupTask keysRunner(ApplicationEventPublisher publisher, RsaKeyPairRepository repository) {
+        return StartupTask.of("keys", () -> {
             if (repository.findKeyPairs().isEmpty())
                 publisher.publishEvent(new RsaKeyPairGenerationRequestEvent(Instant.now()));
-        };
+        });
     }
 }
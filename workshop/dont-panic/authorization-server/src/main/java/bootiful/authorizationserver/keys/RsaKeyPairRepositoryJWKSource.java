@@ -6,12 +6,14 @@ import com.nimbusds.jose.jwk.JWKSelector;
 import com.nimbusds.jose.jwk.RSAKey;
 import com.nimbusds.jose.jwk.source.JWKSource;
 import com.nimbusds.jose.proc.SecurityContext;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
 import org.springframework.security.oauth2.server.authorization.token.JwtEncodingContext;
 import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenCustomizer;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 @Component
 class RsaKeyPairRepositoryJWKSource implements JWKSource<SecurityContext>,
@@ -45,5 +47,8 @@ class RsaKeyPairRepositoryJWKSource implements JWKSource<SecurityContext>,
         var keyPairs = this.keyPairRepository.findKeyPairs();
         var kid = keyPairs.get(0).id();
         context.getJwsHeader().keyId(kid);
+        // resource servers deny revoked access tokens by their id
+        if (OAuth2TokenType.ACCESS_TOKEN.equals(context.getTokenType()))
+            context.getClaims().id(UUID.randomUUID().toString());
     }
 }
@@ -0,0 +1,85 @@
+package bootiful.authorizationserver.sessions;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// deletes expired sessions a batch at a time instead of in one statement that locks every expired
+// row at once. each batch walks spring_session_ix2 from the oldest expiry and skips rows another
+// instance (or a request) has locked; the attributes go with them through the cascading foreign key
+class ExpiredSessionCleaner implements InitializingBean, DisposableBean {
+
+    private static final Log log = LogFactory.getLog(ExpiredSessionCleaner.class);
+
+    private static final String DELETE_EXPIRED_SESSIONS = """
+            delete from spring_session
+            where primary_id in (
+                select primary_id from spring_session
+                where expiry_time < ?
+                order by expiry_time
+                limit ?
+                for update skip locked
+            )
+            """;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("session-cleanup-"));
+
+    private final JdbcOperations jdbc;
+
+    private final int batchSize;
+
+    private final Duration interval;
+
+    private final Clock clock;
+
+    ExpiredSessionCleaner(JdbcOperations jdbc, int batchSize, Duration interval, Clock clock) {
+        Assert.isTrue(batchSize > 0, "the batch size must be positive");
+        this.jdbc = jdbc;
+        this.batchSize = batchSize;
+        this.interval = interval;
+        this.clock = clock;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        var millis = this.interval.toMillis();
+        this.scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                deleteExpiredSessions();
+            }//
+            catch (Throwable throwable) {
+                log.warn("couldn't delete the expired sessions", throwable);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        this.scheduler.shutdownNow();
+    }
+
+    int deleteExpiredSessions() {
+        var now = this.clock.millis();
+        var total = 0;
+        int deleted;
+        do {
+            deleted = this.jdbc.update(DELETE_EXPIRED_SESSIONS, now, this.batchSize);
+            total += deleted;
+        }
+        while (deleted == this.batchSize && !Thread.currentThread().isInterrupted());
+        if (total > 0 && log.isDebugEnabled())
+            log.debug("deleted " + total + " expired sessions");
+        return total;
+    }
+}
@@ -0,0 +1,268 @@
+package bootiful.authorizationserver.sessions;
+
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// turns a session attribute into the bytes stored in spring_session_attributes. the values a
+// form login session actually holds (the security context, the csrf token, strings, numbers and
+// collections of them) are written field by field behind a one byte format marker; anything
+// else is java serialized after the marker. rows written before this codec start with java
+// serialization's own stream header, so those are still read as they always were
+final class SessionAttributeCodec {
+
+    private static final byte FORMAT = 1;
+
+    private static final byte NULL = 0, STRING = 1, LONG = 2, INTEGER = 3, BOOLEAN = 4, INSTANT = 5,
+            LIST = 6, SET = 7, MAP = 8, SECURITY_CONTEXT = 9, CSRF_TOKEN = 10, SERIALIZED = 11;
+
+    private final SerializingConverter serializer = new SerializingConverter();
+
+    private final DeserializingConverter deserializer;
+
+    SessionAttributeCodec(ClassLoader classLoader) {
+        this.deserializer = new DeserializingConverter(classLoader);
+    }
+
+    byte[] encode(Object value) {
+        var bytes = new ByteArrayOutputStream(128);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            writeValue(out, value);
+        }//
+        catch (IOException e) {
+            throw new IllegalStateException("couldn't encode the session attribute", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    Object decode(byte[] bytes) {
+        if (bytes.length > 0 && bytes[0] != FORMAT)
+            return this.deserializer.convert(bytes);
+        try (var in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+            return readValue(in);
+        }//
+        catch (IOException e) {
+            throw new IllegalStateException("couldn't decode the session attribute", e);
+        }
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null)
+            out.writeByte(NULL);
+        else if (value instanceof String s) {
+            out.writeByte(STRING);
+            writeString(out, s);
+        }//
+        else if (value instanceof Long l) {
+            out.writeByte(LONG);
+            out.writeLong(l);
+        }//
+        else if (value instanceof Integer i) {
+            out.writeByte(INTEGER);
+            out.writeInt(i);
+        }//
+        else if (value instanceof Boolean b) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(b);
+        }//
+        else if (value instanceof Instant instant) {
+            out.writeByte(INSTANT);
+            out.writeLong(instant.getEpochSecond());
+            out.writeInt(instant.getNano());
+        }//
+        else if (value instanceof List<?> list && isWritable(list)) {
+            out.writeByte(LIST);
+            writeValues(out, list);
+        }//
+        else if (value instanceof Set<?> set && isWritable(set)) {
+            out.writeByte(SET);
+            writeValues(out, set);
+        }//
+        else if (value instanceof Map<?, ?> map && map.keySet().stream().allMatch(String.class::isInstance) && isWritable(map.values())) {
+            out.writeByte(MAP);
+            out.writeInt(map.size());
+            for (var entry : map.entrySet()) {
+                writeString(out, (String) entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        }//
+        else if (value instanceof SecurityContext context && isCompact(context)) {
+            out.writeByte(SECURITY_CONTEXT);
+            writeSecurityContext(out, context);
+        }//
+        else if (value instanceof DefaultCsrfToken token) {
+            out.writeByte(CSRF_TOKEN);
+            writeString(out, token.getHeaderName());
+            writeString(out, token.getParameterName());
+            writeString(out, token.getToken());
+        }//
+        else {
+            out.writeByte(SERIALIZED);
+            var bytes = this.serializer.convert(value);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private Object readValue(DataInputStream in) throws IOException {
+        var type = in.readByte();
+        return switch (type) {
+            case NULL -> null;
+            case STRING -> readString(in);
+            case LONG -> in.readLong();
+            case INTEGER -> in.readInt();
+            case BOOLEAN -> in.readBoolean();
+            case INSTANT -> Instant.ofEpochSecond(in.readLong(), in.readInt());
+            case LIST -> readValues(in, new ArrayList<>());
+            case SET -> readValues(in, new LinkedHashSet<>());
+            case MAP -> {
+                var count = in.readInt();
+                var map = new LinkedHashMap<String, Object>(count * 2);
+                for (var i = 0; i < count; i++)
+                    map.put(readString(in), readValue(in));
+                yield map;
+            }
+            case SECURITY_CONTEXT -> readSecurityContext(in);
+            case CSRF_TOKEN -> new DefaultCsrfToken(readString(in), readString(in), readString(in));
+            case SERIALIZED -> {
+                var bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                yield this.deserializer.convert(bytes);
+            }
+            default -> throw new IOException("unknown value type " + type);
+        };
+    }
+
+    // anything we'd write field by field all the way down, so nested values never need the java serialization fallback
+    private static boolean isWritable(Collection<?> values) {
+        for (var value : values)
+            if (!(value == null || value instanceof String || value instanceof Long || value instanceof Integer ||
+                  value instanceof Boolean || value instanceof Instant))
+                return false;
+        return true;
+    }
+
+    private void writeValues(DataOutputStream out, Collection<?> values) throws IOException {
+        out.writeInt(values.size());
+        for (var value : values)
+            writeValue(out, value);
+    }
+
+    private <C extends Collection<Object>> C readValues(DataInputStream in, C values) throws IOException {
+        var count = in.readInt();
+        for (var i = 0; i < count; i++)
+            values.add(readValue(in));
+        return values;
+    }
+
+    // a form login: an authenticated username and password token whose credentials have been erased
+    private static boolean isCompact(SecurityContext context) {
+        return context.getClass() == SecurityContextImpl.class &&
+               context.getAuthentication() instanceof UsernamePasswordAuthenticationToken token &&
+               token.getClass() == UsernamePasswordAuthenticationToken.class &&
+               token.isAuthenticated() &&
+               token.getCredentials() == null &&
+               (token.getDetails() == null || token.getDetails().getClass() == WebAuthenticationDetails.class) &&
+               token.getPrincipal() instanceof User user &&
+               user.getClass() == User.class &&
+               user.getPassword() == null &&
+               onlySimpleAuthorities(token.getAuthorities()) &&
+               onlySimpleAuthorities(user.getAuthorities());
+    }
+
+    private static boolean onlySimpleAuthorities(Collection<? extends GrantedAuthority> authorities) {
+        return authorities.stream().allMatch(a -> a.getClass() == SimpleGrantedAuthority.class);
+    }
+
+    private static void writeSecurityContext(DataOutputStream out, SecurityContext context) throws IOException {
+        var token = (UsernamePasswordAuthenticationToken) context.getAuthentication();
+        var user = (User) token.getPrincipal();
+        writeString(out, user.getUsername());
+        out.writeBoolean(user.isEnabled());
+        out.writeBoolean(user.isAccountNonExpired());
+        out.writeBoolean(user.isCredentialsNonExpired());
+        out.writeBoolean(user.isAccountNonLocked());
+        writeAuthorities(out, user.getAuthorities());
+        writeAuthorities(out, token.getAuthorities());
+        var details = (WebAuthenticationDetails) token.getDetails();
+        out.writeBoolean(details != null);
+        if (details != null) {
+            writeNullableString(out, details.getRemoteAddress());
+            writeNullableString(out, details.getSessionId());
+        }
+    }
+
+    private static SecurityContext readSecurityContext(DataInputStream in) throws IOException {
+        var username = readString(in);
+        var enabled = in.readBoolean();
+        var accountNonExpired = in.readBoolean();
+        var credentialsNonExpired = in.readBoolean();
+        var accountNonLocked = in.readBoolean();
+        var user = new User(username, "", enabled, accountNonExpired, credentialsNonExpired,
+                accountNonLocked, readAuthorities(in));
+        user.eraseCredentials();
+        var token = UsernamePasswordAuthenticationToken.authenticated(user, null, readAuthorities(in));
+        if (in.readBoolean())
+            token.setDetails(new WebAuthenticationDetails(readNullableString(in), readNullableString(in)));
+        return new SecurityContextImpl(token);
+    }
+
+    private static void writeAuthorities(DataOutputStream out, Collection<? extends GrantedAuthority> authorities) throws IOException {
+        out.writeInt(authorities.size());
+        for (var authority : authorities)
+            writeString(out, authority.getAuthority());
+    }
+
+    private static List<GrantedAuthority> readAuthorities(DataInputStream in) throws IOException {
+        var count = in.readInt();
+        var authorities = new ArrayList<GrantedAuthority>(count);
+        for (var i = 0; i < count; i++)
+            authorities.add(new SimpleGrantedAuthority(readString(in)));
+        return authorities;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            writeString(out, value);
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        var bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
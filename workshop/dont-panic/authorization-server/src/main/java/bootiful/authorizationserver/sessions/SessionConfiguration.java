@@ -0,0 +1,69 @@
+package bootiful.authorizationserver.sessions;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.config.SessionRepositoryCustomizer;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+
+import java.time.Clock;
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(value = "bootiful.sessions.compact", havingValue = "true")
+class SessionConfiguration {
+
+    // postgres only: bind the same parameters spring session always binds, in the same order, but skip
+    // the write when nothing but the last access time changed and that by less than the throttle
+    private static final String UPDATE_SESSION_QUERY = """
+            update %%TABLE_NAME%% s
+            set session_id = v.session_id, last_access_time = v.last_access_time,
+                max_inactive_interval = v.max_inactive_interval, expiry_time = v.expiry_time,
+                principal_name = v.principal_name
+            from (select cast(? as character(36)) as session_id, cast(? as bigint) as last_access_time,
+                         cast(? as integer) as max_inactive_interval, cast(? as bigint) as expiry_time,
+                         cast(? as character varying(100)) as principal_name, cast(? as character(36)) as primary_id) v
+            where s.primary_id = v.primary_id
+            and (s.session_id <> v.session_id
+                 or s.max_inactive_interval <> v.max_inactive_interval
+                 or s.principal_name is distinct from v.principal_name
+                 or v.last_access_time - s.last_access_time >= %d)
+            """;
+
+    // and leave an attribute alone if it's been set again to what it already was
+    private static final String UPDATE_SESSION_ATTRIBUTE_QUERY = """
+            update %TABLE_NAME%_attributes a
+            set attribute_bytes = v.attribute_bytes
+            from (select cast(? as bytea) as attribute_bytes, cast(? as character(36)) as session_primary_id,
+                         cast(? as character varying(200)) as attribute_name) v
+            where a.session_primary_id = v.session_primary_id
+            and a.attribute_name = v.attribute_name
+            and a.attribute_bytes <> v.attribute_bytes
+            """;
+
+    @Bean
+    SessionRepositoryCustomizer<JdbcIndexedSessionRepository> compactSessionRepositoryCustomizer(
+            @Value("${bootiful.sessions.last-access-throttle:60s}") Duration lastAccessThrottle) {
+        var codec = new SessionAttributeCodec(SessionConfiguration.class.getClassLoader());
+        var conversionService = new GenericConversionService();
+        conversionService.addConverter(Object.class, byte[].class, codec::encode);
+        conversionService.addConverter(byte[].class, Object.class, codec::decode);
+        return repository -> {
+            repository.setConversionService(conversionService);
+            repository.setUpdateSessionQuery(UPDATE_SESSION_QUERY.formatted(lastAccessThrottle.toMillis()));
+            repository.setUpdateSessionAttributeQuery(UPDATE_SESSION_ATTRIBUTE_QUERY);
+            repository.setCleanupCron(Scheduled.CRON_DISABLED);
+        };
+    }
+
+    @Bean
+    ExpiredSessionCleaner expiredSessionCleaner(JdbcOperations jdbcOperations,
+                                                @Value("${bootiful.sessions.cleanup.batch-size:500}") int batchSize,
+                                                @Value("${bootiful.sessions.cleanup.interval:60s}") Duration interval) {
+        return new ExpiredSessionCleaner(jdbcOperations, batchSize, interval, Clock.systemUTC());
+    }
+}
@@ -0,0 +1,16 @@
+package bootiful.authorizationserver.startup;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+class StartupConfiguration {
+
+    @Bean
+    StartupTaskRunner startupTaskRunner(ObjectProvider<StartupTask> tasks,
+                                        @Value("${bootiful.startup.threads:4}") int threads) {
+        return new StartupTaskRunner(tasks.orderedStream().toList(), threads);
+    }
+}
@@ -0,0 +1,35 @@
+package bootiful.authorizationserver.startup;
+
+import org.springframework.util.Assert;
+
+import java.util.Set;
+
+// some work the authorization server does once at startup, like installing a client or a key. the
+// tasks run concurrently, each once the tasks it's declared to run after have finished, and the
+// application isn't ready until every required one has. public so configuration in any package can
+// contribute one
+public record StartupTask(String name, Set<String> dependencies, boolean required, Action action) {
+
+    public interface Action {
+
+        void run() throws Exception;
+    }
+
+    public StartupTask {
+        Assert.hasText(name, "a startup task needs a name");
+        dependencies = Set.copyOf(dependencies);
+    }
+
+    public static StartupTask of(String name, Action action) {
+        return new StartupTask(name, Set.of(), true, action);
+    }
+
+    public StartupTask after(String... names) {
+        return new StartupTask(this.name, Set.of(names), this.required, this.action);
+    }
+
+    // the application can take traffic before an optional task has finished, and carries on if it fails
+    public StartupTask optional() {
+        return new StartupTask(this.name, this.dependencies, false, this.action);
+    }
+}
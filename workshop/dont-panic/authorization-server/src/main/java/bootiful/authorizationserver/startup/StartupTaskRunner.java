@@ -0,0 +1,122 @@
+package bootiful.authorizationserver.startup;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// starts the startup tasks as soon as every singleton exists, so they overlap with the web server
+// and the message listeners starting, and then, as the first application runner, waits for the
+// required ones. spring boot only reports the application ready (ReadinessState.ACCEPTING_TRAFFIC)
+// once the runners have returned, and a required task that fails fails the startup
+class StartupTaskRunner implements SmartInitializingSingleton, ApplicationRunner, Ordered, DisposableBean {
+
+    private static final Log log = LogFactory.getLog(StartupTaskRunner.class);
+
+    private final Map<String, StartupTask> tasks = new LinkedHashMap<>();
+
+    private final Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+
+    private final ExecutorService executor;
+
+    private long started;
+
+    StartupTaskRunner(List<StartupTask> tasks, int threads) {
+        for (var task : tasks)
+            if (this.tasks.putIfAbsent(task.name(), task) != null)
+                throw new IllegalStateException("there's more than one startup task called " + task.name());
+        for (var task : tasks)
+            for (var dependency : task.dependencies())
+                if (!this.tasks.containsKey(dependency))
+                    throw new IllegalStateException("the startup task " + task.name() +
+                                                    " runs after " + dependency + ", which doesn't exist");
+        this.executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())),
+                new CustomizableThreadFactory("startup-"));
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        this.started = System.nanoTime();
+        for (var name : this.tasks.keySet())
+            schedule(name, new HashSet<>());
+        // the threads are only needed until the last task has finished
+        CompletableFuture.allOf(this.futures.values().toArray(CompletableFuture[]::new))
+                .whenComplete((result, throwable) -> this.executor.shutdown());
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        var required = new ArrayList<CompletableFuture<Void>>();
+        this.tasks.values().stream().filter(StartupTask::required)
+                .forEach(task -> required.add(this.futures.get(task.name())));
+        try {
+            CompletableFuture.allOf(required.toArray(CompletableFuture[]::new)).join();
+        }//
+        catch (CompletionException e) {
+            throw new IllegalStateException("a required startup task failed", e.getCause());
+        }
+        log.info("the required startup tasks took " + millis(this.started) + "ms");
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public void destroy() {
+        this.executor.shutdownNow();
+    }
+
+    private CompletableFuture<Void> schedule(String name, Set<String> path) {
+        var scheduled = this.futures.get(name);
+        if (scheduled != null)
+            return scheduled;
+        if (!path.add(name))
+            throw new IllegalStateException("the startup tasks " + path + " depend on each other");
+        var task = this.tasks.get(name);
+        var dependencies = task.dependencies().stream()
+                .map(dependency -> schedule(dependency, path))
+                .toArray(CompletableFuture[]::new);
+        path.remove(name);
+        var future = CompletableFuture.allOf(dependencies).thenRunAsync(() -> run(task), this.executor);
+        if (!task.required())
+            future = future.exceptionally(throwable -> {
+                log.warn("the optional startup task " + name + " failed", throwable);
+                return null;
+            });
+        this.futures.put(name, future);
+        return future;
+    }
+
+    private void run(StartupTask task) {
+        var start = System.nanoTime();
+        try {
+            task.action().run();
+        }//
+        catch (Exception e) {
+            throw new CompletionException(new IllegalStateException("the startup task " + task.name() + " failed", e));
+        }
+        log.info("the startup task " + task.name() + " took " + millis(start) + "ms");
+    }
+
+    private static long millis(long since) {
+        return (System.nanoTime() - since) / 1_000_000;
+    }
+}
@@ -0,0 +1,68 @@
+package bootiful.authorizationserver.warmup;
+
+import bootiful.authorizationserver.startup.StartupTask;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.NativeDetector;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.token.DefaultOAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
+
+// on the JVM the first few thousand token requests run interpreted, so the p99 spikes after every
+// deploy. with bootiful.warm-up.enabled this mints and then decodes access tokens the way
+// /oauth2/token does for client_credentials, with the real key source and token customizer,
+// before the server reports itself ready. it's skipped in a native image, which is compiled already
+@Configuration
+@ConditionalOnProperty(value = "bootiful.warm-up.enabled", havingValue = "true")
+class WarmUpConfiguration {
+
+    private static final Log log = LogFactory.getLog(WarmUpConfiguration.class);
+
+    @Bean
+    StartupTask warmUpRunner(OAuth2TokenGenerator<OAuth2Token> tokenGenerator, JWKSource<SecurityContext> jwkSource,
+                             RegisteredClientRepository registeredClientRepository,
+                             @Value("${bootiful.warm-up.client-id:crm}") String clientId,
+                             @Value("${bootiful.warm-up.iterations:1000}") int iterations) {
+        return StartupTask.of("warm-up", () -> {
+            if (NativeDetector.inNativeImage())
+                return;
+            var client = registeredClientRepository.findByClientId(clientId);
+            if (client == null) {
+                log.warn("there's no client " + clientId + " to warm up the token endpoint with");
+                return;
+            }
+            var jwtProcessor = new DefaultJWTProcessor<>();
+            jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+            var decoder = new NimbusJwtDecoder(jwtProcessor);
+            var context = DefaultOAuth2TokenContext.builder()
+                    .registeredClient(client)
+                    .principal(new OAuth2ClientAuthenticationToken(client, ClientAuthenticationMethod.CLIENT_SECRET_BASIC, null))
+                    .authorizedScopes(client.getScopes())
+                    .tokenType(OAuth2TokenType.ACCESS_TOKEN)
+                    .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                    .build();
+            try {
+                WarmUp.run("token minting", iterations, i -> decoder.decode(tokenGenerator.generate(context).getTokenValue()));
+            }//
+            catch (Exception e) {
+                // a slow first few requests are better than not starting
+                log.warn("couldn't warm up the token endpoint", e);
+            }
+        }).after("keys", "clients");
+    }
+}
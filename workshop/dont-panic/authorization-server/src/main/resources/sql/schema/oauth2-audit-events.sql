@@ -0,0 +1,10 @@
+create table if not exists oauth2_audit_events
+(
+    id             bigserial     not null primary key,
+    occurred_at    timestamp     not null,
+    type           varchar(40)   not null,
+    principal_name varchar(200),
+    client_id      varchar(100),
+    detail         varchar(1000)
+);
+create index if not exists oauth2_audit_events_ix1 on oauth2_audit_events using btree (occurred_at);
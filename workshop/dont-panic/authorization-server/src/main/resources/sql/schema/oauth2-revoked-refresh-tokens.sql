@@ -0,0 +1,8 @@
+create table if not exists oauth2_revoked_refresh_tokens
+(
+    token_hash       char(64)     not null primary key,
+    authorization_id varchar(100) not null,
+    rotated          boolean      not null,
+    expires_at       timestamp    not null
+);
+create index if not exists oauth2_revoked_refresh_tokens_ix1 on oauth2_revoked_refresh_tokens using btree (expires_at);
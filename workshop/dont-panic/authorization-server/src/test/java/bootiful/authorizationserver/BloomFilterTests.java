@@ -0,0 +1,22 @@
+package bootiful.authorizationserver;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTests {
+
+	@Test
+	void neverForgetsAndRarelyImagines() {
+		var filter = new BloomFilter(10_000, 0.01);
+		for (var i = 0; i < 10_000; i++)
+			filter.put(RefreshTokenRotationAuthorizationService.hash("revoked-" + i));
+		for (var i = 0; i < 10_000; i++)
+			Assertions.assertTrue(filter.mightContain(RefreshTokenRotationAuthorizationService.hash("revoked-" + i)));
+		var falsePositives = 0;
+		for (var i = 0; i < 100_000; i++)
+			if (filter.mightContain(RefreshTokenRotationAuthorizationService.hash("valid-" + i)))
+				falsePositives++;
+		Assertions.assertTrue(falsePositives < 2_000, "there were " + falsePositives + " false positives");
+	}
+
+}
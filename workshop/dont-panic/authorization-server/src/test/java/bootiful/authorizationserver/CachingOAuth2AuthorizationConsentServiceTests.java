@@ -0,0 +1,89 @@
+package bootiful.authorizationserver;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.server.authorization.InMemoryOAuth2AuthorizationConsentService;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationConsent;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationConsentService;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CachingOAuth2AuthorizationConsentServiceTests {
+
+	private final AtomicInteger lookups = new AtomicInteger();
+
+	private final MutableClock clock = new MutableClock(Instant.parse("2023-09-01T00:00:00Z"));
+
+	private final InMemoryOAuth2AuthorizationConsentService stored = new InMemoryOAuth2AuthorizationConsentService();
+
+	private final OAuth2AuthorizationConsentService delegate = new OAuth2AuthorizationConsentService() {
+
+		@Override
+		public void save(OAuth2AuthorizationConsent authorizationConsent) {
+			stored.save(authorizationConsent);
+		}
+
+		@Override
+		public void remove(OAuth2AuthorizationConsent authorizationConsent) {
+			stored.remove(authorizationConsent);
+		}
+
+		@Override
+		public OAuth2AuthorizationConsent findById(String registeredClientId, String principalName) {
+			lookups.incrementAndGet();
+			return stored.findById(registeredClientId, principalName);
+		}
+	};
+
+	private final CachingOAuth2AuthorizationConsentService service = new CachingOAuth2AuthorizationConsentService(
+			this.delegate, Duration.ofMinutes(5), Duration.ofSeconds(30), 2, this.clock);
+
+	private static OAuth2AuthorizationConsent consent(String principalName, String... scopes) {
+		var builder = OAuth2AuthorizationConsent.withId("crm-id", principalName);
+		for (var scope : scopes)
+			builder.scope(scope);
+		return builder.build();
+	}
+
+	@Test
+	void remembersConsentsUntilTheyExpire() {
+		this.delegate.save(consent("jlong", "user.read"));
+		Assertions.assertEquals(consent("jlong", "user.read"), this.service.findById("crm-id", "jlong"));
+		Assertions.assertEquals(consent("jlong", "user.read"), this.service.findById("crm-id", "jlong"));
+		Assertions.assertEquals(1, this.lookups.get());
+		this.clock.advance(Duration.ofMinutes(5));
+		this.service.findById("crm-id", "jlong");
+		Assertions.assertEquals(2, this.lookups.get());
+	}
+
+	@Test
+	void remembersThatThereWasNoConsentForLessTime() {
+		Assertions.assertNull(this.service.findById("crm-id", "jlong"));
+		Assertions.assertNull(this.service.findById("crm-id", "jlong"));
+		Assertions.assertEquals(1, this.lookups.get());
+		this.clock.advance(Duration.ofSeconds(30));
+		this.service.findById("crm-id", "jlong");
+		Assertions.assertEquals(2, this.lookups.get());
+	}
+
+	@Test
+	void invalidatesOnSaveAndRemove() {
+		Assertions.assertNull(this.service.findById("crm-id", "jlong"));
+		this.service.save(consent("jlong", "user.read", "openid"));
+		Assertions.assertEquals(consent("jlong", "user.read", "openid"), this.service.findById("crm-id", "jlong"));
+		this.service.remove(consent("jlong", "user.read", "openid"));
+		Assertions.assertNull(this.service.findById("crm-id", "jlong"));
+		Assertions.assertEquals(3, this.lookups.get());
+	}
+
+	@Test
+	void staysWithinMaxSize() {
+		this.service.findById("crm-id", "jlong");
+		this.service.findById("crm-id", "rwinch");
+		this.service.findById("crm-id", "dsyer");
+		Assertions.assertEquals(2, this.service.size());
+	}
+
+}
@@ -0,0 +1,58 @@
+package bootiful.authorizationserver;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class ChecksumSqlInitializerTests {
+
+	private static Resource script(String path, String sql) {
+		return new ByteArrayResource(sql.getBytes(StandardCharsets.UTF_8)) {
+
+			@Override
+			public URL getURL() throws IOException {
+				return new URL("jar:file:/srv/app.jar!/BOOT-INF/classes!/" + path);
+			}
+		};
+	}
+
+	@Test
+	void selectsOnlyTheScriptsThatChanged() {
+		var users = script("sql/schema/users.sql", "create table if not exists users (username text);");
+		var keys = script("sql/schema/rsa_key_pairs.sql", "create table if not exists rsa_key_pairs (id text);");
+		var applied = new HashMap<String, String>();
+		var checksums = new HashMap<String, String>();
+
+		Assertions.assertEquals(List.of(users, keys), ChecksumSqlInitializer.changed("authorization-server", List.of(users, keys), applied, checksums));
+		applied.putAll(checksums);
+
+		checksums.clear();
+		Assertions.assertEquals(List.of(), ChecksumSqlInitializer.changed("authorization-server", List.of(users, keys), applied, checksums));
+		Assertions.assertTrue(checksums.isEmpty());
+
+		var changedKeys = script("sql/schema/rsa_key_pairs.sql", "create table if not exists rsa_key_pairs (id text, created timestamp);");
+		Assertions.assertEquals(List.of(changedKeys), ChecksumSqlInitializer.changed("authorization-server", List.of(users, changedKeys), applied, checksums));
+		Assertions.assertEquals(Map.of("authorization-server:sql/schema/rsa_key_pairs.sql", ChecksumSqlInitializer.checksum(changedKeys)), checksums);
+	}
+
+	@Test
+	void keepsTheScriptsOfEachApplicationAndLocationApart() {
+		var schema = script("sql/schema/users.sql", "create table if not exists users (username text);");
+		var data = script("sql/data/users.sql", "create table if not exists users (username text);");
+		var applied = new HashMap<String, String>();
+		var checksums = new HashMap<String, String>();
+		ChecksumSqlInitializer.changed("authorization-server", List.of(schema), applied, checksums);
+		applied.putAll(checksums);
+
+		Assertions.assertEquals(List.of(data), ChecksumSqlInitializer.changed("authorization-server", List.of(data), applied, checksums));
+		Assertions.assertEquals(List.of(schema), ChecksumSqlInitializer.changed("api", List.of(schema), applied, checksums));
+	}
+}
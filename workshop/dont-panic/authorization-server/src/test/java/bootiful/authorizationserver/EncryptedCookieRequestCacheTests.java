@@ -0,0 +1,99 @@
+package bootiful.authorizationserver;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.crypto.encrypt.Encryptors;
+
+import java.time.Duration;
+import java.time.Instant;
+
+class EncryptedCookieRequestCacheTests {
+
+	private final MutableClock clock = new MutableClock(Instant.parse("2023-09-01T00:00:00Z"));
+
+	private final EncryptedCookieRequestCache cache = new EncryptedCookieRequestCache(
+			Encryptors.delux("password", "5c0744940b5c369b"), Duration.ofMinutes(10), 3072, this.clock);
+
+	private static MockHttpServletRequest authorize(String query) {
+		var request = new MockHttpServletRequest("GET", "/oauth2/authorize");
+		request.setServerPort(8080);
+		request.setQueryString(query);
+		return request;
+	}
+
+	private Cookie save(MockHttpServletRequest request) {
+		var response = new MockHttpServletResponse();
+		this.cache.saveRequest(request, response);
+		return response.getCookie(EncryptedCookieRequestCache.COOKIE_NAME);
+	}
+
+	@Test
+	void carriesTheAuthorizationRequestInACookieInsteadOfTheSession() {
+		var authorize = authorize("response_type=code&client_id=crm&scope=user.read%20openid");
+		var cookie = save(authorize);
+		Assertions.assertNotNull(cookie);
+		Assertions.assertTrue(cookie.isHttpOnly());
+		Assertions.assertNull(authorize.getSession(false));
+
+		var login = new MockHttpServletRequest("POST", "/login");
+		login.setCookies(cookie);
+		var saved = this.cache.getRequest(login, new MockHttpServletResponse());
+		var redirectUrl = "http://localhost:8080/oauth2/authorize?response_type=code&client_id=crm&scope=user.read%20openid&continue";
+		Assertions.assertEquals(redirectUrl, saved.getRedirectUrl());
+
+		var back = authorize("response_type=code&client_id=crm&scope=user.read%20openid&continue");
+		back.setParameter("continue", "");
+		back.setCookies(cookie);
+		var response = new MockHttpServletResponse();
+		Assertions.assertSame(back, this.cache.getMatchingRequest(back, response));
+		Assertions.assertEquals(0, response.getCookie(EncryptedCookieRequestCache.COOKIE_NAME).getMaxAge());
+	}
+
+	@Test
+	void ignoresTamperedAndExpiredCookies() {
+		var cookie = save(authorize("client_id=crm"));
+		var value = cookie.getValue();
+		var tampered = new MockHttpServletRequest("POST", "/login");
+		tampered.setCookies(new Cookie(EncryptedCookieRequestCache.COOKIE_NAME,
+				value.substring(0, value.length() - 2) + (value.endsWith("00") ? "11" : "00")));
+		Assertions.assertNull(this.cache.getRequest(tampered, new MockHttpServletResponse()));
+
+		this.clock.advance(Duration.ofMinutes(11));
+		var expired = new MockHttpServletRequest("POST", "/login");
+		expired.setCookies(cookie);
+		Assertions.assertNull(this.cache.getRequest(expired, new MockHttpServletResponse()));
+	}
+
+	@Test
+	void keepsRequestsTooBigForACookieInTheSession() {
+		var request = authorize("state=" + "x".repeat(4000));
+		Assertions.assertNull(save(request));
+		Assertions.assertNotNull(request.getSession(false));
+		var login = new MockHttpServletRequest("POST", "/login");
+		login.setSession(request.getSession(false));
+		Assertions.assertTrue(this.cache.getRequest(login, new MockHttpServletResponse()).getRedirectUrl().contains("state=x"));
+	}
+
+	@Test
+	void expiresAnEarlierCookieWhenFallingBackToTheSession() {
+		var earlier = save(authorize("client_id=crm"));
+		var request = authorize("state=" + "x".repeat(4000));
+		request.setCookies(earlier);
+		var response = new MockHttpServletResponse();
+		this.cache.saveRequest(request, response);
+		Assertions.assertEquals(0, response.getCookie(EncryptedCookieRequestCache.COOKIE_NAME).getMaxAge());
+		Assertions.assertNotNull(request.getSession(false));
+	}
+
+	@Test
+	void doesNotSaveApiCalls() {
+		var request = authorize("client_id=crm");
+		request.addHeader("X-Requested-With", "XMLHttpRequest");
+		Assertions.assertNull(save(request));
+		Assertions.assertNull(request.getSession(false));
+	}
+
+}
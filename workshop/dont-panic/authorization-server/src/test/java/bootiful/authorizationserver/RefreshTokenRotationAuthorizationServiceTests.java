@@ -0,0 +1,178 @@
+package bootiful.authorizationserver;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.server.authorization.InMemoryOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+class RefreshTokenRotationAuthorizationServiceTests {
+
+	private final Map<String, RevokedRefreshToken> revoked = new HashMap<>();
+
+	private final AtomicInteger lookups = new AtomicInteger();
+
+	private final RevokedRefreshTokenRepository repository = new RevokedRefreshTokenRepository() {
+
+		@Override
+		public Optional<RevokedRefreshToken> findByTokenHash(String tokenHash) {
+			lookups.incrementAndGet();
+			return Optional.ofNullable(revoked.get(tokenHash));
+		}
+
+		@Override
+		public void save(RevokedRefreshToken token) {
+			revoked.putIfAbsent(token.tokenHash(), token);
+		}
+
+		@Override
+		public void forEachUnexpired(Consumer<String> tokenHashes) {
+			revoked.keySet().forEach(tokenHashes);
+		}
+	};
+
+	private final RegisteredClient client = RegisteredClient.withId("crm-id")
+			.clientId("crm")
+			.clientSecret("{noop}crm")
+			.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+			.authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+			.redirectUri("http://127.0.0.1:8082/login/oauth2/code/spring")
+			.scope("user.read")
+			.build();
+
+	private final OAuth2AuthorizationService stored = spy(new InMemoryOAuth2AuthorizationService());
+
+	private final RefreshTokenRotationAuthorizationService service = new RefreshTokenRotationAuthorizationService(
+			this.stored, this.repository, new BloomFilter(1000, 0.001));
+
+	private static OAuth2AccessToken accessToken(String value) {
+		var now = Instant.now();
+		return new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, value, now, now.plusSeconds(300), Set.of("user.read"));
+	}
+
+	private static OAuth2RefreshToken refreshToken(String value) {
+		var now = Instant.now();
+		return new OAuth2RefreshToken(value, now, now.plusSeconds(3600));
+	}
+
+	// what the refresh token grant does: find the authorization by its refresh token, then save it with new tokens
+	private OAuth2Authorization refresh(String refreshToken, String newAccessToken, String newRefreshToken) {
+		var authorization = this.service.findByToken(refreshToken, OAuth2TokenType.REFRESH_TOKEN);
+		if (authorization == null || !authorization.getRefreshToken().isActive())
+			return null;
+		var refreshed = OAuth2Authorization.from(authorization)
+				.token(accessToken(newAccessToken))
+				.refreshToken(refreshToken(newRefreshToken))
+				.build();
+		this.service.save(refreshed);
+		return refreshed;
+	}
+
+	@Test
+	void rotatesRefreshTokensAndRevokesEverythingWhenAnOldOneIsReused() {
+		this.service.save(OAuth2Authorization.withRegisteredClient(this.client)
+				.id("authorization-1")
+				.principalName("jlong")
+				.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+				.authorizedScopes(Set.of("user.read"))
+				.token(accessToken("a1"))
+				.refreshToken(refreshToken("r1"))
+				.build());
+
+		Assertions.assertNotNull(refresh("r1", "a2", "r2"));
+		Assertions.assertNotNull(refresh("r2", "a3", "r3"));
+		Assertions.assertEquals(0, this.lookups.get(), "valid refresh tokens shouldn't need a reuse lookup");
+
+		Assertions.assertNull(refresh("r1", "a4", "r4"));
+		var authorization = this.service.findById("authorization-1");
+		Assertions.assertTrue(authorization.getAccessToken().isInvalidated());
+		Assertions.assertTrue(authorization.getRefreshToken().isInvalidated());
+		Assertions.assertNull(refresh("r3", "a5", "r5"));
+	}
+
+	@Test
+	void rotatesWithoutReadingTheStoredAuthorization() {
+		for (var id : new String[]{"authorization-1", "authorization-2"})
+			this.service.save(OAuth2Authorization.withRegisteredClient(this.client)
+					.id(id)
+					.principalName("jlong")
+					.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+					.authorizedScopes(Set.of("user.read"))
+					.token(accessToken(id + "-a1"))
+					.refreshToken(refreshToken(id + "-r1"))
+					.build());
+		// two refreshes in flight at once each rotate out the token they were found by
+		var first = this.service.findByToken("authorization-1-r1", OAuth2TokenType.REFRESH_TOKEN);
+		var second = this.service.findByToken("authorization-2-r1", OAuth2TokenType.REFRESH_TOKEN);
+		this.service.save(OAuth2Authorization.from(second).refreshToken(refreshToken("authorization-2-r2")).build());
+		this.service.save(OAuth2Authorization.from(first).refreshToken(refreshToken("authorization-1-r2")).build());
+		verify(this.stored, never()).findById(anyString());
+		Assertions.assertNull(this.service.findById("authorization-1").getAttribute("bootiful.previous-refresh-token"));
+
+		Assertions.assertNull(refresh("authorization-1-r1", "a3", "r3"));
+		Assertions.assertTrue(this.service.findById("authorization-1").getRefreshToken().isInvalidated());
+		Assertions.assertNull(refresh("authorization-2-r1", "a3", "r3"));
+		Assertions.assertTrue(this.service.findById("authorization-2").getRefreshToken().isInvalidated());
+	}
+
+	@Test
+	void publishesTheRevocationOfAReusedRefreshTokensAuthorization() {
+		var amqpTemplate = mock(AmqpTemplate.class);
+		var service = new RefreshTokenRotationAuthorizationService(
+				new RevocationPublishingAuthorizationService(new InMemoryOAuth2AuthorizationService(), amqpTemplate,
+						"revocations", Clock.systemUTC()),
+				this.repository, new BloomFilter(1000, 0.001));
+		var accessToken = accessToken("a1");
+		service.save(OAuth2Authorization.withRegisteredClient(this.client)
+				.id("authorization-1")
+				.principalName("jlong")
+				.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+				.authorizedScopes(Set.of("user.read"))
+				.refreshToken(refreshToken("r1"))
+				.build());
+		var found = service.findByToken("r1", OAuth2TokenType.REFRESH_TOKEN);
+		service.save(OAuth2Authorization.from(found)
+				.token(accessToken, metadata -> metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, Map.of("jti", "jti-1")))
+				.refreshToken(refreshToken("r2"))
+				.build());
+		verify(amqpTemplate, never()).convertAndSend(anyString(), anyString(), any(Object.class));
+
+		Assertions.assertNull(service.findByToken("r1", OAuth2TokenType.REFRESH_TOKEN));
+		verify(amqpTemplate).convertAndSend("revocations", "",
+				RevocationPublishingAuthorizationService.revocation("jti-1", accessToken.getExpiresAt().getEpochSecond()));
+	}
+
+	@Test
+	void rebuildsTheFilterFromTheRepository() throws Exception {
+		this.revoked.put(RefreshTokenRotationAuthorizationService.hash("r0"),
+				new RevokedRefreshToken(RefreshTokenRotationAuthorizationService.hash("r0"), "authorization-0", true, Instant.now().plusSeconds(60)));
+		this.service.afterPropertiesSet();
+		Assertions.assertNull(this.service.findByToken("r0", OAuth2TokenType.REFRESH_TOKEN));
+		Assertions.assertEquals(1, this.lookups.get());
+	}
+
+}
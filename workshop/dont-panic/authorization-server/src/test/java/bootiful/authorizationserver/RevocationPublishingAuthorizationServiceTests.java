@@ -0,0 +1,72 @@
+package bootiful.authorizationserver;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.server.authorization.InMemoryOAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class RevocationPublishingAuthorizationServiceTests {
+
+	private final Instant now = Instant.parse("2023-09-01T00:00:00Z");
+
+	private final AmqpTemplate amqpTemplate = mock(AmqpTemplate.class);
+
+	private final RevocationPublishingAuthorizationService service = new RevocationPublishingAuthorizationService(
+			new InMemoryOAuth2AuthorizationService(), this.amqpTemplate, "revocations", Clock.fixed(this.now, ZoneOffset.UTC));
+
+	private final RegisteredClient client = RegisteredClient.withId("crm-id")
+			.clientId("crm")
+			.clientSecret("{noop}crm")
+			.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+			.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+			.scope("user.read")
+			.build();
+
+	private OAuth2Authorization authorization(boolean invalidated) {
+		var token = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "a1", this.now,
+				this.now.plusSeconds(300), Set.of("user.read"));
+		return OAuth2Authorization.withRegisteredClient(this.client)
+				.id("authorization-1")
+				.principalName("crm")
+				.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+				.token(token, metadata -> {
+					metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, Map.of("jti", "jti-1"));
+					metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, invalidated);
+				})
+				.build();
+	}
+
+	@Test
+	void publishesRevokedAccessTokens() {
+		this.service.save(authorization(false));
+		verify(this.amqpTemplate, never()).convertAndSend(anyString(), anyString(), any(Object.class));
+		this.service.save(authorization(true));
+		verify(this.amqpTemplate).convertAndSend("revocations", "",
+				"jti-1 " + this.now.plusSeconds(300).getEpochSecond());
+	}
+
+	@Test
+	void publishesTheAccessTokensOfRemovedAuthorizations() {
+		var authorization = authorization(false);
+		this.service.save(authorization);
+		this.service.remove(authorization);
+		verify(this.amqpTemplate).convertAndSend("revocations", "",
+				RevocationPublishingAuthorizationService.revocation("jti-1", this.now.plusSeconds(300).getEpochSecond()));
+	}
+}
@@ -0,0 +1,148 @@
+package bootiful.authorizationserver;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class WriteBehindOAuth2AuthorizationServiceTests {
+
+	private final JdbcOperations jdbc = mock(JdbcOperations.class);
+
+	private final RegisteredClient client = RegisteredClient.withId("crm-id")
+			.clientId("crm")
+			.clientSecret("{noop}crm")
+			.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+			.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+			.redirectUri("http://127.0.0.1:8082/login/oauth2/code/spring")
+			.scope("user.read")
+			.build();
+
+	private final WriteBehindOAuth2AuthorizationService service = new WriteBehindOAuth2AuthorizationService(
+			this.jdbc, mock(RegisteredClientRepository.class), 2, 10, Duration.ofMillis(100));
+
+	private OAuth2Authorization authorization(AuthorizationGrantType grantType) {
+		var now = Instant.now();
+		var token = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, UUID.randomUUID().toString(),
+				now, now.plusSeconds(300), Set.of("user.read"));
+		return OAuth2Authorization.withRegisteredClient(this.client)
+				.id(UUID.randomUUID().toString())
+				.principalName("crm")
+				.authorizationGrantType(grantType)
+				.authorizedScopes(Set.of("user.read"))
+				.token(token)
+				.build();
+	}
+
+	@Test
+	void queuesClientCredentialsAuthorizationsAndWritesThemInABatch() {
+		var first = authorization(AuthorizationGrantType.CLIENT_CREDENTIALS);
+		var second = authorization(AuthorizationGrantType.CLIENT_CREDENTIALS);
+		this.service.save(first);
+		this.service.save(second);
+		verify(this.jdbc, never()).update(anyString(), any(PreparedStatementSetter.class));
+		Assertions.assertSame(first, this.service.findById(first.getId()));
+		Assertions.assertSame(second, this.service.findByToken(
+				second.getAccessToken().getToken().getTokenValue(), OAuth2TokenType.ACCESS_TOKEN));
+
+		this.service.flush();
+		verify(this.jdbc, times(1)).batchUpdate(contains("on conflict (id) do update"), any(BatchPreparedStatementSetter.class));
+		Assertions.assertEquals(0, this.service.queued());
+	}
+
+	@Test
+	void savesInlineWhenTheQueueIsFull() {
+		this.service.save(authorization(AuthorizationGrantType.CLIENT_CREDENTIALS));
+		this.service.save(authorization(AuthorizationGrantType.CLIENT_CREDENTIALS));
+		this.service.save(authorization(AuthorizationGrantType.CLIENT_CREDENTIALS));
+		Assertions.assertEquals(2, this.service.queued());
+		verify(this.jdbc, times(1)).update(contains("INSERT INTO oauth2_authorization"), any(PreparedStatementSetter.class));
+	}
+
+	@Test
+	void savesOtherGrantsInline() {
+		this.service.save(authorization(AuthorizationGrantType.AUTHORIZATION_CODE));
+		Assertions.assertEquals(0, this.service.queued());
+		verify(this.jdbc, times(1)).update(contains("INSERT INTO oauth2_authorization"), any(PreparedStatementSetter.class));
+	}
+
+	@Test
+	void writesTheLatestVersionOfAnAuthorizationSavedTwice() {
+		var authorization = authorization(AuthorizationGrantType.CLIENT_CREDENTIALS);
+		this.service.save(authorization);
+		var revoked = OAuth2Authorization.from(authorization)
+				.token(authorization.getAccessToken().getToken(),
+						metadata -> metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, true))
+				.build();
+		this.service.save(revoked);
+		Assertions.assertEquals(1, this.service.queued());
+		Assertions.assertSame(revoked, this.service.findById(authorization.getId()));
+		this.service.flush();
+		Assertions.assertEquals(0, this.service.queued());
+	}
+
+	@Test
+	void keepsAuthorizationsItCouldNotWriteQueued() {
+		var authorization = authorization(AuthorizationGrantType.CLIENT_CREDENTIALS);
+		this.service.save(authorization);
+		doThrow(new TransientDataAccessResourceException("down"))
+				.when(this.jdbc).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+		this.service.flush();
+		Assertions.assertEquals(1, this.service.queued());
+		Assertions.assertSame(authorization, this.service.findById(authorization.getId()));
+
+		reset(this.jdbc);
+		this.service.flush();
+		Assertions.assertEquals(0, this.service.queued());
+	}
+
+	@Test
+	void deletesAnAuthorizationRemovedWhileItWasBeingWritten() {
+		var authorization = authorization(AuthorizationGrantType.CLIENT_CREDENTIALS);
+		this.service.save(authorization);
+		doAnswer(invocation -> {
+			this.service.remove(authorization);
+			return new int[]{1};
+		}).when(this.jdbc).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+		this.service.flush();
+		Assertions.assertEquals(0, this.service.queued());
+		verify(this.jdbc, times(2)).update(contains("DELETE FROM oauth2_authorization"), any(PreparedStatementSetter.class));
+	}
+
+	@Test
+	void doesNotWriteAnAuthorizationRemovedBeforeItsTurn() {
+		var authorization = authorization(AuthorizationGrantType.CLIENT_CREDENTIALS);
+		this.service.save(authorization);
+		this.service.remove(authorization);
+		this.service.flush();
+		verify(this.jdbc, never()).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+		verify(this.jdbc, times(1)).update(contains("DELETE FROM oauth2_authorization"), any(PreparedStatementSetter.class));
+	}
+
+}
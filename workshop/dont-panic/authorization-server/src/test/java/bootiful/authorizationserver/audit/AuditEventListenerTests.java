@@ -0,0 +1,81 @@
+package bootiful.authorizationserver.audit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.authentication.event.InteractiveAuthenticationSuccessEvent;
+import org.springframework.security.authentication.event.LogoutSuccessEvent;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AccessTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.web.authentication.session.SessionFixationProtectionEvent;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+class AuditEventListenerTests {
+
+	private final AuditRingBuffer buffer = new AuditRingBuffer(16);
+
+	private final AuditEventListener listener = new AuditEventListener(this.buffer);
+
+	private final RegisteredClient client = RegisteredClient.withId("crm-id")
+			.clientId("crm")
+			.clientSecret("{noop}crm")
+			.clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+			.authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+			.scope("user.read")
+			.build();
+
+	@Test
+	void recordsAFormLoginOnce() {
+		var user = UsernamePasswordAuthenticationToken.authenticated("jlong", null, AuthorityUtils.NO_AUTHORITIES);
+		this.listener.onApplicationEvent(new AuthenticationSuccessEvent(user));
+		this.listener.onApplicationEvent(new SessionFixationProtectionEvent(user, "old", "new"));
+		this.listener.onApplicationEvent(new InteractiveAuthenticationSuccessEvent(user, getClass()));
+		var records = drain();
+		Assertions.assertEquals(List.of("login"), records.stream().map(AuditRecord::type).toList());
+		Assertions.assertEquals("jlong", records.get(0).principal());
+	}
+
+	@Test
+	void recordsLogoutsAndFailuresUnderTheirOwnTypes() {
+		var user = UsernamePasswordAuthenticationToken.authenticated("jlong", null, AuthorityUtils.NO_AUTHORITIES);
+		this.listener.onApplicationEvent(new LogoutSuccessEvent(user));
+		this.listener.onApplicationEvent(new AuthenticationFailureBadCredentialsEvent(
+				UsernamePasswordAuthenticationToken.unauthenticated("jlong", "nope"), new BadCredentialsException("nope")));
+		var records = drain();
+		Assertions.assertEquals(List.of("logout", "authentication_failure"), records.stream().map(AuditRecord::type).toList());
+		Assertions.assertEquals("BadCredentialsException", records.get(1).detail());
+	}
+
+	@Test
+	void recordsIssuedTokensButNotClientAuthentication() {
+		var clientPrincipal = new OAuth2ClientAuthenticationToken(this.client,
+				ClientAuthenticationMethod.CLIENT_SECRET_BASIC, "crm");
+		var accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "a1", Instant.now(),
+				Instant.now().plusSeconds(300), Set.of("user.read"));
+		this.listener.onApplicationEvent(new AuthenticationSuccessEvent(clientPrincipal));
+		this.listener.onApplicationEvent(new AuthenticationSuccessEvent(
+				new OAuth2AccessTokenAuthenticationToken(this.client, clientPrincipal, accessToken)));
+		var records = drain();
+		Assertions.assertEquals(List.of("token_issued"), records.stream().map(AuditRecord::type).toList());
+		Assertions.assertEquals("crm", records.get(0).clientId());
+	}
+
+	private List<AuditRecord> drain() {
+		var records = new ArrayList<AuditRecord>();
+		this.buffer.drain(records::add, 16);
+		return records;
+	}
+
+}
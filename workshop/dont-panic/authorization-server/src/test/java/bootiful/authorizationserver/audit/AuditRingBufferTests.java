@@ -0,0 +1,53 @@
+package bootiful.authorizationserver.audit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+class AuditRingBufferTests {
+
+	@Test
+	void dropsEventsInsteadOfBlockingWhenFull() {
+		var buffer = new AuditRingBuffer(4);
+		for (var i = 0; i < 6; i++)
+			buffer.offer(i, "login", "user-" + i, null, null);
+		Assertions.assertEquals(2, buffer.dropped());
+		var drained = new ArrayList<AuditRecord>();
+		Assertions.assertEquals(4, buffer.drain(drained::add, 10));
+		Assertions.assertEquals("user-0", drained.get(0).principal());
+		Assertions.assertEquals("user-3", drained.get(3).principal());
+		Assertions.assertTrue(buffer.offer(6, "login", "user-6", null, null));
+		Assertions.assertEquals(1, buffer.drain(drained::add, 10));
+	}
+
+	@Test
+	void deliversEveryEventOfferedConcurrentlyExactlyOnce() throws Exception {
+		var buffer = new AuditRingBuffer(1024);
+		var producers = 8;
+		var perProducer = 10_000;
+		var start = new CountDownLatch(1);
+		var executor = Executors.newFixedThreadPool(producers);
+		for (var p = 0; p < producers; p++) {
+			var producer = p;
+			executor.submit(() -> {
+				start.await();
+				for (var i = 0; i < perProducer; i++)
+					while (!buffer.offer(i, "login", producer + ":" + i, null, null))
+						Thread.onSpinWait();
+				return null;
+			});
+		}
+		var seen = new HashSet<String>();
+		start.countDown();
+		while (seen.size() < producers * perProducer)
+			buffer.drain(record -> Assertions.assertTrue(seen.add(record.principal())), 256);
+		executor.shutdown();
+		Assertions.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		Assertions.assertEquals(0, buffer.size());
+	}
+}
@@ -0,0 +1,67 @@
+package bootiful.authorizationserver.audit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+class MappedFileAuditSinkTests {
+
+	@TempDir
+	Path directory;
+
+	private static AuditRecord record(int i) {
+		return new AuditRecord(1693526400000L + 1000L * i, "token_issued", "crm", "crm", "scope=user.read\texpires");
+	}
+
+	@Test
+	void appendsLinesAndTruncatesTheFileOnClose() throws Exception {
+		var sink = new MappedFileAuditSink(this.directory, 1024 * 1024, 64, 3);
+		for (var i = 0; i < 10; i++)
+			sink.write(record(i));
+		var file = sink.currentFile();
+		sink.close();
+		var lines = Files.readAllLines(file);
+		Assertions.assertEquals(10, lines.size());
+		Assertions.assertEquals("2023-09-01T00:00:00Z\ttoken_issued\tcrm\tcrm\tscope=user.read expires", lines.get(0));
+		Assertions.assertEquals(10L * record(0).toLine().length(), Files.size(file));
+	}
+
+	@Test
+	void rollsFilesAndKeepsTheNewest() throws Exception {
+		var line = record(0).toLine().length();
+		var sink = new MappedFileAuditSink(this.directory, line * 2L, line, 3);
+		for (var i = 0; i < 10; i++)
+			sink.write(record(i));
+		sink.close();
+		try (var files = Files.list(this.directory)) {
+			Assertions.assertEquals(3, files.count());
+		}
+		Assertions.assertTrue(Files.exists(this.directory.resolve("audit.5.log")));
+		Assertions.assertEquals(2, Files.readAllLines(this.directory.resolve("audit.4.log")).size());
+		var next = new MappedFileAuditSink(this.directory, line * 2L, line, 3);
+		Assertions.assertEquals(this.directory.resolve("audit.6.log"), next.currentFile());
+		next.close();
+	}
+
+	@Test
+	void keepsTheTrailToItsOwner() throws Exception {
+		var sink = new MappedFileAuditSink(this.directory.resolve("audit"), 1024, 64, 3);
+		sink.write(record(0));
+		sink.close();
+		Assertions.assertEquals(PosixFilePermissions.fromString("rwx------"),
+				Files.getPosixFilePermissions(this.directory.resolve("audit")));
+		Assertions.assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(sink.currentFile()));
+
+		var shared = Files.createDirectory(this.directory.resolve("shared"),
+				PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwxrwxrwx")));
+		Files.setPosixFilePermissions(shared, PosixFilePermissions.fromString("rwxrwxrwx"));
+		Assertions.assertThrows(IOException.class, () -> new MappedFileAuditSink(shared, 1024, 64, 3));
+		var link = Files.createSymbolicLink(this.directory.resolve("link"), this.directory.resolve("audit"));
+		Assertions.assertThrows(IOException.class, () -> new MappedFileAuditSink(link, 1024, 64, 3));
+	}
+}
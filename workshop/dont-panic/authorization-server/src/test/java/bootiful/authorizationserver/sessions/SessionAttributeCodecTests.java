@@ -0,0 +1,58 @@
+package bootiful.authorizationserver.sessions;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+class SessionAttributeCodecTests {
+
+	private final SessionAttributeCodec codec = new SessionAttributeCodec(getClass().getClassLoader());
+
+	private static SecurityContextImpl loggedIn() {
+		var user = (User) User.withUsername("jlong").password("{noop}password").roles("USER").build();
+		user.eraseCredentials();
+		var token = UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities());
+		token.setDetails(new WebAuthenticationDetails("0:0:0:0:0:0:0:1", "745F400BA9E8317369ECFD9B9E826695"));
+		return new SecurityContextImpl(token);
+	}
+
+	@Test
+	void roundTripsTheSecurityContext() {
+		var context = loggedIn();
+		var encoded = this.codec.encode(context);
+		var serialized = new SerializingConverter().convert(context);
+		Assertions.assertEquals(context, this.codec.decode(encoded));
+		Assertions.assertTrue(encoded.length * 4 < serialized.length,
+				() -> "compact: " + encoded.length + " bytes, java serialization: " + serialized.length + " bytes");
+	}
+
+	@Test
+	void roundTripsPlainValuesAndTheCsrfToken() {
+		var token = (DefaultCsrfToken) this.codec.decode(this.codec.encode(new DefaultCsrfToken("X-CSRF-TOKEN", "_csrf", "abc")));
+		Assertions.assertEquals("abc", token.getToken());
+		Assertions.assertEquals("_csrf", token.getParameterName());
+		var values = Map.of("a", List.of(1, 2L, "three"), "b", true);
+		Assertions.assertEquals(values, this.codec.decode(this.codec.encode(values)));
+	}
+
+	@Test
+	void fallsBackToJavaSerialization() {
+		Assertions.assertEquals(Locale.CANADA, this.codec.decode(this.codec.encode(Locale.CANADA)));
+	}
+
+	@Test
+	void readsAttributesWrittenBeforeTheCodec() {
+		var context = loggedIn();
+		Assertions.assertEquals(context, this.codec.decode(new SerializingConverter().convert(context)));
+	}
+
+}
@@ -0,0 +1,74 @@
+package bootiful.authorizationserver.startup;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.DefaultApplicationArguments;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class StartupTaskRunnerTests {
+
+	private final List<String> finished = new CopyOnWriteArrayList<>();
+
+	private StartupTask task(String name) {
+		return StartupTask.of(name, () -> this.finished.add(name));
+	}
+
+	private static void start(StartupTaskRunner runner) {
+		runner.afterSingletonsInstantiated();
+		runner.run(new DefaultApplicationArguments());
+	}
+
+	@Test
+	void runsIndependentTasksConcurrently() {
+		// neither task can finish unless the other is running at the same time
+		var latch = new CountDownLatch(2);
+		StartupTask.Action action = () -> {
+			latch.countDown();
+			Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+		};
+		start(new StartupTaskRunner(List.of(StartupTask.of("users", action), StartupTask.of("clients", action)), 4));
+		Assertions.assertEquals(0, latch.getCount());
+	}
+
+	@Test
+	void runsTasksAfterTheirDependencies() {
+		start(new StartupTaskRunner(List.of(task("clients").after("keys", "users"), task("users").after("keys"), task("keys")), 4));
+		Assertions.assertEquals(List.of("keys", "users", "clients"), this.finished);
+	}
+
+	@Test
+	void failsTheStartupWhenARequiredTaskFails() {
+		var runner = new StartupTaskRunner(List.of(StartupTask.of("keys", () -> {
+			throw new IllegalStateException("no database");
+		}), task("clients").after("keys")), 4);
+		var failure = Assertions.assertThrows(IllegalStateException.class, () -> start(runner));
+		Assertions.assertEquals("the startup task keys failed", failure.getCause().getMessage());
+		Assertions.assertTrue(this.finished.isEmpty());
+	}
+
+	@Test
+	void doesNotWaitForOptionalTasks() {
+		var release = new CountDownLatch(1);
+		var optional = StartupTask.of("warm-up", () -> {
+			release.await();
+			throw new IllegalStateException("never mind");
+		}).optional();
+		start(new StartupTaskRunner(List.of(optional, task("users")), 4));
+		Assertions.assertEquals(List.of("users"), this.finished);
+		release.countDown();
+	}
+
+	@Test
+	void rejectsTasksThatCannotBeScheduled() {
+		Assertions.assertThrows(IllegalStateException.class,
+				() -> new StartupTaskRunner(List.of(task("clients").after("keys")), 4));
+		Assertions.assertThrows(IllegalStateException.class,
+				() -> new StartupTaskRunner(List.of(task("users"), task("users")), 4));
+		var cycle = new StartupTaskRunner(List.of(task("a").after("b"), task("b").after("a")), 4);
+		Assertions.assertThrows(IllegalStateException.class, cycle::afterSingletonsInstantiated);
+	}
+}
@@ -0,0 +1,29 @@
+package bootiful.authorizationserver.warmup;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+class WarmUpTests {
+
+	@Test
+	void runsEveryIterationAndReportsTheSteadyState() throws Exception {
+		var runs = new AtomicInteger();
+		var result = WarmUp.run("counting", 1000, i -> Assertions.assertEquals(runs.getAndIncrement(), i));
+		Assertions.assertEquals(1000, runs.get());
+		Assertions.assertEquals(1000, result.iterations());
+		Assertions.assertTrue(result.p50().compareTo(result.p99()) <= 0);
+		Assertions.assertTrue(result.p99().compareTo(result.elapsed()) <= 0);
+	}
+
+	@Test
+	void stopsAtTheFirstFailure() {
+		var runs = new AtomicInteger();
+		Assertions.assertThrows(IllegalStateException.class, () -> WarmUp.run("failing", 10, i -> {
+			if (runs.incrementAndGet() == 3)
+				throw new IllegalStateException("no keys");
+		}));
+		Assertions.assertEquals(3, runs.get());
+	}
+}
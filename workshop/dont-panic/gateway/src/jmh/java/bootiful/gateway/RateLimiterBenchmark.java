@@ -0,0 +1,52 @@
+package bootiful.gateway;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// LocalRateLimiter decisions from 16 threads at once: all against one user's bucket (the
+// worst case for compare-and-set contention) and spread across 10,000 users. ./gradlew jmh
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class RateLimiterBenchmark {
+
+    private static final int USERS = 10_000;
+
+    private LocalRateLimiter limiter;
+
+    private String[] users;
+
+    @Setup
+    public void setup() {
+        this.limiter = new LocalRateLimiter(1_000, 100, USERS * 2, System::nanoTime);
+        this.users = new String[USERS];
+        for (var i = 0; i < USERS; i++)
+            this.users[i] = "user-" + i;
+    }
+
+    @Benchmark
+    public boolean oneUser() {
+        return this.limiter.tryAcquire("email", "jlong").isAllowed();
+    }
+
+    @Benchmark
+    public boolean manyUsers() {
+        return this.limiter.tryAcquire("email", this.users[ThreadLocalRandom.current().nextInt(USERS)]).isAllowed();
+    }
+}
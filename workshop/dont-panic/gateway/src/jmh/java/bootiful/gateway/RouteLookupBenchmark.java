@@ -0,0 +1,94 @@
+package bootiful.gateway;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// route lookup with the gateway's linear predicate scan against the prefix trie, for a request
+// that matches the last of n prefix routes (the scan's worst case). ./gradlew jmh
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteLookupBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int routes;
+
+    private LinearScan linear;
+
+    private PrefixTrieRoutePredicateHandlerMapping trie;
+
+    private ServerWebExchange exchange;
+
+    @Setup
+    public void setup() {
+        var predicates = new PathRoutePredicateFactory();
+        var list = new ArrayList<Route>(this.routes);
+        for (var i = 0; i < this.routes; i++) {
+            var prefix = "/service-" + i + "/";
+            list.add(Route.async()
+                    .id("service-" + i)
+                    .uri("http://localhost:" + (9000 + i))
+                    .predicate(predicates.apply(c -> c.setPatterns(List.of(prefix + "**"))))
+                    .metadata(Map.of(RouteTable.PATH_PREFIX_METADATA, prefix))
+                    .build());
+        }
+        RouteLocator locator = () -> Flux.fromIterable(list);
+        var webHandler = new FilteringWebHandler(List.of());
+        this.linear = new LinearScan(webHandler, locator);
+        this.trie = new PrefixTrieRoutePredicateHandlerMapping(webHandler, locator,
+                new GlobalCorsProperties(), new StandardEnvironment());
+        this.exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.get("/service-" + (this.routes - 1) + "/customers/42"));
+    }
+
+    @Benchmark
+    public Route linear() {
+        return this.linear.lookupRoute(this.exchange).block();
+    }
+
+    @Benchmark
+    public Route trie() {
+        return this.trie.lookupRoute(this.exchange).block();
+    }
+
+    static class LinearScan extends RoutePredicateHandlerMapping {
+
+        LinearScan(FilteringWebHandler webHandler, RouteLocator routeLocator) {
+            super(webHandler, routeLocator, new GlobalCorsProperties(), new StandardEnvironment());
+        }
+
+        @Override
+        protected Mono<Route> lookupRoute(ServerWebExchange exchange) {
+            return super.lookupRoute(exchange);
+        }
+    }
+}
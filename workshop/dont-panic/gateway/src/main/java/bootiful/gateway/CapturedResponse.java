@@ -0,0 +1,28 @@
+package bootiful.gateway;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import reactor.core.publisher.Mono;
+
+// a fully buffered downstream response that can be written again to other exchanges
+record CapturedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body) {
+
+    // hop-by-hop headers belong to the original connection, and cookies to the original client
+    static CapturedResponse of(HttpStatusCode status, HttpHeaders headers, byte[] body) {
+        var copy = new HttpHeaders();
+        copy.putAll(headers);
+        copy.remove(HttpHeaders.TRANSFER_ENCODING);
+        copy.remove(HttpHeaders.CONNECTION);
+        copy.remove(HttpHeaders.SET_COOKIE);
+        copy.setContentLength(body.length);
+        return new CapturedResponse(status, HttpHeaders.readOnlyHttpHeaders(copy), body);
+    }
+
+    Mono<Void> writeTo(ServerHttpResponse response) {
+        response.setStatusCode(this.status);
+        response.getHeaders().putAll(this.headers);
+        response.getHeaders().remove(HttpHeaders.TRANSFER_ENCODING);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(this.body)));
+    }
+}
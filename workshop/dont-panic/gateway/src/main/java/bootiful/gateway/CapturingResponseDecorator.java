@@ -0,0 +1,62 @@
+package bootiful.gateway;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+// buffers the downstream response body (when it's small enough and the predicate agrees),
+// hands the captured response to a callback, and writes whatever the callback returns
+class CapturingResponseDecorator extends ServerHttpResponseDecorator {
+
+    private final long maxBytes;
+
+    private final Predicate<ServerHttpResponse> capture;
+
+    private final UnaryOperator<CapturedResponse> captured;
+
+    CapturingResponseDecorator(ServerHttpResponse delegate, long maxBytes,
+                               Predicate<ServerHttpResponse> capture,
+                               UnaryOperator<CapturedResponse> captured) {
+        super(delegate);
+        this.maxBytes = maxBytes;
+        this.capture = capture;
+        this.captured = captured;
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+        var contentLength = getHeaders().getContentLength();
+        if (contentLength > this.maxBytes || !this.capture.test(getDelegate()))
+            return super.writeWith(body);
+        return Flux.from(body)
+                .collectList()
+                .flatMap(buffers -> {
+                    var size = buffers.stream().mapToLong(DataBuffer::readableByteCount).sum();
+                    if (size > this.maxBytes)
+                        return super.writeWith(Flux.fromIterable(buffers));
+                    var bytes = new byte[(int) size];
+                    var offset = 0;
+                    for (var buffer : buffers) {
+                        var count = buffer.readableByteCount();
+                        buffer.read(bytes, offset, count);
+                        offset += count;
+                        DataBufferUtils.release(buffer);
+                    }
+                    return this.captured
+                            .apply(CapturedResponse.of(getStatusCode(), getHeaders(), bytes))
+                            .writeTo(getDelegate());
+                });
+    }
+
+    @Override
+    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+        return writeWith(Flux.from(body).flatMapSequential(p -> p));
+    }
+}
@@ -0,0 +1,306 @@
+package bootiful.gateway;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.IdGenerator;
+import org.springframework.util.JdkIdGenerator;
+import org.springframework.web.server.WebSession;
+import org.springframework.web.server.session.WebSessionStore;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+// keeps each session as the bytes SessionCodec makes of its attributes rather than as a graph of
+// live objects, which is most of what an oauth2Login session costs on the heap. the sessions sit
+// in an access-ordered map bounded both by count and by total encoded size, so under pressure
+// the least recently used session is dropped instead of new logins being refused. with offHeap
+// the bytes go into direct buffers, outside the heap the collector has to walk
+class CompactWebSessionStore implements WebSessionStore {
+
+    private static final Log log = LogFactory.getLog(CompactWebSessionStore.class);
+
+    private static final IdGenerator idGenerator = new JdkIdGenerator();
+
+    private static final Duration EXPIRED_CHECK_INTERVAL = Duration.ofSeconds(60);
+
+    private final LinkedHashMap<String, Stored> sessions = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final SessionCodec codec;
+
+    private final int maxSessions;
+
+    private final long maxBytes;
+
+    private final boolean offHeap;
+
+    private final Duration defaultMaxIdleTime;
+
+    private final Clock clock;
+
+    private long bytes;
+
+    private Instant nextExpiredCheck;
+
+    CompactWebSessionStore(SessionCodec codec, int maxSessions, long maxBytes, boolean offHeap,
+                           Duration defaultMaxIdleTime, Clock clock) {
+        Assert.isTrue(maxSessions > 0 && maxBytes > 0, "the session limits must be positive");
+        this.codec = codec;
+        this.maxSessions = maxSessions;
+        this.maxBytes = maxBytes;
+        this.offHeap = offHeap;
+        this.defaultMaxIdleTime = defaultMaxIdleTime;
+        this.clock = clock;
+        this.nextExpiredCheck = clock.instant().plus(EXPIRED_CHECK_INTERVAL);
+    }
+
+    // what's kept for a session between requests
+    private record Stored(byte[] heap, ByteBuffer direct, int size, Instant creationTime,
+                          Instant lastAccessTime, Duration maxIdleTime) {
+
+        byte[] bytes() {
+            if (this.heap != null)
+                return this.heap;
+            var bytes = new byte[this.size];
+            this.direct.duplicate().get(bytes);
+            return bytes;
+        }
+
+        Stored accessedAt(Instant lastAccessTime) {
+            return new Stored(this.heap, this.direct, this.size, this.creationTime, lastAccessTime, this.maxIdleTime);
+        }
+
+        boolean isExpired(Instant now) {
+            return !this.maxIdleTime.isNegative() && now.minus(this.maxIdleTime).isAfter(this.lastAccessTime);
+        }
+    }
+
+    @Override
+    public Mono<WebSession> createWebSession() {
+        var now = this.clock.instant();
+        removeExpiredSessions(now);
+        return Mono.fromSupplier(() -> new CompactWebSession(idGenerator.generateId().toString(),
+                new ConcurrentHashMap<>(), now, now, this.defaultMaxIdleTime, State.NEW));
+    }
+
+    @Override
+    public Mono<WebSession> retrieveSession(String id) {
+        var now = this.clock.instant();
+        Stored stored;
+        synchronized (this.sessions) {
+            stored = this.sessions.get(id);
+            if (stored == null)
+                return Mono.empty();
+            if (stored.isExpired(now)) {
+                remove(id);
+                return Mono.empty();
+            }
+            stored = stored.accessedAt(now);
+            this.sessions.put(id, stored);
+        }
+        Map<String, Object> attributes;
+        try {
+            attributes = this.codec.decode(stored.bytes());
+        }//
+        catch (RuntimeException e) {
+            log.warn("couldn't decode session " + id + ", so it's been dropped", e);
+            synchronized (this.sessions) {
+                remove(id);
+            }
+            return Mono.empty();
+        }
+        return Mono.just(new CompactWebSession(id, new ConcurrentHashMap<>(attributes), stored.creationTime(),
+                now, stored.maxIdleTime(), State.STARTED));
+    }
+
+    @Override
+    public Mono<Void> removeSession(String id) {
+        synchronized (this.sessions) {
+            remove(id);
+        }
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<WebSession> updateLastAccessTime(WebSession webSession) {
+        return Mono.fromSupplier(() -> {
+            var session = (CompactWebSession) webSession;
+            session.lastAccessTime = this.clock.instant();
+            return session;
+        });
+    }
+
+    int size() {
+        synchronized (this.sessions) {
+            return this.sessions.size();
+        }
+    }
+
+    long sizeInBytes() {
+        synchronized (this.sessions) {
+            return this.bytes;
+        }
+    }
+
+    private void store(CompactWebSession session) {
+        var encoded = this.codec.encode(session.attributes);
+        ByteBuffer direct = null;
+        if (this.offHeap) {
+            direct = ByteBuffer.allocateDirect(encoded.length);
+            direct.put(encoded).flip();
+        }
+        var stored = new Stored(this.offHeap ? null : encoded, direct, encoded.length,
+                session.creationTime, session.lastAccessTime, session.maxIdleTime);
+        synchronized (this.sessions) {
+            remove(session.id);
+            this.sessions.put(session.id, stored);
+            this.bytes += stored.size();
+            var eldest = this.sessions.entrySet().iterator();
+            while (this.sessions.size() > this.maxSessions || (this.bytes > this.maxBytes && this.sessions.size() > 1)) {
+                var evicted = eldest.next();
+                this.bytes -= evicted.getValue().size();
+                eldest.remove();
+            }
+        }
+    }
+
+    // callers hold the lock on sessions
+    private void remove(String id) {
+        var removed = this.sessions.remove(id);
+        if (removed != null)
+            this.bytes -= removed.size();
+    }
+
+    private void removeExpiredSessions(Instant now) {
+        synchronized (this.sessions) {
+            if (now.isBefore(this.nextExpiredCheck))
+                return;
+            this.nextExpiredCheck = now.plus(EXPIRED_CHECK_INTERVAL);
+            var iterator = this.sessions.values().iterator();
+            while (iterator.hasNext()) {
+                var stored = iterator.next();
+                if (stored.isExpired(now)) {
+                    this.bytes -= stored.size();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private enum State {NEW, STARTED, EXPIRED}
+
+    private class CompactWebSession implements WebSession {
+
+        private final Map<String, Object> attributes;
+
+        private final Instant creationTime;
+
+        private final AtomicReference<State> state;
+
+        private volatile String id;
+
+        private volatile Instant lastAccessTime;
+
+        private volatile Duration maxIdleTime;
+
+        CompactWebSession(String id, Map<String, Object> attributes, Instant creationTime,
+                          Instant lastAccessTime, Duration maxIdleTime, State state) {
+            this.id = id;
+            this.attributes = attributes;
+            this.creationTime = creationTime;
+            this.lastAccessTime = lastAccessTime;
+            this.maxIdleTime = maxIdleTime;
+            this.state = new AtomicReference<>(state);
+        }
+
+        @Override
+        public String getId() {
+            return this.id;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return this.attributes;
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return this.creationTime;
+        }
+
+        @Override
+        public Instant getLastAccessTime() {
+            return this.lastAccessTime;
+        }
+
+        @Override
+        public void setMaxIdleTime(Duration maxIdleTime) {
+            this.maxIdleTime = maxIdleTime;
+        }
+
+        @Override
+        public Duration getMaxIdleTime() {
+            return this.maxIdleTime;
+        }
+
+        @Override
+        public void start() {
+            this.state.compareAndSet(State.NEW, State.STARTED);
+        }
+
+        @Override
+        public boolean isStarted() {
+            return this.state.get() == State.STARTED || !this.attributes.isEmpty();
+        }
+
+        @Override
+        public Mono<Void> changeSessionId() {
+            return Mono.fromRunnable(() -> {
+                var previous = this.id;
+                this.id = idGenerator.generateId().toString();
+                removeSession(previous);
+                if (isStarted())
+                    store(this);
+            });
+        }
+
+        @Override
+        public Mono<Void> invalidate() {
+            this.state.set(State.EXPIRED);
+            this.attributes.clear();
+            return removeSession(this.id);
+        }
+
+        @Override
+        public Mono<Void> save() {
+            return Mono.defer(() -> {
+                if (!this.attributes.isEmpty())
+                    this.state.compareAndSet(State.NEW, State.STARTED);
+                if (this.state.get() == State.EXPIRED)
+                    return Mono.error(new IllegalStateException("the session has been invalidated"));
+                if (isStarted())
+                    store(this);
+                return Mono.empty();
+            });
+        }
+
+        @Override
+        public boolean isExpired() {
+            if (this.state.get() == State.EXPIRED)
+                return true;
+            if (!this.maxIdleTime.isNegative() &&
+                clock.instant().minus(this.maxIdleTime).isAfter(this.lastAccessTime)) {
+                this.state.set(State.EXPIRED);
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package bootiful.gateway;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import reactor.netty.http.HttpProtocol;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+// connection pools for the downstream services, keyed by route id. protocols is http11,
+// h2c (HTTP/2 with prior knowledge), or h2c,http11 (HTTP/1.1 upgraded to HTTP/2 when the
+// downstream agrees). routes without an entry share the gateway's default client
+@ConfigurationProperties("bootiful.gateway.downstreams")
+record DownstreamProperties(@DefaultValue Map<String, Pool> routes) {
+
+    record Pool(
+            @DefaultValue("500") int maxConnections,
+            @DefaultValue("1000") int pendingAcquireMaxCount,
+            @DefaultValue("45s") Duration pendingAcquireTimeout,
+            @DefaultValue("30s") Duration maxIdleTime,
+            @DefaultValue("10m") Duration maxLifeTime,
+            @DefaultValue("30s") Duration evictInBackground,
+            @DefaultValue("http11") List<HttpProtocol> protocols) {
+    }
+}
@@ -1,29 +1,105 @@
 package bootiful.gateway;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.config.HttpClientSslConfigurer;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Clock;
+import java.util.List;
 
 @Configuration
+@EnableConfigurationProperties(DownstreamProperties.class)
 class GatewayConfiguration {
 
+    // replaces the gateway's own routing filter, which spring.cloud.gateway.global-filter.netty-routing.enabled switches off
+    @Bean
+    PooledNettyRoutingFilter pooledNettyRoutingFilter(HttpClient httpClient,
+                                                      ObjectProvider<List<HttpHeadersFilter>> headersFilters,
+                                                      HttpClientProperties httpClientProperties,
+                                                      ServerProperties serverProperties,
+                                                      HttpClientSslConfigurer httpClientSslConfigurer,
+                                                      ObjectProvider<HttpClientCustomizer> httpClientCustomizers,
+                                                      DownstreamProperties downstreamProperties) {
+        return new PooledNettyRoutingFilter(httpClient, headersFilters, httpClientProperties, serverProperties,
+                httpClientSslConfigurer, httpClientCustomizers.orderedStream().toList(), downstreamProperties);
+    }
+
+    @Bean
+    PrefixTrieRoutePredicateHandlerMapping routePredicateHandlerMapping(FilteringWebHandler webHandler,
+                                                                        RouteLocator routeLocator,
+                                                                        GlobalCorsProperties globalCorsProperties,
+                                                                        Environment environment) {
+        return new PrefixTrieRoutePredicateHandlerMapping(webHandler, routeLocator, globalCorsProperties, environment);
+    }
+
+    @Bean
+    ResponseCachingFilter responseCachingFilter(MeterRegistry meterRegistry,
+                                                @Value("${bootiful.gateway.cache.max-size:16MB}") DataSize maxSize,
+                                                @Value("${bootiful.gateway.cache.max-entry-size:1MB}") DataSize maxEntrySize) {
+        return new ResponseCachingFilter(maxSize.toBytes(), maxEntrySize.toBytes(), meterRegistry, Clock.systemUTC());
+    }
+
     @Bean
-    RouteLocator gateway(RouteLocatorBuilder rlb) {
+    RequestCoalescingFilter requestCoalescingFilter(MeterRegistry meterRegistry,
+                                                    @Value("${bootiful.gateway.coalescing.paths:}") List<String> paths,
+                                                    @Value("${bootiful.gateway.coalescing.max-size:1MB}") DataSize maxSize) {
+        var patterns = paths.stream().map(PathPatternParser.defaultInstance::parse).toList();
+        return new RequestCoalescingFilter(patterns, maxSize.toBytes(), meterRegistry);
+    }
+
+    @Bean
+    LocalRateLimiter localRateLimiter(@Value("${bootiful.gateway.rate-limit.replenish-rate:1}") int replenishRate,
+                                      @Value("${bootiful.gateway.rate-limit.burst-capacity:5}") int burstCapacity,
+                                      @Value("${bootiful.gateway.rate-limit.max-keys:100000}") int maxKeys) {
+        return new LocalRateLimiter(replenishRate, burstCapacity, maxKeys, System::nanoTime);
+    }
+
+    @Bean
+    RouteLocator gateway(RouteLocatorBuilder rlb, RequestCoalescingFilter requestCoalescingFilter,
+                         ResponseCachingFilter responseCachingFilter, LocalRateLimiter localRateLimiter) {
         var apiPrefix = "/api/";
         return rlb
                 .routes()
                 // <1>
-                .route(rs -> rs
+                .route("email", rs -> rs
+                        .path(apiPrefix + "email")
+                        .filters(f -> f
+                                .requestRateLimiter(c -> c.setRateLimiter(localRateLimiter))
+                                .tokenRelay()
+                                .filter(new PrefixStrippingFilter(apiPrefix))
+                        )
+                        .metadata(RouteTable.PATH_PREFIX_METADATA, apiPrefix + "email/")
+                        .uri("http://localhost:8081"))
+                .route("api", rs -> rs
                         .path(apiPrefix + "**")
                         .filters(f -> f
+                                .filter(requestCoalescingFilter)
                                 .tokenRelay()
-                                .rewritePath(apiPrefix + "(?<segment>.*)", "/$\\{segment}")
+                                .filter(new PrefixStrippingFilter(apiPrefix))
                         )
+                        .metadata(RouteTable.PATH_PREFIX_METADATA, apiPrefix)
                         .uri("http://localhost:8081"))
                 // <2>
-                .route(rs -> rs
+                .route("static", rs -> rs
                         .path("/**")
+                        .filters(f -> f.filter(responseCachingFilter))
+                        .metadata(RouteTable.PATH_PREFIX_METADATA, "/")
                         .uri("http://localhost:8020")
                 )
                 .build();
@@ -0,0 +1,182 @@
+package bootiful.gateway;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// an in-process token bucket per route and key, so rate limiting doesn't need redis. each bucket
+// is a single AtomicLong holding its theoretical arrival time (the generic cell rate algorithm):
+// a request is allowed if pushing that time forward by one emission interval keeps it within
+// burst capacity intervals of now, and the push is a compare-and-set, so there are no locks.
+// a bucket whose arrival time has passed is full, indistinguishable from a missing one, so the
+// sweep can drop those, which bounds memory by the number of recently limited keys. when a new
+// key finds the table full, one request sweeps, and the rest are denied until a second has passed,
+// so a flood of new keys costs one pass over the table a second rather than one per request
+class LocalRateLimiter implements RateLimiter<LocalRateLimiter.Config>, InitializingBean, DisposableBean {
+
+    static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+
+    static final String REPLENISH_RATE_HEADER = "X-RateLimit-Replenish-Rate";
+
+    static final String BURST_CAPACITY_HEADER = "X-RateLimit-Burst-Capacity";
+
+    static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    private static final long MIN_SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private static final Log log = LogFactory.getLog(LocalRateLimiter.class);
+
+    static class Config {
+
+        private int replenishRate;
+
+        private int burstCapacity;
+
+        int getReplenishRate() {
+            return this.replenishRate;
+        }
+
+        Config setReplenishRate(int replenishRate) {
+            this.replenishRate = replenishRate;
+            return this;
+        }
+
+        int getBurstCapacity() {
+            return this.burstCapacity;
+        }
+
+        Config setBurstCapacity(int burstCapacity) {
+            this.burstCapacity = burstCapacity;
+            return this;
+        }
+    }
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("rate-limiter-sweep-"));
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private final Map<String, Config> config = new ConcurrentHashMap<>();
+
+    private final Config defaultConfig;
+
+    private final int maxKeys;
+
+    private final LongSupplier nanoTime;
+
+    private final AtomicLong sweptAt;
+
+    LocalRateLimiter(int replenishRate, int burstCapacity, int maxKeys, LongSupplier nanoTime) {
+        Assert.isTrue(replenishRate > 0 && burstCapacity >= 1, "the replenish rate and burst capacity must be positive");
+        this.defaultConfig = new Config().setReplenishRate(replenishRate).setBurstCapacity(burstCapacity);
+        this.maxKeys = maxKeys;
+        this.nanoTime = nanoTime;
+        this.sweptAt = new AtomicLong(nanoTime.getAsLong() - MIN_SWEEP_INTERVAL);
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        return Mono.fromSupplier(() -> tryAcquire(routeId, id));
+    }
+
+    Response tryAcquire(String routeId, String id) {
+        var config = this.config.getOrDefault(routeId, this.defaultConfig);
+        var interval = TimeUnit.SECONDS.toNanos(1) / config.getReplenishRate();
+        var tolerance = interval * config.getBurstCapacity();
+        var now = this.nanoTime.getAsLong();
+        var bucket = bucket(routeId + ':' + id, now);
+        if (bucket == null)
+            return denied(config, Duration.ofSeconds(1));
+        while (true) {
+            var arrival = bucket.get();
+            var next = (arrival - now > 0 ? arrival : now) + interval;
+            var ahead = next - now;
+            if (ahead > tolerance)
+                return denied(config, Duration.ofNanos(ahead - tolerance));
+            if (bucket.compareAndSet(arrival, next))
+                return new Response(true, headers(config, (tolerance - ahead) / interval, null));
+        }
+    }
+
+    private AtomicLong bucket(String key, long now) {
+        var bucket = this.buckets.get(key);
+        if (bucket != null)
+            return bucket;
+        if (this.buckets.size() >= this.maxKeys) {
+            var sweptAt = this.sweptAt.get();
+            if (now - sweptAt >= MIN_SWEEP_INTERVAL && this.sweptAt.compareAndSet(sweptAt, now))
+                sweep();
+            if (this.buckets.size() >= this.maxKeys) {
+                log.warn("there are already " + this.maxKeys + " rate limited keys, so denying " + key);
+                return null;
+            }
+        }
+        return this.buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+
+    void sweep() {
+        var now = this.nanoTime.getAsLong();
+        this.buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+
+    int size() {
+        return this.buckets.size();
+    }
+
+    private static Response denied(Config config, Duration retryAfter) {
+        var seconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+        return new Response(false, headers(config, 0, seconds));
+    }
+
+    private static Map<String, String> headers(Config config, long remaining, Long retryAfterSeconds) {
+        var common = Map.of(
+                REMAINING_HEADER, Long.toString(remaining),
+                REPLENISH_RATE_HEADER, Integer.toString(config.getReplenishRate()),
+                BURST_CAPACITY_HEADER, Integer.toString(config.getBurstCapacity()));
+        if (retryAfterSeconds == null)
+            return common;
+        var headers = new HashMap<>(common);
+        headers.put(RETRY_AFTER_HEADER, Long.toString(retryAfterSeconds));
+        return headers;
+    }
+
+    @Override
+    public Map<String, Config> getConfig() {
+        return this.config;
+    }
+
+    @Override
+    public Class<Config> getConfigClass() {
+        return Config.class;
+    }
+
+    @Override
+    public Config newConfig() {
+        return new Config();
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.scheduler.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void destroy() {
+        this.scheduler.shutdownNow();
+    }
+}
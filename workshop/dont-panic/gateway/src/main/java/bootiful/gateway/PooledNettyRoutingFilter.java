@@ -0,0 +1,101 @@
+package bootiful.gateway;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.gateway.config.HttpClientFactory;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.config.HttpClientSslConfigurer;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.cloud.gateway.support.RouteMetadataUtils.CONNECT_TIMEOUT_ATTR;
+
+// routes each configured route through its own connection pool (and protocol), so one slow
+// downstream can't hold every connection, and each pool's size and idle eviction can be tuned
+// to that downstream. the pools publish reactor netty's connection provider metrics, tagged
+// with name=gateway-<route id>. a route's client is built by the gateway's own HttpClientFactory,
+// so it has everything spring.cloud.gateway.httpclient and the HttpClientCustomizers configure
+// (ssl, proxy, header sizes, wiretap, timeouts), and only the pool and protocols are its own
+class PooledNettyRoutingFilter extends NettyRoutingFilter implements DisposableBean {
+
+    private static final class RouteHttpClientFactory extends HttpClientFactory {
+
+        private final ConnectionProvider provider;
+
+        RouteHttpClientFactory(HttpClientProperties properties, ServerProperties serverProperties,
+                               HttpClientSslConfigurer sslConfigurer, List<HttpClientCustomizer> customizers,
+                               ConnectionProvider provider) {
+            // the factory sorts its customizers in place
+            super(properties, serverProperties, sslConfigurer, new ArrayList<>(customizers));
+            this.provider = provider;
+        }
+
+        @Override
+        protected ConnectionProvider buildConnectionProvider(HttpClientProperties properties) {
+            return this.provider;
+        }
+
+        HttpClient httpClient() {
+            return createInstance();
+        }
+    }
+
+    private final Map<String, ConnectionProvider> pools = new HashMap<>();
+
+    private final Map<String, HttpClient> clients = new HashMap<>();
+
+    PooledNettyRoutingFilter(HttpClient httpClient,
+                             ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider,
+                             HttpClientProperties properties,
+                             ServerProperties serverProperties,
+                             HttpClientSslConfigurer sslConfigurer,
+                             List<HttpClientCustomizer> customizers,
+                             DownstreamProperties downstreams) {
+        super(httpClient, headersFiltersProvider, properties);
+        downstreams.routes().forEach((routeId, pool) -> {
+            var provider = ConnectionProvider
+                    .builder("gateway-" + routeId)
+                    .maxConnections(pool.maxConnections())
+                    .pendingAcquireMaxCount(pool.pendingAcquireMaxCount())
+                    .pendingAcquireTimeout(pool.pendingAcquireTimeout())
+                    .maxIdleTime(pool.maxIdleTime())
+                    .maxLifeTime(pool.maxLifeTime())
+                    .evictInBackground(pool.evictInBackground())
+                    .metrics(true)
+                    .build();
+            var client = new RouteHttpClientFactory(properties, serverProperties, sslConfigurer, customizers, provider)
+                    .httpClient()
+                    .protocol(pool.protocols().toArray(HttpProtocol[]::new));
+            this.pools.put(routeId, provider);
+            this.clients.put(routeId, client);
+        });
+    }
+
+    @Override
+    protected HttpClient getHttpClient(Route route, ServerWebExchange exchange) {
+        var client = this.clients.get(route.getId());
+        if (client == null)
+            return super.getHttpClient(route, exchange);
+        var connectTimeout = route.getMetadata().get(CONNECT_TIMEOUT_ATTR);
+        return connectTimeout == null ? client :
+                client.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Integer.valueOf(connectTimeout.toString()));
+    }
+
+    @Override
+    public void destroy() {
+        this.pools.values().forEach(ConnectionProvider::dispose);
+    }
+}
@@ -0,0 +1,34 @@
+package bootiful.gateway;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.addOriginalRequestUrl;
+
+// turns <prefix>foo into /foo, like rewritePath("<prefix>(?<segment>.*)", "/${segment}") but
+// with a startsWith and a substring rather than a regex match and a template expansion
+class PrefixStrippingFilter implements GatewayFilter {
+
+    private final String prefix;
+
+    PrefixStrippingFilter(String prefix) {
+        Assert.isTrue(prefix.startsWith("/") && prefix.endsWith("/"), "the prefix must start and end with '/'");
+        this.prefix = prefix;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        var request = exchange.getRequest();
+        var path = request.getURI().getRawPath();
+        if (!path.startsWith(this.prefix))
+            return chain.filter(exchange);
+        addOriginalRequestUrl(exchange, request.getURI());
+        var stripped = request.mutate().path(path.substring(this.prefix.length() - 1)).build();
+        exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, stripped.getURI());
+        return chain.filter(exchange.mutate().request(stripped).build());
+    }
+}
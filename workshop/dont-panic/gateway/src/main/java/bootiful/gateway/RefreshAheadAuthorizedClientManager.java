@@ -0,0 +1,186 @@
+package bootiful.gateway;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.web.server.WebFilterExchange;
+import org.springframework.security.web.server.authentication.logout.ServerLogoutHandler;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// keeps each session's authorized client in memory and refreshes its access token before it
+// expires, off the request path: a request that finds its token inside the refresh window
+// relays the still-valid token and starts a refresh. the refresh goes through the delegate
+// with that request's exchange, so the refreshed client is saved to the authorized client
+// repository like any other and the repository always has the newest (rotated) refresh token.
+// concurrent refreshes for the same session share one call to the authorization server, and
+// only a token that has already expired makes a request wait. a session's client is forgotten
+// on logout, when the session logs in again, and once it's been idle for idleTimeout
+class RefreshAheadAuthorizedClientManager implements ReactiveOAuth2AuthorizedClientManager, ServerLogoutHandler,
+        InitializingBean, DisposableBean {
+
+    private static final Log log = LogFactory.getLog(RefreshAheadAuthorizedClientManager.class);
+
+    private record Key(String clientRegistrationId, String sessionId) {
+    }
+
+    private static final class Entry {
+
+        final OAuth2AuthorizedClient client;
+
+        final Authentication principal;
+
+        volatile Instant lastAccess;
+
+        Entry(OAuth2AuthorizedClient client, Authentication principal, Instant lastAccess) {
+            this.client = client;
+            this.principal = principal;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("token-refresh-"));
+
+    private final Map<Key, Entry> clients = new ConcurrentHashMap<>();
+
+    private final Map<Key, Mono<OAuth2AuthorizedClient>> refreshes = new ConcurrentHashMap<>();
+
+    private final ReactiveOAuth2AuthorizedClientManager delegate;
+
+    private final Duration refreshAhead;
+
+    private final Duration idleTimeout;
+
+    private final int maxClients;
+
+    private final Clock clock;
+
+    // the delegate loads, refreshes and saves clients in the authorized client repository of
+    // the exchange it's given, and refreshes a token once it's within refreshAhead of expiring
+    RefreshAheadAuthorizedClientManager(ReactiveOAuth2AuthorizedClientManager delegate,
+                                        Duration refreshAhead, Duration idleTimeout, int maxClients, Clock clock) {
+        Assert.isTrue(refreshAhead.compareTo(Duration.ZERO) > 0, "the refresh-ahead window must be positive");
+        Assert.isTrue(idleTimeout.toMillis() >= 2, "the idle timeout must be at least 2ms");
+        this.delegate = delegate;
+        this.refreshAhead = refreshAhead;
+        this.idleTimeout = idleTimeout;
+        this.maxClients = maxClients;
+        this.clock = clock;
+    }
+
+    // without a request, and so a session, to tie the client to, there's nothing to cache it by
+    @Override
+    public Mono<OAuth2AuthorizedClient> authorize(OAuth2AuthorizeRequest authorizeRequest) {
+        return exchange(authorizeRequest)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(exchange -> exchange.isEmpty() ? this.delegate.authorize(authorizeRequest) :
+                        exchange.get().getSession().flatMap(session -> authorize(authorizeRequest, exchange.get(),
+                                new Key(authorizeRequest.getClientRegistrationId(), session.getId()))));
+    }
+
+    private Mono<OAuth2AuthorizedClient> authorize(OAuth2AuthorizeRequest authorizeRequest,
+                                                   ServerWebExchange exchange, Key key) {
+        var principal = authorizeRequest.getPrincipal();
+        var entry = this.clients.get(key);
+        // logging in again in the same session brings a new principal and a new client
+        if (entry != null && !entry.principal.equals(principal)) {
+            this.clients.remove(key, entry);
+            entry = null;
+        }
+        if (entry == null)
+            return this.delegate
+                    .authorize(authorizeRequest)
+                    .doOnNext(client -> remember(key, client, principal));
+        var now = this.clock.instant();
+        entry.lastAccess = now;
+        var expiresAt = entry.client.getAccessToken().getExpiresAt();
+        if (expiresAt == null || now.plus(this.refreshAhead).isBefore(expiresAt))
+            return Mono.just(entry.client);
+        var refresh = refresh(key, entry, exchange);
+        if (now.isBefore(expiresAt)) {
+            refresh.subscribe(client -> {
+            }, error -> log.warn("couldn't refresh the access token for " + key, error));
+            return Mono.just(entry.client);
+        }
+        return refresh;
+    }
+
+    @Override
+    public Mono<Void> logout(WebFilterExchange exchange, Authentication authentication) {
+        return exchange.getExchange()
+                .getSession()
+                .doOnNext(session -> this.clients.keySet().removeIf(key -> key.sessionId().equals(session.getId())))
+                .then();
+    }
+
+    private Mono<OAuth2AuthorizedClient> refresh(Key key, Entry entry, ServerWebExchange exchange) {
+        return this.refreshes.computeIfAbsent(key, k -> this.delegate
+                .authorize(OAuth2AuthorizeRequest
+                        .withAuthorizedClient(entry.client)
+                        .principal(entry.principal)
+                        .attribute(ServerWebExchange.class.getName(), exchange)
+                        .build())
+                // unless the session logged out (or in again) while the refresh was under way
+                .doOnNext(client -> this.clients.replace(k, entry, new Entry(client, entry.principal, entry.lastAccess)))
+                .doOnError(error -> this.clients.remove(k, entry))
+                .doFinally(signal -> this.refreshes.remove(k))
+                .cache());
+    }
+
+    private void remember(Key key, OAuth2AuthorizedClient client, Authentication principal) {
+        if (this.clients.size() < this.maxClients || this.clients.containsKey(key))
+            this.clients.put(key, new Entry(client, principal, this.clock.instant()));
+    }
+
+    void sweep() {
+        var now = this.clock.instant();
+        this.clients.forEach((key, entry) -> {
+            var expiresAt = entry.client.getAccessToken().getExpiresAt();
+            var expired = expiresAt != null && !now.isBefore(expiresAt);
+            if (now.isAfter(entry.lastAccess.plus(this.idleTimeout)) || (expired && entry.client.getRefreshToken() == null))
+                this.clients.remove(key, entry);
+        });
+    }
+
+    int size() {
+        return this.clients.size();
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        var period = this.idleTimeout.dividedBy(2).toMillis();
+        this.scheduler.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        this.scheduler.shutdownNow();
+    }
+
+    private static Mono<ServerWebExchange> exchange(OAuth2AuthorizeRequest authorizeRequest) {
+        ServerWebExchange exchange = authorizeRequest.getAttribute(ServerWebExchange.class.getName());
+        if (exchange != null)
+            return Mono.just(exchange);
+        // the token relay filter doesn't pass the exchange, but spring security puts it in the context
+        return Mono.deferContextual(context -> Mono.justOrEmpty(context.<ServerWebExchange>getOrEmpty(ServerWebExchange.class)));
+    }
+}
@@ -0,0 +1,91 @@
+package bootiful.gateway;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// identical GETs for the same principal that arrive while one is already in flight wait
+// for that one's response instead of making their own trip downstream. if the first
+// request's response can't be captured, the ones that waited go downstream themselves
+class RequestCoalescingFilter implements GatewayFilter, Ordered {
+
+    private final ConcurrentHashMap<String, Sinks.One<CapturedResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final List<PathPattern> paths;
+
+    private final long maxBytes;
+
+    private final MeterRegistry meterRegistry;
+
+    RequestCoalescingFilter(List<PathPattern> paths, long maxBytes, MeterRegistry meterRegistry) {
+        this.paths = paths;
+        this.maxBytes = maxBytes;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public int getOrder() {
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        var request = exchange.getRequest();
+        var path = PathContainer.parsePath(request.getURI().getRawPath());
+        if (request.getMethod() != HttpMethod.GET || this.paths.stream().noneMatch(p -> p.matches(path)))
+            return chain.filter(exchange);
+        return exchange
+                .getPrincipal()
+                .map(Principal::getName)
+                .defaultIfEmpty("")
+                .flatMap(principal -> {
+                    var key = principal + ' ' + request.getURI().getRawPath() +
+                              (request.getURI().getRawQuery() == null ? "" : "?" + request.getURI().getRawQuery());
+                    var sink = Sinks.<CapturedResponse>one();
+                    var leader = this.inFlight.putIfAbsent(key, sink);
+                    if (leader != null) {
+                        count(exchange, "coalesced");
+                        return leader
+                                .asMono()
+                                .map(Optional::of)
+                                .defaultIfEmpty(Optional.empty())
+                                .flatMap(captured -> captured.isPresent() ?
+                                        captured.get().writeTo(exchange.getResponse()) : chain.filter(exchange));
+                    }
+                    count(exchange, "forwarded");
+                    var response = new CapturingResponseDecorator(exchange.getResponse(), this.maxBytes,
+                            r -> true, captured -> {
+                                sink.tryEmitValue(captured);
+                                return captured;
+                            });
+                    return chain
+                            .filter(exchange.mutate().response(response).build())
+                            .doFinally(signal -> {
+                                this.inFlight.remove(key, sink);
+                                sink.tryEmitEmpty();
+                            });
+                });
+    }
+
+    private void count(ServerWebExchange exchange, String result) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        this.meterRegistry
+                .counter("bootiful.gateway.coalescing", "route", route == null ? "none" : route.getId(), "result", result)
+                .increment();
+    }
+}
@@ -0,0 +1,187 @@
+package bootiful.gateway;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// a size-bounded, in-memory HTTP cache for GETs. responses are stored unless Cache-Control says
+// no-store or private (or they set a cookie, or Vary: *), served without a round trip while max-age
+// says they're fresh, and revalidated with If-None-Match once they're stale if they carry an ETag.
+// a request that says no-cache is always revalidated. one variant is kept per URL: an entry is only
+// served to requests with the same values for the headers its response varies on
+class ResponseCachingFilter implements GatewayFilter, Ordered {
+
+    private record Entry(CapturedResponse response, String etag, Instant freshUntil, Map<String, List<String>> varied) {
+
+        boolean matches(HttpHeaders request) {
+            for (var header : this.varied.entrySet())
+                if (!header.getValue().equals(request.getOrEmpty(header.getKey())))
+                    return false;
+            return true;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(128, .75f, true);
+
+    private final long maxBytes;
+
+    private final long maxEntryBytes;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Clock clock;
+
+    private long bytes;
+
+    ResponseCachingFilter(long maxBytes, long maxEntryBytes, MeterRegistry meterRegistry, Clock clock) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+    }
+
+    @Override
+    public int getOrder() {
+        // it has to wrap the response before the gateway writes the downstream body into it
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        var request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.GET || contains(request.getHeaders().getCacheControl(), "no-store"))
+            return chain.filter(exchange);
+        var key = request.getURI().getRawPath() +
+                  (request.getURI().getRawQuery() == null ? "" : "?" + request.getURI().getRawQuery());
+        // mutating the request below can write through to its headers, so note what the client sent first
+        var clientETags = List.copyOf(request.getHeaders().getIfNoneMatch());
+        var requestHeaders = HttpHeaders.readOnlyHttpHeaders(request.getHeaders());
+        var noCache = contains(request.getHeaders().getCacheControl(), "no-cache");
+        var cached = get(key);
+        var entry = cached != null && cached.matches(requestHeaders) ? cached : null;
+        if (entry != null && !noCache && this.clock.instant().isBefore(entry.freshUntil())) {
+            count(exchange, "hit");
+            return serve(exchange, clientETags, entry);
+        }
+        var revalidating = entry != null && entry.etag() != null;
+        count(exchange, revalidating ? "revalidated" : "miss");
+        var forwarded = revalidating ?
+                exchange.mutate().request(r -> r.headers(h -> h.setIfNoneMatch(entry.etag()))).build() : exchange;
+        var response = new CapturingResponseDecorator(exchange.getResponse(), this.maxEntryBytes,
+                this::cacheable, captured -> {
+                    var headers = captured.headers();
+                    if (revalidating && captured.status().value() == HttpStatus.NOT_MODIFIED.value()) {
+                        var refreshed = new Entry(entry.response(), entry.etag(), freshUntil(headers), entry.varied());
+                        put(key, refreshed);
+                        return clientETags.contains(entry.etag()) ? captured : entry.response();
+                    }
+                    if (captured.status().value() == HttpStatus.OK.value())
+                        put(key, new Entry(captured, headers.getETag(), freshUntil(headers), varied(headers, requestHeaders)));
+                    return captured;
+                });
+        return chain.filter(forwarded.mutate().response(response).build());
+    }
+
+    private boolean cacheable(ServerHttpResponse response) {
+        var headers = response.getHeaders();
+        var status = response.getStatusCode();
+        return status != null &&
+               (status.value() == HttpStatus.OK.value() || status.value() == HttpStatus.NOT_MODIFIED.value()) &&
+               !headers.containsKey(HttpHeaders.SET_COOKIE) &&
+               !headers.getVary().contains("*") &&
+               !contains(headers.getCacheControl(), "no-store") &&
+               !contains(headers.getCacheControl(), "private");
+    }
+
+    private Mono<Void> serve(ServerWebExchange exchange, List<String> clientETags, Entry entry) {
+        if (entry.etag() != null && clientETags.contains(entry.etag())) {
+            var response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            response.getHeaders().setETag(entry.etag());
+            response.getHeaders().setCacheControl(entry.response().headers().getCacheControl());
+            return response.setComplete();
+        }
+        return entry.response().writeTo(exchange.getResponse());
+    }
+
+    // the request's values for the headers the response varies on, e.g. Accept-Encoding
+    private static Map<String, List<String>> varied(HttpHeaders response, HttpHeaders request) {
+        var varied = new LinkedHashMap<String, List<String>>();
+        for (var header : response.getVary())
+            varied.put(header, List.copyOf(request.getOrEmpty(header)));
+        return varied;
+    }
+
+    private Instant freshUntil(HttpHeaders headers) {
+        var cacheControl = headers.getCacheControl();
+        if (contains(cacheControl, "no-cache"))
+            return Instant.MIN;
+        var maxAge = directive(cacheControl, "s-maxage");
+        if (maxAge < 0)
+            maxAge = directive(cacheControl, "max-age");
+        return maxAge < 0 ? Instant.MIN : this.clock.instant().plus(Duration.ofSeconds(maxAge));
+    }
+
+    private synchronized Entry get(String key) {
+        return this.entries.get(key);
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        // something that can be neither served fresh nor revalidated isn't worth keeping
+        if (entry.etag() == null && entry.freshUntil().equals(Instant.MIN))
+            return;
+        var previous = this.entries.put(key, entry);
+        if (previous != null)
+            this.bytes -= previous.response().body().length;
+        this.bytes += entry.response().body().length;
+        var iterator = this.entries.values().iterator();
+        while (this.bytes > this.maxBytes && iterator.hasNext()) {
+            this.bytes -= iterator.next().response().body().length;
+            iterator.remove();
+        }
+    }
+
+    private void count(ServerWebExchange exchange, String result) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        this.meterRegistry
+                .counter("bootiful.gateway.cache", "route", route == null ? "none" : route.getId(), "result", result)
+                .increment();
+    }
+
+    private static boolean contains(String cacheControl, String directive) {
+        return cacheControl != null && StringUtils.commaDelimitedListToSet(cacheControl.replace(" ", "")).contains(directive);
+    }
+
+    private static long directive(String cacheControl, String name) {
+        if (cacheControl == null)
+            return -1;
+        for (var directive : StringUtils.commaDelimitedListToStringArray(cacheControl.replace(" ", "")))
+            if (directive.startsWith(name + "=")) {
+                try {
+                    return Long.parseLong(directive.substring(name.length() + 1));
+                }//
+                catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        return -1;
+    }
+}
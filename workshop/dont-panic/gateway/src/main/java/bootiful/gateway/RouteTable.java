@@ -0,0 +1,88 @@
+package bootiful.gateway;
+
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.server.PathContainer;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// a prefix trie over the routes' path prefixes. a route that declares its literal path prefix
+// in its metadata (its path predicate being <prefix>**) is only a candidate for requests under
+// that prefix; routes that don't are candidates for every request. each node keeps the
+// candidates for paths that end there, already in route order, so a lookup is one walk down
+// the trie and the route predicates only run for the few routes that could possibly match
+final class RouteTable {
+
+    static final String PATH_PREFIX_METADATA = "bootiful.path-prefix";
+
+    private record Candidate(int order, Route route) {
+    }
+
+    private static final class Node {
+
+        final Map<String, Node> children = new HashMap<>();
+
+        final List<Candidate> routes = new ArrayList<>();
+
+        List<Route> candidates = List.of();
+    }
+
+    private final Node root = new Node();
+
+    private RouteTable() {
+    }
+
+    static RouteTable compile(List<Route> routes) {
+        var table = new RouteTable();
+        var unindexed = new ArrayList<Candidate>();
+        for (var i = 0; i < routes.size(); i++) {
+            var route = routes.get(i);
+            var prefix = route.getMetadata().get(PATH_PREFIX_METADATA);
+            if (prefix == null) {
+                unindexed.add(new Candidate(i, route));
+                continue;
+            }
+            Assert.isTrue(prefix instanceof String p && p.startsWith("/") && p.endsWith("/"),
+                    () -> "the path prefix of route " + route.getId() + " must start and end with '/'");
+            var node = table.root;
+            for (var segment : ((String) prefix).split("/"))
+                if (!segment.isEmpty())
+                    node = node.children.computeIfAbsent(segment, s -> new Node());
+            node.routes.add(new Candidate(i, route));
+        }
+        link(table.root, merge(unindexed, table.root.routes));
+        return table;
+    }
+
+    // walks the decoded segments, matrix variables removed, as the path predicates match them
+    List<Route> candidates(PathContainer path) {
+        var node = this.root;
+        for (var element : path.elements()) {
+            if (!(element instanceof PathContainer.PathSegment segment) || segment.valueToMatch().isEmpty())
+                continue;
+            var child = node.children.get(segment.valueToMatch());
+            if (child == null)
+                break;
+            node = child;
+        }
+        return node.candidates;
+    }
+
+    private static void link(Node node, List<Candidate> inherited) {
+        node.candidates = inherited.stream().map(Candidate::route).toList();
+        for (var child : node.children.values())
+            link(child, merge(inherited, child.routes));
+    }
+
+    private static List<Candidate> merge(List<Candidate> a, List<Candidate> b) {
+        var merged = new ArrayList<Candidate>(a.size() + b.size());
+        merged.addAll(a);
+        merged.addAll(b);
+        merged.sort(Comparator.comparingInt(Candidate::order));
+        return merged;
+    }
+}
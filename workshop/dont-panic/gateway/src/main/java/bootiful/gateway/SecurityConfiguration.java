@@ -1,24 +1,57 @@
 package bootiful.gateway;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientProviderBuilder;
+import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.client.web.DefaultReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.web.server.ServerOAuth2AuthorizedClientRepository;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.logout.DelegatingServerLogoutHandler;
+import org.springframework.security.web.server.authentication.logout.SecurityContextServerLogoutHandler;
+
+import java.time.Clock;
+import java.time.Duration;
 
 @Configuration
 class SecurityConfiguration {
 
     // <1>
     @Bean
-    SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+    SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                  RefreshAheadAuthorizedClientManager authorizedClientManager) {
         http
                 .authorizeExchange((authorize) -> authorize.anyExchange().authenticated())//<2>
                 .csrf(ServerHttpSecurity.CsrfSpec::disable)// <3>
                 .oauth2Login(Customizer.withDefaults())//<4>
-                .oauth2Client(Customizer.withDefaults());
+                .oauth2Client(Customizer.withDefaults())
+                .logout(logout -> logout.logoutHandler(new DelegatingServerLogoutHandler(
+                        authorizedClientManager, new SecurityContextServerLogoutHandler())));
         return http.build();
     }
 
+    // the token relay filter asks this for the access token to forward. every client it
+    // loads or refreshes is saved in the authorized client repository
+    @Bean
+    RefreshAheadAuthorizedClientManager authorizedClientManager(
+            ReactiveClientRegistrationRepository clientRegistrationRepository,
+            ServerOAuth2AuthorizedClientRepository authorizedClientRepository,
+            @Value("${bootiful.gateway.tokens.refresh-ahead:60s}") Duration refreshAhead,
+            @Value("${bootiful.gateway.tokens.idle-timeout:30m}") Duration idleTimeout,
+            @Value("${bootiful.gateway.tokens.max-clients:10000}") int maxClients) {
+        var delegate = new DefaultReactiveOAuth2AuthorizedClientManager(
+                clientRegistrationRepository, authorizedClientRepository);
+        delegate.setAuthorizedClientProvider(ReactiveOAuth2AuthorizedClientProviderBuilder
+                .builder()
+                .authorizationCode()
+                .refreshToken(refresh -> refresh.clockSkew(refreshAhead))
+                .build());
+        return new RefreshAheadAuthorizedClientManager(delegate, refreshAhead, idleTimeout, maxClients,
+                Clock.systemUTC());
+    }
+
 
 }
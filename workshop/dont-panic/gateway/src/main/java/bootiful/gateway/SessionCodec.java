@@ -0,0 +1,372 @@
+package bootiful.gateway;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.oidc.IdTokenClaimNames;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.OidcUserInfo;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+import org.springframework.security.oauth2.core.oidc.user.OidcUserAuthority;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+// a compact binary encoding for session attributes. the things an oauth2Login session actually
+// holds (the security context with its OIDC user, authorized clients, and plain values like
+// strings, instants and claim maps) are written field by field; the client registration of an
+// authorized client is written as its id and looked up again on the way back in. anything else
+// falls back to java serialization, and attributes that aren't serializable aren't kept
+final class SessionCodec {
+
+    private static final Log log = LogFactory.getLog(SessionCodec.class);
+
+    private static final byte NULL = 0, STRING = 1, LONG = 2, INTEGER = 3, BOOLEAN = 4, DOUBLE = 5,
+            INSTANT = 6, URL_VALUE = 7, LIST = 8, SET = 9, MAP = 10, SECURITY_CONTEXT = 11,
+            AUTHORIZED_CLIENT = 12, SERIALIZED = 13;
+
+    private static final byte SIMPLE_AUTHORITY = 0, OIDC_USER_AUTHORITY = 1;
+
+    private final Function<String, ClientRegistration> clientRegistrations;
+
+    SessionCodec(Function<String, ClientRegistration> clientRegistrations) {
+        this.clientRegistrations = clientRegistrations;
+    }
+
+    byte[] encode(Map<String, Object> attributes) {
+        var bytes = new ByteArrayOutputStream(256);
+        try (var out = new DataOutputStream(bytes)) {
+            writeAttributes(out, attributes);
+        }//
+        catch (IOException e) {
+            throw new IllegalStateException("couldn't encode the session attributes", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    Map<String, Object> decode(byte[] bytes) {
+        try (var in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return readAttributes(in);
+        }//
+        catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("couldn't decode the session attributes", e);
+        }
+    }
+
+    void writeAttributes(DataOutputStream out, Map<String, Object> attributes) throws IOException {
+        var writable = new LinkedHashMap<String, Object>();
+        attributes.forEach((name, value) -> {
+            if (isWritable(value))
+                writable.put(name, value);
+            else
+                log.warn("not keeping session attribute " + name + ", since a " +
+                         value.getClass().getName() + " can't be serialized");
+        });
+        out.writeInt(writable.size());
+        for (var attribute : writable.entrySet()) {
+            writeString(out, attribute.getKey());
+            writeValue(out, attribute.getValue());
+        }
+    }
+
+    Map<String, Object> readAttributes(DataInputStream in) throws IOException, ClassNotFoundException {
+        var count = in.readInt();
+        var attributes = new LinkedHashMap<String, Object>(count * 2);
+        for (var i = 0; i < count; i++)
+            attributes.put(readString(in), readValue(in));
+        return attributes;
+    }
+
+    private boolean isWritable(Object value) {
+        if (value instanceof List<?> || value instanceof Set<?>)
+            return ((Collection<?>) value).stream().allMatch(this::isWritable);
+        if (value instanceof Map<?, ?> map && map.keySet().stream().allMatch(String.class::isInstance))
+            return map.values().stream().allMatch(this::isWritable);
+        return value == null || value instanceof Serializable;
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null)
+            out.writeByte(NULL);
+        else if (value instanceof String s) {
+            out.writeByte(STRING);
+            writeString(out, s);
+        }//
+        else if (value instanceof Long l) {
+            out.writeByte(LONG);
+            out.writeLong(l);
+        }//
+        else if (value instanceof Integer i) {
+            out.writeByte(INTEGER);
+            out.writeInt(i);
+        }//
+        else if (value instanceof Boolean b) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(b);
+        }//
+        else if (value instanceof Double d) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(d);
+        }//
+        else if (value instanceof Instant instant) {
+            out.writeByte(INSTANT);
+            writeInstant(out, instant);
+        }//
+        else if (value instanceof URL url) {
+            out.writeByte(URL_VALUE);
+            writeString(out, url.toExternalForm());
+        }//
+        else if (value instanceof List<?> list) {
+            out.writeByte(LIST);
+            writeValues(out, list);
+        }//
+        else if (value instanceof Set<?> set) {
+            out.writeByte(SET);
+            writeValues(out, set);
+        }//
+        else if (value instanceof Map<?, ?> map && map.keySet().stream().allMatch(String.class::isInstance)) {
+            out.writeByte(MAP);
+            out.writeInt(map.size());
+            for (var entry : map.entrySet()) {
+                writeString(out, (String) entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        }//
+        else if (value instanceof SecurityContext context && isCompact(context)) {
+            out.writeByte(SECURITY_CONTEXT);
+            writeSecurityContext(out, context);
+        }//
+        else if (value instanceof OAuth2AuthorizedClient client && isCompact(client)) {
+            out.writeByte(AUTHORIZED_CLIENT);
+            writeAuthorizedClient(out, client);
+        }//
+        else {
+            out.writeByte(SERIALIZED);
+            var bytes = new ByteArrayOutputStream();
+            try (var objects = new ObjectOutputStream(bytes)) {
+                objects.writeObject(value);
+            }
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        }
+    }
+
+    private Object readValue(DataInputStream in) throws IOException, ClassNotFoundException {
+        var type = in.readByte();
+        return switch (type) {
+            case NULL -> null;
+            case STRING -> readString(in);
+            case LONG -> in.readLong();
+            case INTEGER -> in.readInt();
+            case BOOLEAN -> in.readBoolean();
+            case DOUBLE -> in.readDouble();
+            case INSTANT -> readInstant(in);
+            case URL_VALUE -> new URL(readString(in));
+            case LIST -> readValues(in, new ArrayList<>());
+            case SET -> readValues(in, new LinkedHashSet<>());
+            case MAP -> readMap(in);
+            case SECURITY_CONTEXT -> readSecurityContext(in);
+            case AUTHORIZED_CLIENT -> readAuthorizedClient(in);
+            case SERIALIZED -> {
+                var bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                try (var objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    yield objects.readObject();
+                }
+            }
+            default -> throw new IOException("unknown value type " + type);
+        };
+    }
+
+    private void writeValues(DataOutputStream out, Collection<?> values) throws IOException {
+        out.writeInt(values.size());
+        for (var value : values)
+            writeValue(out, value);
+    }
+
+    private <C extends Collection<Object>> C readValues(DataInputStream in, C values) throws IOException, ClassNotFoundException {
+        var count = in.readInt();
+        for (var i = 0; i < count; i++)
+            values.add(readValue(in));
+        return values;
+    }
+
+    private Map<String, Object> readMap(DataInputStream in) throws IOException, ClassNotFoundException {
+        var count = in.readInt();
+        var map = new LinkedHashMap<String, Object>(count * 2);
+        for (var i = 0; i < count; i++)
+            map.put(readString(in), readValue(in));
+        return map;
+    }
+
+    // an oauth2Login security context: an OIDC user, with only plain or OIDC user authorities
+    private static boolean isCompact(SecurityContext context) {
+        return context.getClass() == SecurityContextImpl.class &&
+               context.getAuthentication() instanceof OAuth2AuthenticationToken token &&
+               token.getClass() == OAuth2AuthenticationToken.class &&
+               token.getDetails() == null &&
+               token.getPrincipal() instanceof DefaultOidcUser user &&
+               user.getClass() == DefaultOidcUser.class &&
+               nameAttributeKey(user) != null &&
+               token.getAuthorities().stream().allMatch(a -> isCompact(a, user)) &&
+               user.getAuthorities().stream().allMatch(a -> isCompact(a, user));
+    }
+
+    private static boolean isCompact(GrantedAuthority authority, DefaultOidcUser user) {
+        return authority.getClass() == SimpleGrantedAuthority.class ||
+               (authority.getClass() == OidcUserAuthority.class &&
+                ((OidcUserAuthority) authority).getIdToken().equals(user.getIdToken()) &&
+                Objects.equals(((OidcUserAuthority) authority).getUserInfo(), user.getUserInfo()));
+    }
+
+    // DefaultOidcUser doesn't say which attribute its name comes from, so find one that matches
+    private static String nameAttributeKey(DefaultOidcUser user) {
+        var name = user.getName();
+        if (name.equals(user.getAttributes().get(IdTokenClaimNames.SUB)))
+            return IdTokenClaimNames.SUB;
+        for (var attribute : user.getAttributes().entrySet())
+            if (name.equals(attribute.getValue()))
+                return attribute.getKey();
+        return null;
+    }
+
+    private void writeSecurityContext(DataOutputStream out, SecurityContext context) throws IOException {
+        var token = (OAuth2AuthenticationToken) context.getAuthentication();
+        var user = (DefaultOidcUser) token.getPrincipal();
+        writeString(out, token.getAuthorizedClientRegistrationId());
+        writeString(out, nameAttributeKey(user));
+        var idToken = user.getIdToken();
+        writeString(out, idToken.getTokenValue());
+        writeInstant(out, idToken.getIssuedAt());
+        writeInstant(out, idToken.getExpiresAt());
+        writeValue(out, idToken.getClaims());
+        writeValue(out, user.getUserInfo() == null ? null : user.getUserInfo().getClaims());
+        writeAuthorities(out, user.getAuthorities());
+        writeAuthorities(out, token.getAuthorities());
+    }
+
+    private SecurityContext readSecurityContext(DataInputStream in) throws IOException, ClassNotFoundException {
+        var registrationId = readString(in);
+        var nameAttributeKey = readString(in);
+        var idTokenValue = readString(in);
+        var issuedAt = readInstant(in);
+        var expiresAt = readInstant(in);
+        @SuppressWarnings("unchecked")
+        var idToken = new OidcIdToken(idTokenValue, issuedAt, expiresAt, (Map<String, Object>) readValue(in));
+        @SuppressWarnings("unchecked")
+        var userInfoClaims = (Map<String, Object>) readValue(in);
+        var userInfo = userInfoClaims == null ? null : new OidcUserInfo(userInfoClaims);
+        var user = new DefaultOidcUser(readAuthorities(in, idToken, userInfo), idToken, userInfo, nameAttributeKey);
+        var token = new OAuth2AuthenticationToken(user, readAuthorities(in, idToken, userInfo), registrationId);
+        return new SecurityContextImpl(token);
+    }
+
+    private static void writeAuthorities(DataOutputStream out, Collection<? extends GrantedAuthority> authorities) throws IOException {
+        out.writeInt(authorities.size());
+        for (var authority : authorities) {
+            out.writeByte(authority instanceof OidcUserAuthority ? OIDC_USER_AUTHORITY : SIMPLE_AUTHORITY);
+            writeString(out, authority.getAuthority());
+        }
+    }
+
+    private static List<GrantedAuthority> readAuthorities(DataInputStream in, OidcIdToken idToken, OidcUserInfo userInfo) throws IOException {
+        var count = in.readInt();
+        var authorities = new ArrayList<GrantedAuthority>(count);
+        for (var i = 0; i < count; i++) {
+            var type = in.readByte();
+            var authority = readString(in);
+            authorities.add(type == OIDC_USER_AUTHORITY ?
+                    new OidcUserAuthority(authority, idToken, userInfo) : new SimpleGrantedAuthority(authority));
+        }
+        return authorities;
+    }
+
+    private static boolean isCompact(OAuth2AuthorizedClient client) {
+        return client.getClass() == OAuth2AuthorizedClient.class &&
+               OAuth2AccessToken.TokenType.BEARER.equals(client.getAccessToken().getTokenType());
+    }
+
+    private void writeAuthorizedClient(DataOutputStream out, OAuth2AuthorizedClient client) throws IOException {
+        writeString(out, client.getClientRegistration().getRegistrationId());
+        writeString(out, client.getPrincipalName());
+        var accessToken = client.getAccessToken();
+        writeString(out, accessToken.getTokenValue());
+        writeInstant(out, accessToken.getIssuedAt());
+        writeInstant(out, accessToken.getExpiresAt());
+        writeValue(out, accessToken.getScopes());
+        var refreshToken = client.getRefreshToken();
+        out.writeBoolean(refreshToken != null);
+        if (refreshToken != null) {
+            writeString(out, refreshToken.getTokenValue());
+            writeInstant(out, refreshToken.getIssuedAt());
+            writeInstant(out, refreshToken.getExpiresAt());
+        }
+    }
+
+    private OAuth2AuthorizedClient readAuthorizedClient(DataInputStream in) throws IOException, ClassNotFoundException {
+        var registrationId = readString(in);
+        var registration = this.clientRegistrations.apply(registrationId);
+        if (registration == null)
+            throw new IOException("there's no client registration " + registrationId);
+        var principalName = readString(in);
+        var tokenValue = readString(in);
+        var issuedAt = readInstant(in);
+        var expiresAt = readInstant(in);
+        @SuppressWarnings("unchecked")
+        var scopes = (Set<String>) readValue(in);
+        var accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, tokenValue, issuedAt, expiresAt, scopes);
+        var refreshToken = in.readBoolean() ?
+                new OAuth2RefreshToken(readString(in), readInstant(in), readInstant(in)) : null;
+        return new OAuth2AuthorizedClient(registration, principalName, accessToken, refreshToken);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        var bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInstant(DataOutputStream out, Instant instant) throws IOException {
+        out.writeBoolean(instant != null);
+        if (instant != null) {
+            out.writeLong(instant.getEpochSecond());
+            out.writeInt(instant.getNano());
+        }
+    }
+
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        return in.readBoolean() ? Instant.ofEpochSecond(in.readLong(), in.readInt()) : null;
+    }
+}
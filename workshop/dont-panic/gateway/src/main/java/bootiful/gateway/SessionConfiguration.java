@@ -0,0 +1,42 @@
+package bootiful.gateway;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryReactiveClientRegistrationRepository;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import org.springframework.web.server.session.DefaultWebSessionManager;
+import org.springframework.web.server.session.WebSessionIdResolver;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+
+@Configuration
+class SessionConfiguration {
+
+    @Bean
+    CompactWebSessionStore compactWebSessionStore(InMemoryReactiveClientRegistrationRepository clientRegistrationRepository,
+                                                  @Value("${bootiful.gateway.sessions.max-sessions:100000}") int maxSessions,
+                                                  @Value("${bootiful.gateway.sessions.max-size:256MB}") DataSize maxSize,
+                                                  @Value("${bootiful.gateway.sessions.off-heap:false}") boolean offHeap,
+                                                  @Value("${server.reactive.session.timeout:30m}") Duration timeout) {
+        // the registrations are fixed at startup, so look them up without going through the reactive api
+        var registrations = new HashMap<String, ClientRegistration>();
+        clientRegistrationRepository.forEach(r -> registrations.put(r.getRegistrationId(), r));
+        return new CompactWebSessionStore(new SessionCodec(registrations::get), maxSessions,
+                maxSize.toBytes(), offHeap, timeout, Clock.systemUTC());
+    }
+
+    @Bean(WebHttpHandlerBuilder.WEB_SESSION_MANAGER_BEAN_NAME)
+    DefaultWebSessionManager webSessionManager(CompactWebSessionStore compactWebSessionStore,
+                                               ObjectProvider<WebSessionIdResolver> webSessionIdResolver) {
+        var manager = new DefaultWebSessionManager();
+        manager.setSessionStore(compactWebSessionStore);
+        webSessionIdResolver.ifAvailable(manager::setSessionIdResolver);
+        return manager;
+    }
+}
@@ -0,0 +1,81 @@
+package bootiful.gateway;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+class CompactWebSessionStoreTests {
+
+	private final MutableClock clock = new MutableClock(Instant.parse("2023-09-01T00:00:00Z"));
+
+	private final SessionCodec codec = new SessionCodec(Map.of("spring", SessionCodecTests.REGISTRATION)::get);
+
+	@Test
+	void keepsSessionsOffHeap() {
+		var store = new CompactWebSessionStore(this.codec, 10, 1024 * 1024, true, Duration.ofMinutes(30), this.clock);
+		var session = store.createWebSession().block();
+		session.getAttributes().putAll(SessionCodecTests.loggedInSession());
+		session.save().block();
+		Assertions.assertEquals(1, store.size());
+		var retrieved = store.retrieveSession(session.getId()).block();
+		Assertions.assertNotNull(retrieved);
+		Assertions.assertEquals(session.getAttributes().keySet(), retrieved.getAttributes().keySet());
+	}
+
+	@Test
+	void evictsTheLeastRecentlyUsedSession() {
+		var store = new CompactWebSessionStore(this.codec, 2, 1024 * 1024, false, Duration.ofMinutes(30), this.clock);
+		var a = save(store, "a");
+		var b = save(store, "b");
+		Assertions.assertNotNull(store.retrieveSession(a).block());
+		save(store, "c");
+		Assertions.assertEquals(2, store.size());
+		Assertions.assertNotNull(store.retrieveSession(a).block());
+		Assertions.assertNull(store.retrieveSession(b).block());
+	}
+
+	@Test
+	void staysWithinMaxSize() {
+		var store = new CompactWebSessionStore(this.codec, 100, 1000, false, Duration.ofMinutes(30), this.clock);
+		for (var i = 0; i < 20; i++)
+			save(store, "x".repeat(100));
+		Assertions.assertTrue(store.sizeInBytes() <= 1000);
+		Assertions.assertTrue(store.size() < 20);
+	}
+
+	@Test
+	void expiresIdleSessions() {
+		var store = new CompactWebSessionStore(this.codec, 10, 1024 * 1024, false, Duration.ofMinutes(30), this.clock);
+		var id = save(store, "a");
+		this.clock.advance(Duration.ofMinutes(20));
+		Assertions.assertNotNull(store.retrieveSession(id).block());
+		this.clock.advance(Duration.ofMinutes(20));
+		Assertions.assertNotNull(store.retrieveSession(id).block());
+		this.clock.advance(Duration.ofMinutes(31));
+		Assertions.assertNull(store.retrieveSession(id).block());
+		Assertions.assertEquals(0, store.size());
+	}
+
+	@Test
+	void changingTheIdForgetsTheOldOne() {
+		var store = new CompactWebSessionStore(this.codec, 10, 1024 * 1024, false, Duration.ofMinutes(30), this.clock);
+		var id = save(store, "a");
+		var session = store.retrieveSession(id).block();
+		session.changeSessionId().block();
+		Assertions.assertNull(store.retrieveSession(id).block());
+		Assertions.assertEquals("a", store.retrieveSession(session.getId()).block().getAttributes().get("value"));
+		session.invalidate().block();
+		Assertions.assertEquals(0, store.size());
+	}
+
+	private static String save(CompactWebSessionStore store, String value) {
+		var session = store.createWebSession().block();
+		session.getAttributes().put("value", value);
+		session.save().block();
+		return session.getId();
+	}
+
+}
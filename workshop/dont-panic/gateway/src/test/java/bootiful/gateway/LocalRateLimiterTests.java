@@ -0,0 +1,90 @@
+package bootiful.gateway;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+class LocalRateLimiterTests {
+
+	private final AtomicLong now = new AtomicLong(-TimeUnit.SECONDS.toNanos(100));
+
+	private final LocalRateLimiter limiter = new LocalRateLimiter(2, 4, 3, this.now::get);
+
+	@Test
+	void allowsABurstAndThenTheReplenishRate() {
+		for (var i = 0; i < 4; i++) {
+			var response = this.limiter.tryAcquire("email", "jlong");
+			Assertions.assertTrue(response.isAllowed());
+			Assertions.assertEquals(Integer.toString(3 - i), response.getHeaders().get(LocalRateLimiter.REMAINING_HEADER));
+		}
+		var denied = this.limiter.tryAcquire("email", "jlong");
+		Assertions.assertFalse(denied.isAllowed());
+		Assertions.assertEquals("1", denied.getHeaders().get(LocalRateLimiter.RETRY_AFTER_HEADER));
+		Assertions.assertTrue(this.limiter.tryAcquire("email", "rwinch").isAllowed());
+		this.now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+		Assertions.assertTrue(this.limiter.tryAcquire("email", "jlong").isAllowed());
+		Assertions.assertFalse(this.limiter.tryAcquire("email", "jlong").isAllowed());
+	}
+
+	@Test
+	void forgetsFullBucketsToStayWithinMaxKeys() {
+		this.limiter.tryAcquire("email", "a");
+		this.limiter.tryAcquire("email", "b");
+		this.limiter.tryAcquire("email", "c");
+		Assertions.assertFalse(this.limiter.tryAcquire("email", "d").isAllowed());
+		this.now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		Assertions.assertTrue(this.limiter.tryAcquire("email", "d").isAllowed());
+		Assertions.assertEquals(1, this.limiter.size());
+	}
+
+	@Test
+	void sweepsAtMostOnceASecondWhenFull() {
+		this.limiter.tryAcquire("email", "a");
+		this.limiter.tryAcquire("email", "b");
+		this.limiter.tryAcquire("email", "c");
+		Assertions.assertFalse(this.limiter.tryAcquire("email", "d").isAllowed());
+		this.now.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+		Assertions.assertFalse(this.limiter.tryAcquire("email", "e").isAllowed());
+		Assertions.assertEquals(3, this.limiter.size());
+		this.now.addAndGet(TimeUnit.MILLISECONDS.toNanos(400));
+		Assertions.assertTrue(this.limiter.tryAcquire("email", "e").isAllowed());
+		Assertions.assertEquals(1, this.limiter.size());
+	}
+
+	@Test
+	void neverAllowsMoreThanTheBurstUnderContention() throws Exception {
+		var allowed = new AtomicInteger();
+		var start = new CountDownLatch(1);
+		var threads = 16;
+		var done = new CountDownLatch(threads);
+		var executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (var t = 0; t < threads; t++)
+				executor.execute(() -> {
+					try {
+						start.await();
+						for (var i = 0; i < 1_000; i++)
+							if (this.limiter.tryAcquire("email", "jlong").isAllowed())
+								allowed.incrementAndGet();
+					}//
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}//
+					finally {
+						done.countDown();
+					}
+				});
+			start.countDown();
+			Assertions.assertTrue(done.await(30, TimeUnit.SECONDS));
+		}//
+		finally {
+			executor.shutdownNow();
+		}
+		Assertions.assertEquals(4, allowed.get());
+	}
+}
@@ -0,0 +1,112 @@
+package bootiful.gateway;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.config.HttpClientSslConfigurer;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.Mockito.mock;
+
+// a small load test: many concurrent requests through a route's pool to a stub downstream
+class PooledNettyRoutingFilterTests {
+
+	private static final int REQUESTS = 1_000;
+
+	private static final int CONCURRENCY = 200;
+
+	@Test
+	void http11PoolsNeverOpenMoreThanMaxConnections() {
+		var connections = load(List.of(HttpProtocol.HTTP11), HttpProtocol.HTTP11);
+		Assertions.assertTrue(connections <= 20, "opened " + connections + " connections");
+	}
+
+	@Test
+	void h2cPoolsNeverOpenMoreThanMaxConnections() {
+		var connections = load(List.of(HttpProtocol.H2C), HttpProtocol.H2C);
+		Assertions.assertTrue(connections <= 20, "opened " + connections + " connections");
+	}
+
+	@Test
+	void routeClientsKeepTheGatewaysHttpClientConfiguration() {
+		var server = HttpServer.create()
+				.port(0)
+				.handle((request, response) -> response.sendString(Mono.just(
+						String.valueOf(request.requestHeaders().get("x-customized")))))
+				.bindNow();
+		var pool = new DownstreamProperties.Pool(20, 5_000, Duration.ofSeconds(30), Duration.ofSeconds(30),
+				Duration.ofMinutes(10), Duration.ofSeconds(30), List.of(HttpProtocol.HTTP11));
+		var filter = filter(pool, List.of(client -> client.headers(headers -> headers.add("x-customized", "yes"))));
+		try {
+			var route = Route.async().id("api").uri("http://localhost:" + server.port()).predicate(e -> true).build();
+			var body = filter.getHttpClient(route, MockServerWebExchange.from(MockServerHttpRequest.get("/")))
+					.get()
+					.uri("http://localhost:" + server.port() + "/")
+					.responseSingle((response, content) -> content.asString())
+					.block(Duration.ofSeconds(10));
+			Assertions.assertEquals("yes", body);
+		}//
+		finally {
+			filter.destroy();
+			server.disposeNow();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static PooledNettyRoutingFilter filter(DownstreamProperties.Pool pool, List<HttpClientCustomizer> customizers) {
+		var properties = new HttpClientProperties();
+		var serverProperties = new ServerProperties();
+		return new PooledNettyRoutingFilter(reactor.netty.http.client.HttpClient.create(),
+				mock(ObjectProvider.class), properties, serverProperties,
+				new HttpClientSslConfigurer(properties.getSsl(), serverProperties), customizers,
+				new DownstreamProperties(Map.of("api", pool)));
+	}
+
+	private int load(List<HttpProtocol> clientProtocols, HttpProtocol serverProtocol) {
+		var connections = ConcurrentHashMap.<Object>newKeySet();
+		var server = HttpServer.create()
+				.port(0)
+				.protocol(serverProtocol)
+				.doOnChannelInit((observer, channel, address) -> connections.add(channel.id()))
+				.handle((request, response) -> response.sendString(
+						Mono.delay(Duration.ofMillis(5)).thenReturn("[{\"id\":1}]")))
+				.bindNow();
+		var pool = new DownstreamProperties.Pool(20, 5_000, Duration.ofSeconds(30), Duration.ofSeconds(30),
+				Duration.ofMinutes(10), Duration.ofSeconds(30), clientProtocols);
+		var filter = filter(pool, List.of());
+		try {
+			var route = Route.async().id("api").uri("http://localhost:" + server.port()).predicate(e -> true).build();
+			var client = filter.getHttpClient(route, MockServerWebExchange.from(MockServerHttpRequest.get("/")));
+			var ok = Flux.range(0, REQUESTS)
+					.flatMap(i -> client
+							.get()
+							.uri("http://localhost:" + server.port() + "/customers")
+							.responseSingle((response, body) -> body.asString()
+									.map(b -> response.status().code() == 200 && b.equals("[{\"id\":1}]"))), CONCURRENCY)
+					.filter(Boolean::booleanValue)
+					.count()
+					.block(Duration.ofMinutes(1));
+			Assertions.assertEquals(REQUESTS, ok);
+			return Set.copyOf(connections).size();
+		}//
+		finally {
+			filter.destroy();
+			server.disposeNow();
+		}
+	}
+}
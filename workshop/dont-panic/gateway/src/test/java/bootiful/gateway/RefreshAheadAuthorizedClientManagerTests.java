@@ -0,0 +1,163 @@
+package bootiful.gateway;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.mock.web.server.MockWebSession;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.web.server.WebFilterExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class RefreshAheadAuthorizedClientManagerTests {
+
+	private final ClientRegistration registration = ClientRegistration
+			.withRegistrationId("spring")
+			.clientId("crm")
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+			.redirectUri("http://localhost:8082/login/oauth2/code/spring")
+			.authorizationUri("http://localhost:8080/oauth2/authorize")
+			.tokenUri("http://localhost:8080/oauth2/token")
+			.build();
+
+	private final TestingAuthenticationToken principal = new TestingAuthenticationToken("jlong", null);
+
+	private final MockServerWebExchange exchange = exchange();
+
+	private final OAuth2AuthorizeRequest request = request(this.principal, this.exchange);
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private final AtomicInteger refreshes = new AtomicInteger();
+
+	private final List<OAuth2AuthorizeRequest> refreshRequests = new CopyOnWriteArrayList<>();
+
+	private final Sinks.One<OAuth2AuthorizedClient> refreshed = Sinks.one();
+
+	private final MutableClock clock = new MutableClock(Instant.parse("2023-09-01T00:00:00Z"));
+
+	// like DefaultReactiveOAuth2AuthorizedClientManager: a request with a client is a refresh
+	private final RefreshAheadAuthorizedClientManager manager = new RefreshAheadAuthorizedClientManager(
+			request -> {
+				if (request.getAuthorizedClient() == null) {
+					this.loads.incrementAndGet();
+					return Mono.just(client("first", this.clock.instant().plus(Duration.ofMinutes(5))));
+				}
+				this.refreshes.incrementAndGet();
+				this.refreshRequests.add(request);
+				return this.refreshed.asMono();
+			},
+			Duration.ofMinutes(1), Duration.ofMinutes(30), 100, this.clock);
+
+	@Test
+	void loadsOnceAndThenServesFromMemory() {
+		Assertions.assertEquals("first", token(this.manager.authorize(this.request)));
+		Assertions.assertEquals("first", token(this.manager.authorize(this.request)));
+		Assertions.assertEquals(1, this.loads.get());
+		Assertions.assertEquals(0, this.refreshes.get());
+	}
+
+	@Test
+	void refreshesAheadOfExpiryWithoutMakingRequestsWait() {
+		this.manager.authorize(this.request).block();
+		this.clock.advance(Duration.ofMinutes(4).plusSeconds(30));
+		Assertions.assertEquals("first", token(this.manager.authorize(this.request)));
+		Assertions.assertEquals("first", token(this.manager.authorize(this.request)));
+		this.manager.sweep();
+		Assertions.assertEquals(1, this.refreshes.get());
+		this.refreshed.tryEmitValue(client("second", this.clock.instant().plus(Duration.ofMinutes(5))));
+		Assertions.assertEquals("second", token(this.manager.authorize(this.request)));
+		Assertions.assertEquals(1, this.refreshes.get());
+	}
+
+	@Test
+	void expiredTokensWaitForTheSharedRefresh() {
+		this.manager.authorize(this.request).block();
+		this.clock.advance(Duration.ofMinutes(6));
+		var first = this.manager.authorize(this.request).toFuture();
+		var second = this.manager.authorize(this.request).toFuture();
+		Assertions.assertFalse(first.isDone());
+		this.refreshed.tryEmitValue(client("second", this.clock.instant().plus(Duration.ofMinutes(5))));
+		Assertions.assertEquals("second", first.join().getAccessToken().getTokenValue());
+		Assertions.assertEquals("second", second.join().getAccessToken().getTokenValue());
+		Assertions.assertEquals(1, this.refreshes.get());
+	}
+
+	@Test
+	void keepsOneClientPerSession() {
+		this.manager.authorize(this.request).block();
+		this.manager.authorize(request(this.principal, exchange())).block();
+		this.manager.authorize(this.request).block();
+		Assertions.assertEquals(2, this.loads.get());
+		Assertions.assertEquals(2, this.manager.size());
+	}
+
+	@Test
+	void forgetsTheClientOnLogoutAndOnANewLogin() {
+		this.manager.authorize(this.request).block();
+		this.manager.logout(new WebFilterExchange(this.exchange, chain -> Mono.empty()), this.principal).block();
+		Assertions.assertEquals(0, this.manager.size());
+		this.manager.authorize(this.request).block();
+		Assertions.assertEquals(2, this.loads.get());
+		this.manager.authorize(request(new TestingAuthenticationToken("jlong", "again"), this.exchange)).block();
+		Assertions.assertEquals(3, this.loads.get());
+		Assertions.assertEquals(1, this.manager.size());
+	}
+
+	@Test
+	void refreshesWithTheRequestsExchangeSoTheClientIsSaved() {
+		this.manager.authorize(this.request).block();
+		this.clock.advance(Duration.ofMinutes(4).plusSeconds(30));
+		this.manager.authorize(this.request).block();
+		Assertions.assertEquals(1, this.refreshRequests.size());
+		Assertions.assertSame(this.exchange, this.refreshRequests.get(0).getAttribute(ServerWebExchange.class.getName()));
+	}
+
+	@Test
+	void rejectsARefreshWindowTooShortToSweep() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new RefreshAheadAuthorizedClientManager(
+				request -> Mono.empty(), Duration.ZERO, Duration.ofMinutes(30), 100, Clock.systemUTC()));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new RefreshAheadAuthorizedClientManager(
+				request -> Mono.empty(), Duration.ofMinutes(1), Duration.ofMillis(1), 100, Clock.systemUTC()));
+	}
+
+	private static MockServerWebExchange exchange() {
+		return MockServerWebExchange.builder(MockServerHttpRequest.get("/api/customers"))
+				.session(new MockWebSession())
+				.build();
+	}
+
+	private static OAuth2AuthorizeRequest request(Authentication principal, ServerWebExchange exchange) {
+		return OAuth2AuthorizeRequest
+				.withClientRegistrationId("spring")
+				.principal(principal)
+				.attribute(ServerWebExchange.class.getName(), exchange)
+				.build();
+	}
+
+	private OAuth2AuthorizedClient client(String token, Instant expiresAt) {
+		return new OAuth2AuthorizedClient(this.registration, "jlong",
+				new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, token, expiresAt.minus(Duration.ofMinutes(5)), expiresAt),
+				new OAuth2RefreshToken("refresh", expiresAt.minus(Duration.ofMinutes(5))));
+	}
+
+	private static String token(Mono<OAuth2AuthorizedClient> client) {
+		return client.block().getAccessToken().getTokenValue();
+	}
+}
@@ -0,0 +1,53 @@
+package bootiful.gateway;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class RequestCoalescingFilterTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final RequestCoalescingFilter filter = new RequestCoalescingFilter(
+			List.of(PathPatternParser.defaultInstance.parse("/api/customers")), 1024, this.meterRegistry);
+
+	@Test
+	void coalescesConcurrentIdenticalRequests() {
+		var downstreamCalls = new AtomicInteger();
+		var release = Sinks.empty();
+		GatewayFilterChain chain = exchange -> {
+			downstreamCalls.incrementAndGet();
+			var response = exchange.getResponse();
+			response.setStatusCode(HttpStatus.OK);
+			return release.asMono().then(response.writeWith(Mono.fromSupplier(() ->
+					response.bufferFactory().wrap("[{\"id\":1}]".getBytes(StandardCharsets.UTF_8)))));
+		};
+		var first = MockServerWebExchange.from(MockServerHttpRequest.get("/api/customers"));
+		var second = MockServerWebExchange.from(MockServerHttpRequest.get("/api/customers"));
+		var other = MockServerWebExchange.from(MockServerHttpRequest.get("/api/me"));
+		var firstDone = this.filter.filter(first, chain).toFuture();
+		var secondDone = this.filter.filter(second, chain).toFuture();
+		var otherDone = this.filter.filter(other, chain).toFuture();
+		release.tryEmitEmpty();
+		firstDone.join();
+		secondDone.join();
+		otherDone.join();
+		Assertions.assertEquals(2, downstreamCalls.get());
+		Assertions.assertEquals("[{\"id\":1}]", first.getResponse().getBodyAsString().block());
+		Assertions.assertEquals("[{\"id\":1}]", second.getResponse().getBodyAsString().block());
+		Assertions.assertEquals(HttpStatus.OK, second.getResponse().getStatusCode());
+		Assertions.assertEquals(1, this.meterRegistry.counter("bootiful.gateway.coalescing",
+				"route", "none", "result", "coalesced").count());
+	}
+}
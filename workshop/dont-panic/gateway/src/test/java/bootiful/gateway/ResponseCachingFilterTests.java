@@ -0,0 +1,136 @@
+package bootiful.gateway;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ResponseCachingFilterTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final AtomicInteger downstreamCalls = new AtomicInteger();
+
+	private final MutableClock clock = new MutableClock(Instant.parse("2023-09-01T00:00:00Z"));
+
+	private final ResponseCachingFilter filter = new ResponseCachingFilter(1024, 512, this.meterRegistry, this.clock);
+
+	@Test
+	void servesFreshResponsesFromTheCache() {
+		var chain = downstream("max-age=60", "\"v1\"", "<html>hi</html>");
+		Assertions.assertEquals("<html>hi</html>", get("/index.html", chain, null).getResponse().getBodyAsString().block());
+		var cached = get("/index.html", chain, null);
+		Assertions.assertEquals("<html>hi</html>", cached.getResponse().getBodyAsString().block());
+		Assertions.assertEquals(1, this.downstreamCalls.get());
+		Assertions.assertEquals(1, this.meterRegistry.counter("bootiful.gateway.cache", "route", "none", "result", "hit").count());
+		var notModified = get("/index.html", chain, "\"v1\"");
+		Assertions.assertEquals(HttpStatus.NOT_MODIFIED, notModified.getResponse().getStatusCode());
+		Assertions.assertEquals(1, this.downstreamCalls.get());
+	}
+
+	@Test
+	void revalidatesStaleResponsesWithTheirETag() {
+		var chain = downstream("max-age=60", "\"v1\"", "<html>hi</html>");
+		get("/index.html", chain, null);
+		this.clock.advance(Duration.ofMinutes(2));
+		var revalidated = get("/index.html", chain, null);
+		Assertions.assertEquals(2, this.downstreamCalls.get());
+		Assertions.assertEquals(HttpStatus.OK, revalidated.getResponse().getStatusCode());
+		Assertions.assertEquals("<html>hi</html>", revalidated.getResponse().getBodyAsString().block());
+		get("/index.html", chain, null);
+		Assertions.assertEquals(2, this.downstreamCalls.get());
+	}
+
+	@Test
+	void doesNotCacheWhatItShouldNot() {
+		get("/a.html", downstream("no-store", "\"v1\"", "a"), null);
+		get("/a.html", downstream("no-store", "\"v1\"", "a"), null);
+		get("/b.html", downstream("private, max-age=60", null, "b"), null);
+		get("/b.html", downstream("private, max-age=60", null, "b"), null);
+		get("/c.html", downstream("max-age=60", null, "c".repeat(600)), null);
+		get("/c.html", downstream("max-age=60", null, "c".repeat(600)), null);
+		Assertions.assertEquals(6, this.downstreamCalls.get());
+	}
+
+	@Test
+	void keepsVariantsApart() {
+		GatewayFilterChain chain = exchange -> {
+			this.downstreamCalls.incrementAndGet();
+			var encoding = exchange.getRequest().getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING);
+			var response = exchange.getResponse();
+			response.setStatusCode(HttpStatus.OK);
+			response.getHeaders().setCacheControl("max-age=60");
+			response.getHeaders().setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+			return response.writeWith(Mono.fromSupplier(() ->
+					response.bufferFactory().wrap(String.valueOf(encoding).getBytes(StandardCharsets.UTF_8))));
+		};
+		Assertions.assertEquals("gzip", get("/v.html", chain, null, "gzip").getResponse().getBodyAsString().block());
+		Assertions.assertEquals("identity", get("/v.html", chain, null, "identity").getResponse().getBodyAsString().block());
+		Assertions.assertEquals("identity", get("/v.html", chain, null, "identity").getResponse().getBodyAsString().block());
+		Assertions.assertEquals(2, this.downstreamCalls.get());
+		var everything = downstream("max-age=60", null, "*");
+		GatewayFilterChain varyingOnEverything = exchange -> {
+			exchange.getResponse().getHeaders().setVary(List.of("*"));
+			return everything.filter(exchange);
+		};
+		get("/everything.html", varyingOnEverything, null);
+		get("/everything.html", varyingOnEverything, null);
+		Assertions.assertEquals(4, this.downstreamCalls.get());
+	}
+
+	@Test
+	void revalidatesWhenTheClientSaysNoCache() {
+		var chain = downstream("max-age=60", "\"v1\"", "<html>hi</html>");
+		get("/index.html", chain, null);
+		var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/index.html").header(HttpHeaders.CACHE_CONTROL, "no-cache"));
+		this.filter.filter(exchange, chain).block();
+		Assertions.assertEquals(2, this.downstreamCalls.get());
+		Assertions.assertEquals("<html>hi</html>", exchange.getResponse().getBodyAsString().block());
+		Assertions.assertEquals(1, this.meterRegistry.counter("bootiful.gateway.cache", "route", "none", "result", "revalidated").count());
+	}
+
+	private MockServerWebExchange get(String path, GatewayFilterChain chain, String ifNoneMatch) {
+		return get(path, chain, ifNoneMatch, null);
+	}
+
+	private MockServerWebExchange get(String path, GatewayFilterChain chain, String ifNoneMatch, String acceptEncoding) {
+		var request = MockServerHttpRequest.get(path);
+		if (ifNoneMatch != null)
+			request.ifNoneMatch(ifNoneMatch);
+		if (acceptEncoding != null)
+			request.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+		var exchange = MockServerWebExchange.from(request);
+		this.filter.filter(exchange, chain).block();
+		return exchange;
+	}
+
+	private GatewayFilterChain downstream(String cacheControl, String etag, String body) {
+		return exchange -> {
+			this.downstreamCalls.incrementAndGet();
+			var response = exchange.getResponse();
+			response.getHeaders().setCacheControl(cacheControl);
+			if (etag != null && exchange.getRequest().getHeaders().getIfNoneMatch().contains(etag)) {
+				response.setStatusCode(HttpStatus.NOT_MODIFIED);
+				response.getHeaders().setETag(etag);
+				return response.writeWith(Mono.empty());
+			}
+			response.setStatusCode(HttpStatus.OK);
+			if (etag != null)
+				response.getHeaders().setETag(etag);
+			response.getHeaders().add(HttpHeaders.CONTENT_TYPE, "text/html");
+			return response.writeWith(Mono.fromSupplier(() ->
+					response.bufferFactory().wrap(body.getBytes(StandardCharsets.UTF_8))));
+		};
+	}
+}
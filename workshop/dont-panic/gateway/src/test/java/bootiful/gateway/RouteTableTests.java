@@ -0,0 +1,61 @@
+package bootiful.gateway;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.server.PathContainer;
+
+import java.util.List;
+import java.util.Map;
+
+class RouteTableTests {
+
+	private final Route customers = route("customers", "/api/customers/");
+
+	private final Route api = route("api", "/api/");
+
+	private final Route unindexed = route("unindexed", null);
+
+	private final Route everything = route("static", "/");
+
+	private final RouteTable table = RouteTable.compile(List.of(this.customers, this.api, this.unindexed, this.everything));
+
+	@Test
+	void onlyRoutesUnderAMatchingPrefixAreCandidatesInRouteOrder() {
+		Assertions.assertEquals(List.of(this.customers, this.api, this.unindexed, this.everything),
+				candidates("/api/customers/42"));
+		Assertions.assertEquals(List.of(this.api, this.unindexed, this.everything), candidates("/api/me"));
+		Assertions.assertEquals(List.of(this.api, this.unindexed, this.everything), candidates("/api"));
+		Assertions.assertEquals(List.of(this.unindexed, this.everything), candidates("/index.html"));
+		Assertions.assertEquals(List.of(this.unindexed, this.everything), candidates("/"));
+		Assertions.assertEquals(List.of(this.unindexed, this.everything), candidates("/apiary/"));
+	}
+
+	@Test
+	void matchesDecodedSegmentsWithoutMatrixVariables() {
+		Assertions.assertEquals(List.of(this.customers, this.api, this.unindexed, this.everything),
+				candidates("/api/%63ustomers/42"));
+		Assertions.assertEquals(List.of(this.customers, this.api, this.unindexed, this.everything),
+				candidates("/api;v=1/customers;id=42"));
+		Assertions.assertEquals(List.of(this.api, this.unindexed, this.everything), candidates("/api/customers%2F42"));
+	}
+
+	@Test
+	void rejectsPrefixesThatArentWholeSegments() {
+		Assertions.assertThrows(IllegalArgumentException.class,
+				() -> RouteTable.compile(List.of(route("api", "/api"))));
+	}
+
+	private List<Route> candidates(String path) {
+		return this.table.candidates(PathContainer.parsePath(path));
+	}
+
+	private static Route route(String id, String prefix) {
+		return Route.async()
+				.id(id)
+				.uri("http://localhost:8081")
+				.predicate(exchange -> true)
+				.metadata(prefix == null ? Map.of() : Map.of(RouteTable.PATH_PREFIX_METADATA, prefix))
+				.build();
+	}
+}
@@ -0,0 +1,102 @@
+package bootiful.gateway;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
+import org.springframework.security.oauth2.core.oidc.user.OidcUserAuthority;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+class SessionCodecTests {
+
+	static final ClientRegistration REGISTRATION = ClientRegistration.withRegistrationId("spring")
+			.clientId("crm")
+			.clientSecret("crm")
+			.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+			.redirectUri("{baseUrl}/login/oauth2/code/{registrationId}")
+			.authorizationUri("http://localhost:8080/oauth2/authorize")
+			.tokenUri("http://localhost:8080/oauth2/token")
+			.jwkSetUri("http://localhost:8080/oauth2/jwks")
+			.scope("user.read", "openid")
+			.build();
+
+	private final SessionCodec codec = new SessionCodec(Map.of(REGISTRATION.getRegistrationId(), REGISTRATION)::get);
+
+	static Map<String, Object> loggedInSession() {
+		var issuedAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+		var idToken = new OidcIdToken("id-token", issuedAt, issuedAt.plusSeconds(1800), Map.of(
+				"sub", "jlong", "iss", "http://localhost:8080", "aud", List.of("crm"),
+				"iat", issuedAt, "exp", issuedAt.plusSeconds(1800), "sid", "abc"));
+		var user = new DefaultOidcUser(List.of(new OidcUserAuthority(idToken),
+				new SimpleGrantedAuthority("SCOPE_openid"), new SimpleGrantedAuthority("SCOPE_user.read")), idToken);
+		var authentication = new OAuth2AuthenticationToken(user, user.getAuthorities(), "spring");
+		var accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-token",
+				issuedAt, issuedAt.plusSeconds(300), Set.of("user.read", "openid"));
+		var client = new OAuth2AuthorizedClient(REGISTRATION, "jlong", accessToken,
+				new OAuth2RefreshToken("refresh-token", issuedAt));
+		var clients = new HashMap<String, OAuth2AuthorizedClient>();
+		clients.put("spring", client);
+		var attributes = new HashMap<String, Object>();
+		attributes.put("SPRING_SECURITY_CONTEXT", new SecurityContextImpl(authentication));
+		attributes.put("AUTHORIZED_CLIENTS", clients);
+		return attributes;
+	}
+
+	@Test
+	void roundTripsALoggedInSession() {
+		var attributes = loggedInSession();
+		var decoded = this.codec.decode(this.codec.encode(attributes));
+		var context = (SecurityContextImpl) decoded.get("SPRING_SECURITY_CONTEXT");
+		var expected = (SecurityContextImpl) attributes.get("SPRING_SECURITY_CONTEXT");
+		Assertions.assertEquals(expected.getAuthentication(), context.getAuthentication());
+		Assertions.assertEquals("jlong", context.getAuthentication().getName());
+		@SuppressWarnings("unchecked")
+		var client = ((Map<String, OAuth2AuthorizedClient>) decoded.get("AUTHORIZED_CLIENTS")).get("spring");
+		Assertions.assertSame(REGISTRATION, client.getClientRegistration());
+		Assertions.assertEquals("access-token", client.getAccessToken().getTokenValue());
+		Assertions.assertEquals(Set.of("user.read", "openid"), client.getAccessToken().getScopes());
+		Assertions.assertEquals("refresh-token", client.getRefreshToken().getTokenValue());
+	}
+
+	@Test
+	void isSmallerThanJavaSerialization() throws Exception {
+		var attributes = loggedInSession();
+		var serialized = new ByteArrayOutputStream();
+		try (var out = new ObjectOutputStream(serialized)) {
+			out.writeObject(attributes);
+		}
+		var encoded = this.codec.encode(attributes);
+		Assertions.assertTrue(encoded.length * 4 < serialized.size(),
+				() -> "compact: " + encoded.length + " bytes, java serialization: " + serialized.size() + " bytes");
+	}
+
+	@Test
+	void fallsBackToSerializationAndSkipsWhatItCannotKeep() {
+		var attributes = new HashMap<String, Object>();
+		attributes.put("locale", Locale.CANADA);
+		attributes.put("values", List.of(1, 2L, "three", true));
+		attributes.put("thread", new Object());
+		var decoded = this.codec.decode(this.codec.encode(attributes));
+		Assertions.assertEquals(Locale.CANADA, decoded.get("locale"));
+		Assertions.assertEquals(List.of(1, 2L, "three", true), decoded.get("values"));
+		Assertions.assertFalse(decoded.containsKey("thread"));
+	}
+
+}
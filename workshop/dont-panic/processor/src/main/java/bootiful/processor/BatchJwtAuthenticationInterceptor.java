@@ -0,0 +1,120 @@
+package bootiful.processor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.integration.amqp.inbound.AmqpInboundChannelAdapter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// the batch counterpart of JwtAuthenticationInterceptor: each distinct token (or message credential) in
+// the batch is authenticated once, and messages whose token doesn't authenticate are taken out of the
+// batch and handed to the FailedEmailRequestRouter on their own, rather than failing (and redelivering)
+// all of it. each message left in the batch carries its own authentication in its batched headers,
+// next to the token it arrived with, and the batch carries none: it's split into one batch per
+// principal further on, and each of those is secured as its principal
+class BatchJwtAuthenticationInterceptor implements ChannelInterceptor {
+
+    static final String AUTHENTICATION_HEADER_NAME = "bootiful_authentication";
+
+    private static final Log log = LogFactory.getLog(BatchJwtAuthenticationInterceptor.class);
+
+    private record Result(Authentication authentication, AuthenticationException failure) {
+    }
+
+    private final AuthenticationProvider authenticationProvider;
+
+    private final MessageCredentialVerifier messageCredentialVerifier;
+
+    private final FailedEmailRequestRouter router;
+
+    private final String headerName;
+
+    BatchJwtAuthenticationInterceptor(String headerName, AuthenticationProvider ap,
+                                      MessageCredentialVerifier messageCredentialVerifier,
+                                      FailedEmailRequestRouter router) {
+        this.headerName = headerName;
+        this.authenticationProvider = ap;
+        this.messageCredentialVerifier = messageCredentialVerifier;
+        this.router = router;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        var payloads = (List<?>) message.getPayload();
+        var headers = (List<Map<String, Object>>) message.getHeaders().get(AmqpInboundChannelAdapter.CONSOLIDATED_HEADERS);
+        var results = new HashMap<String, Result>();
+        var acceptedPayloads = new ArrayList<>(payloads.size());
+        var acceptedHeaders = new ArrayList<Map<String, Object>>(payloads.size());
+        for (var i = 0; i < payloads.size(); i++) {
+            var credential = headers.get(i).get(MessageCredentialVerifier.HEADER_NAME);
+            var token = headers.get(i).get(this.headerName);
+            var result = credential instanceof String c && this.messageCredentialVerifier != null ?
+                    results.computeIfAbsent(c, this::verify) :
+                    token instanceof String t && StringUtils.hasText(t) ?
+                            results.computeIfAbsent(t, this::authenticate) :
+                            new Result(null, new AuthenticationCredentialsNotFoundException("the token must be non-empty!"));
+            if (result.authentication() != null) {
+                var accepted = new HashMap<>(headers.get(i));
+                accepted.put(AUTHENTICATION_HEADER_NAME, result.authentication());
+                acceptedPayloads.add(payloads.get(i));
+                acceptedHeaders.add(accepted);
+            }
+            else
+                this.router.route(payloads.get(i), headers.get(i), result.failure());
+        }
+        var rejected = payloads.size() - acceptedPayloads.size();
+        if (rejected > 0)
+            log.warn("took " + rejected + " of " + payloads.size() + " messages that didn't authenticate out of batch " +
+                     message.getHeaders().getId());
+        // every message has been routed, so there's nothing left to send
+        if (acceptedPayloads.isEmpty())
+            return null;
+        return MessageBuilder
+                .withPayload(acceptedPayloads)
+                .copyHeaders(message.getHeaders())
+                .setHeader(AmqpInboundChannelAdapter.CONSOLIDATED_HEADERS, acceptedHeaders)
+                .build();
+    }
+
+    private Result verify(String credential) {
+        try {
+            return new Result(this.messageCredentialVerifier.verify(credential), null);
+        }//
+        catch (AuthenticationException e) {
+            log.debug("couldn't verify a message credential in the batch", e);
+            return new Result(null, e);
+        }
+    }
+
+    private Result authenticate(String token) {
+        try {
+            var authentication = this.authenticationProvider
+                    .authenticate(new BearerTokenAuthenticationToken(token));
+            if (authentication != null && authentication.isAuthenticated())
+                return new Result(UsernamePasswordAuthenticationToken.authenticated(authentication.getName(),
+                        null, AuthorityUtils.NO_AUTHORITIES), null);
+            return new Result(null, new BadCredentialsException("the token didn't authenticate"));
+        }//
+        catch (AuthenticationException e) {
+            log.debug("couldn't authenticate a token in the batch", e);
+            return new Result(null, e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package bootiful.processor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+
+// verifying the RSA signature of a JWT is expensive and most messages carry
+// a token we've already seen, so verified tokens are remembered (by hash) until they expire
+// or are revoked
+class CachingJwtAuthenticationProvider implements AuthenticationProvider {
+
+    private record VerifiedToken(Authentication authentication, Instant expiresAt) {
+    }
+
+    private final ConcurrentHashMap<ByteBuffer, VerifiedToken> tokens = new ConcurrentHashMap<>();
+
+    private final JwtAuthenticationProvider delegate;
+
+    private final RevokedTokens revokedTokens;
+
+    private final int maxTokens;
+
+    private final Clock clock;
+
+    private final Counter hits, misses;
+
+    private final Timer verification;
+
+    CachingJwtAuthenticationProvider(JwtAuthenticationProvider delegate, RevokedTokens revokedTokens, int maxTokens,
+                                     MeterRegistry registry, Clock clock) {
+        this.delegate = delegate;
+        this.revokedTokens = revokedTokens;
+        this.maxTokens = maxTokens;
+        this.clock = clock;
+        this.hits = registry.counter("bootiful.processor.jwt.cache", "result", "hit");
+        this.misses = registry.counter("bootiful.processor.jwt.cache", "result", "miss");
+        this.verification = registry.timer("bootiful.processor.jwt.verification");
+        Gauge.builder("bootiful.processor.jwt.cache.size", this.tokens, ConcurrentHashMap::size)
+                .register(registry);
+        Gauge.builder("bootiful.processor.jwt.cache.hit.ratio", this, CachingJwtAuthenticationProvider::hitRatio)
+                .register(registry);
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        var token = ((BearerTokenAuthenticationToken) authentication).getToken();
+        var key = hash(token);
+        var now = this.clock.instant();
+        var verified = this.tokens.get(key);
+        if (verified != null) {
+            // a revoked token goes back through the decoder, whose validators turn it away
+            if (now.isBefore(verified.expiresAt()) && !isRevoked(verified.authentication())) {
+                this.hits.increment();
+                return verified.authentication();
+            }
+            this.tokens.remove(key, verified);
+        }
+        this.misses.increment();
+        var result = this.verification.record(() -> this.delegate.authenticate(authentication));
+        if (result instanceof JwtAuthenticationToken jwtAuthentication) {
+            var expiresAt = jwtAuthentication.getToken().getExpiresAt();
+            if (expiresAt != null && now.isBefore(expiresAt)) {
+                makeRoom(now);
+                this.tokens.put(key, new VerifiedToken(result, expiresAt));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return this.delegate.supports(authentication);
+    }
+
+    double hitRatio() {
+        var total = this.hits.count() + this.misses.count();
+        return total == 0 ? 0 : this.hits.count() / total;
+    }
+
+    int size() {
+        return this.tokens.size();
+    }
+
+    private boolean isRevoked(Authentication authentication) {
+        return authentication instanceof JwtAuthenticationToken jwtAuthentication &&
+               this.revokedTokens.isRevoked(jwtAuthentication.getToken().getId());
+    }
+
+    private void makeRoom(Instant now) {
+        if (this.tokens.size() < this.maxTokens)
+            return;
+        this.tokens.values().removeIf(vt -> !now.isBefore(vt.expiresAt()));
+        var keys = this.tokens.keySet().iterator();
+        while (this.tokens.size() >= this.maxTokens && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static ByteBuffer hash(String token) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        }//
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
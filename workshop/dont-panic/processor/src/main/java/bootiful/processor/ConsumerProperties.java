@@ -0,0 +1,19 @@
+package bootiful.processor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties("bootiful.processor.consumers")
+record ConsumerProperties(
+        @DefaultValue("1") int concurrency,
+        @DefaultValue("1") int maxConcurrency,
+        @DefaultValue("250") int prefetch,
+        @DefaultValue("10") int consecutiveActiveTrigger,
+        @DefaultValue("10s") Duration startConsumerMinInterval,
+        @DefaultValue("false") boolean virtualThreads,
+        @DefaultValue("false") boolean batch,
+        @DefaultValue("100") int batchSize,
+        @DefaultValue("1s") Duration batchReceiveTimeout) {
+}
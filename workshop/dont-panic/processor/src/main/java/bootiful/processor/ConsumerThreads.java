@@ -0,0 +1,37 @@
+package bootiful.processor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ThreadFactory;
+
+abstract class ConsumerThreads {
+
+    private static final Log log = LogFactory.getLog(ConsumerThreads.class);
+
+    // we compile against Java 17, so virtual threads are looked up reflectively
+    // and we fall back to platform threads on runtimes that don't have them
+    static ThreadFactory threadFactory(String prefix, boolean virtual) {
+        if (virtual) {
+            var factory = virtualThreadFactory(prefix);
+            if (factory != null)
+                return factory;
+            log.warn("virtual threads aren't available on Java " + Runtime.version().feature() +
+                     "; using platform threads for the " + prefix + " consumers");
+        }
+        return new CustomizableThreadFactory(prefix);
+    }
+
+    static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            var builderClass = Class.forName("java.lang.Thread$Builder");
+            var builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        }//
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package bootiful.processor;
+
+record Customer(Integer id, String name, String email) {
+}
@@ -0,0 +1,69 @@
+package bootiful.processor;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.http.MediaType;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.util.MimeType;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+// reads the Customer payloads the api sends, in either the JSON or the compact
+// binary format (see CustomerWireFormat in the api), chosen by the content type
+class CustomerDecoder {
+
+    static final String BINARY_CONTENT_TYPE = "application/x-bootiful-customer";
+
+    private static final int ID_PRESENT = 1;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    Customer decode(Object payload, Object contentType) {
+        var bytes = payload instanceof String string ? string.getBytes(StandardCharsets.UTF_8) : (byte[]) payload;
+        var mimeType = contentType == null ? MediaType.APPLICATION_JSON : MimeType.valueOf(contentType.toString());
+        try {
+            if (mimeType.isCompatibleWith(MimeType.valueOf(BINARY_CONTENT_TYPE)))
+                return decodeBinary(bytes);
+            if (mimeType.isCompatibleWith(MediaType.APPLICATION_JSON) || "text".equals(mimeType.getType()))
+                return decodeJson(bytes);
+        }//
+        catch (IOException | RuntimeException e) {
+            throw new MessageConversionException("couldn't read a customer from " + mimeType, e);
+        }
+        throw new MessageConversionException("unsupported content type " + mimeType);
+    }
+
+    private static Customer decodeBinary(byte[] bytes) throws IOException {
+        try (var in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            var version = in.readUnsignedByte();
+            if (version != 1)
+                throw new IOException("unsupported customer encoding version " + version);
+            var flags = in.readUnsignedByte();
+            var id = (flags & ID_PRESENT) != 0 ? Integer.valueOf(in.readInt()) : null;
+            return new Customer(id, in.readUTF(), in.readUTF());
+        }
+    }
+
+    private Customer decodeJson(byte[] bytes) throws IOException {
+        Integer id = null;
+        String name = null, email = null;
+        try (var parser = this.jsonFactory.createParser(bytes)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                throw new IOException("expected a JSON object");
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var field = parser.getCurrentName();
+                var token = parser.nextToken();
+                switch (field) {
+                    case "id" -> id = token == JsonToken.VALUE_NULL ? null : parser.getIntValue();
+                    case "name" -> name = parser.getValueAsString();
+                    case "email" -> email = parser.getValueAsString();
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return new Customer(id, name, email);
+    }
+}
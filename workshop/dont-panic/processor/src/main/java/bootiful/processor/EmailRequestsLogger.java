@@ -0,0 +1,53 @@
+package bootiful.processor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.security.core.Authentication;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+// writes one key=value line per request (or per batch) to the
+// 'bootiful.processor.requests' logger, which logback-spring.xml hands
+// to a non-blocking async appender. only a sample of the events is logged
+class EmailRequestsLogger {
+
+    private static final Logger log = LoggerFactory.getLogger("bootiful.processor.requests");
+
+    private final String headerName;
+
+    private final double sampleRate;
+
+    EmailRequestsLogger(String headerName, double sampleRate) {
+        this.headerName = headerName;
+        this.sampleRate = sampleRate;
+    }
+
+    void request(Customer customer, MessageHeaders headers) {
+        if (sampled())
+            log.info("event=email-request principal={} id={} customer={}",
+                    principal(headers.get(this.headerName)), headers.getId(), customer.id());
+    }
+
+    void batch(List<Customer> customers, MessageHeaders headers) {
+        if (sampled()) {
+            var ids = customers.stream()
+                    .map(c -> String.valueOf(c.id()))
+                    .collect(Collectors.joining(","));
+            log.info("event=email-batch size={} principal={} customers={}",
+                    customers.size(), principal(headers.get(this.headerName)), ids);
+        }
+    }
+
+    private boolean sampled() {
+        return log.isInfoEnabled() &&
+               (this.sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < this.sampleRate);
+    }
+
+    private static String principal(Object authentication) {
+        return authentication instanceof Authentication a ? a.getName() : Objects.toString(authentication);
+    }
+}
@@ -0,0 +1,120 @@
+package bootiful.processor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
+import org.springframework.integration.amqp.support.AmqpHeaderMapper;
+import org.springframework.integration.amqp.support.AmqpMessageHeaderErrorMessageStrategy;
+import org.springframework.integration.amqp.support.DefaultAmqpHeaderMapper;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.core.AuthenticationException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+// takes messages that failed in the requests flow off the emails queue, so that a
+// bad message never spins in a requeue loop in front of healthy ones. messages that
+// can never succeed (no token, a token that doesn't authenticate, a payload the decoder
+// can't read) go straight to the dead-letter queue; anything else is retried through
+// delay queues that dead-letter back onto the emails queue, then dead-lettered too.
+// like RepublishMessageRecoverer, the copies keep the delivery mode the message arrived
+// with (persistent if it's unknown), so they survive a broker restart as the original would
+class FailedEmailRequestRouter {
+
+    static final String RETRIES_HEADER = "x-retries";
+
+    static final String EXCEPTION_HEADER = "x-exception";
+
+    private static final Log log = LogFactory.getLog(FailedEmailRequestRouter.class);
+
+    private final AmqpTemplate template;
+
+    private final String exchange;
+
+    private final List<String> retryRoutingKeys;
+
+    private final String deadLetterRoutingKey;
+
+    private final SimpleMessageConverter converter = new SimpleMessageConverter();
+
+    private final AmqpHeaderMapper headerMapper = DefaultAmqpHeaderMapper.outboundMapper();
+
+    FailedEmailRequestRouter(AmqpTemplate template, String exchange,
+                             List<String> retryRoutingKeys, String deadLetterRoutingKey) {
+        this.template = template;
+        this.exchange = exchange;
+        this.retryRoutingKeys = retryRoutingKeys;
+        this.deadLetterRoutingKey = deadLetterRoutingKey;
+    }
+
+    void route(ErrorMessage errorMessage) {
+        var failure = errorMessage.getPayload();
+        var poison = isPoison(failure);
+        var raw = errorMessage.getHeaders().get(AmqpMessageHeaderErrorMessageStrategy.AMQP_RAW_MESSAGE);
+        if (raw instanceof Message message)
+            route(message, failure, poison);
+        else if (raw instanceof Collection<?> messages)
+            for (var message : messages)
+                route((Message) message, failure, poison);
+        else
+            log.error("couldn't find the AMQP message that failed", failure);
+    }
+
+    // a message taken out of a batch, so it fails on its own: rebuilt from its payload and batched headers
+    void route(Object payload, Map<String, Object> headers, Throwable failure) {
+        var message = this.converter.toMessage(payload, new MessageProperties());
+        var properties = message.getMessageProperties();
+        this.headerMapper.fromHeadersToRequest(new MessageHeaders(headers), properties);
+        if (headers.get(AmqpHeaders.RECEIVED_DELIVERY_MODE) instanceof MessageDeliveryMode deliveryMode)
+            properties.setReceivedDeliveryMode(deliveryMode);
+        route(message, failure, isPoison(failure));
+    }
+
+    private void route(Message message, Throwable failure, boolean poison) {
+        var properties = message.getMessageProperties();
+        var retries = properties.getHeader(RETRIES_HEADER) instanceof Number n ? n.intValue() : 0;
+        var retry = !poison && retries < this.retryRoutingKeys.size();
+        var routingKey = retry ? this.retryRoutingKeys.get(retries) : this.deadLetterRoutingKey;
+        if (properties.getDeliveryMode() == null)
+            properties.setDeliveryMode(properties.getReceivedDeliveryMode() != null ?
+                    properties.getReceivedDeliveryMode() : MessageDeliveryMode.PERSISTENT);
+        properties.setHeader(RETRIES_HEADER, retries + 1);
+        properties.setHeader(EXCEPTION_HEADER, rootCause(failure).toString());
+        if (!retry)
+            log.warn("dead-lettering message " + properties.getMessageId() + " after " + (retries + 1) +
+                     " attempt(s)" + (poison ? " (it can't succeed)" : "") + ": " + rootCause(failure));
+        this.template.send(this.exchange, routingKey, message);
+    }
+
+    static boolean isPoison(Throwable failure) {
+        for (var cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof AuthenticationServiceException)
+                return false;
+            if (cause instanceof AuthenticationException || cause instanceof AccessDeniedException ||
+                cause instanceof MessageConversionException ||
+                cause instanceof org.springframework.amqp.support.converter.MessageConversionException)
+                return true;
+            if (cause.getCause() == cause)
+                break;
+        }
+        return false;
+    }
+
+    private static Throwable rootCause(Throwable failure) {
+        var cause = failure;
+        while (cause instanceof MessagingException && cause.getCause() != null)
+            cause = cause.getCause();
+        return cause;
+    }
+}
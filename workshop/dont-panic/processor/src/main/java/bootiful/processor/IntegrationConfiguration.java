@@ -0,0 +1,267 @@
+package bootiful.processor;
+
+import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.integration.amqp.dsl.Amqp;
+import org.springframework.integration.amqp.inbound.AmqpInboundChannelAdapter;
+import org.springframework.integration.amqp.inbound.AmqpInboundChannelAdapter.BatchMode;
+import org.springframework.integration.dsl.DirectChannelSpec;
+import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.integration.dsl.MessageChannels;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authorization.AuthenticatedAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.messaging.access.intercept.AuthorizationChannelInterceptor;
+import org.springframework.security.messaging.context.SecurityContextChannelInterceptor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static bootiful.processor.BatchJwtAuthenticationInterceptor.AUTHENTICATION_HEADER_NAME;
+import static bootiful.processor.ProcessorApplication.AUTHORIZATION_HEADER_NAME;
+import static bootiful.processor.ProcessorApplication.RABBITMQ_DESTINATION_NAME;
+
+@Configuration
+@EnableConfigurationProperties({ConsumerProperties.class, RetryProperties.class, MessageCredentialProperties.class})
+class IntegrationConfiguration {
+
+    // the flow runs on the consumer thread that received the message (or batch), so
+    // messages are only acknowledged once the flow has returned for them
+    @Bean
+    SimpleMessageListenerContainer emailsListenerContainer(ConnectionFactory connectionFactory,
+                                                           ConsumerProperties properties) {
+        var container = new SimpleMessageListenerContainer(connectionFactory);
+        container.setQueueNames(RABBITMQ_DESTINATION_NAME);
+        container.setConcurrentConsumers(properties.concurrency());
+        container.setMaxConcurrentConsumers(Math.max(properties.concurrency(), properties.maxConcurrency()));
+        container.setConsecutiveActiveTrigger(properties.consecutiveActiveTrigger());
+        container.setStartConsumerMinInterval(properties.startConsumerMinInterval().toMillis());
+        container.setPrefetchCount(properties.prefetch());
+        container.setTaskExecutor(new SimpleAsyncTaskExecutor(
+                ConsumerThreads.threadFactory(RABBITMQ_DESTINATION_NAME + "-", properties.virtualThreads())));
+        if (properties.batch()) {
+            container.setConsumerBatchEnabled(true);
+            container.setBatchSize(properties.batchSize());
+            container.setReceiveTimeout(properties.batchReceiveTimeout().toMillis());
+        }
+        return container;
+    }
+
+    @Bean
+    IntegrationFlow inboundAmqpRequestsIntegrationFlow(MessageChannel requests, MessageChannel requestBatches,
+                                                       MessageChannel emailErrors,
+                                                       SimpleMessageListenerContainer emailsListenerContainer,
+                                                       ConsumerProperties properties) {
+        var inboundAmqpAdapter = Amqp
+                .inboundAdapter(emailsListenerContainer)
+                .errorChannel(emailErrors);
+        if (properties.batch())
+            inboundAmqpAdapter.batchMode(BatchMode.EXTRACT_PAYLOADS_WITH_HEADERS);
+        return IntegrationFlow
+                .from(inboundAmqpAdapter)
+                .channel(properties.batch() ? requestBatches : requests)
+                .get();
+    }
+
+    @Bean
+    EmailRequestsLogger emailRequestsLogger(@Value("${bootiful.processor.requests.log-sample-rate:1}") double sampleRate) {
+        return new EmailRequestsLogger(AUTHORIZATION_HEADER_NAME, sampleRate);
+    }
+
+    @Bean
+    CustomerDecoder customerDecoder() {
+        return new CustomerDecoder();
+    }
+
+    @Bean
+    IntegrationFlow requestsIntegrationFlow(MessageChannel requests, CustomerDecoder customerDecoder,
+                                            EmailRequestsLogger emailRequestsLogger) {
+        return IntegrationFlow
+                .from(requests)//
+                .handle((payload, headers) -> {
+                    var customer = customerDecoder.decode(payload, headers.get(MessageHeaders.CONTENT_TYPE));
+                    emailRequestsLogger.request(customer, headers);
+                    return null;
+                })//
+                .get();
+    }
+
+    // an authenticated batch can hold messages from several principals, so it's handed on as one batch
+    // per principal, each secured as that principal. a batch that fails is routed message by message
+    // here rather than through the error channel, which would send the whole delivery again, messages
+    // the authentication interceptor had already routed and batches that had succeeded included
+    @Bean
+    @SuppressWarnings("unchecked")
+    IntegrationFlow requestBatchesIntegrationFlow(MessageChannel requestBatches, MessageChannel principalBatches,
+                                                  FailedEmailRequestRouter router) {
+        return IntegrationFlow
+                .from(requestBatches)//
+                .handle(List.class, (payloads, headers) -> {
+                    var batchedHeaders = (List<Map<String, Object>>) headers.get(AmqpInboundChannelAdapter.CONSOLIDATED_HEADERS);
+                    var byPrincipal = new LinkedHashMap<String, List<Integer>>();
+                    for (var i = 0; i < payloads.size(); i++) {
+                        var authentication = (Authentication) batchedHeaders.get(i).get(AUTHENTICATION_HEADER_NAME);
+                        byPrincipal.computeIfAbsent(authentication.getName(), name -> new ArrayList<>()).add(i);
+                    }
+                    for (var messages : byPrincipal.values()) {
+                        var batch = MessageBuilder
+                                .withPayload(messages.stream().map(payloads::get).toList())
+                                .setHeader(AmqpInboundChannelAdapter.CONSOLIDATED_HEADERS,
+                                        messages.stream().map(batchedHeaders::get).toList())
+                                .setHeader(AUTHORIZATION_HEADER_NAME, batchedHeaders.get(messages.get(0)).get(AUTHENTICATION_HEADER_NAME))
+                                .build();
+                        try {
+                            principalBatches.send(batch);
+                        }//
+                        catch (MessagingException e) {
+                            for (var i : messages) {
+                                var original = new HashMap<>(batchedHeaders.get(i));
+                                original.remove(AUTHENTICATION_HEADER_NAME);
+                                router.route(payloads.get(i), original, e);
+                            }
+                        }
+                    }
+                    return null;
+                })//
+                .get();
+    }
+
+    @Bean
+    @SuppressWarnings("unchecked")
+    IntegrationFlow principalBatchesIntegrationFlow(MessageChannel principalBatches, CustomerDecoder customerDecoder,
+                                                    EmailRequestsLogger emailRequestsLogger) {
+        return IntegrationFlow
+                .from(principalBatches)//
+                .handle(List.class, (payloads, headers) -> {
+                    var batchedHeaders = (List<Map<String, Object>>) headers.get(AmqpInboundChannelAdapter.CONSOLIDATED_HEADERS);
+                    var customers = new ArrayList<Customer>(payloads.size());
+                    for (var i = 0; i < payloads.size(); i++)
+                        customers.add(customerDecoder.decode(payloads.get(i),
+                                batchedHeaders.get(i).get(MessageHeaders.CONTENT_TYPE)));
+                    emailRequestsLogger.batch(customers, headers);
+                    return null;
+                })//
+                .get();
+    }
+
+    // without message credential keys there's no verifier, and every message has to carry a JWT
+    @Bean
+    DirectChannelSpec requests(CachingJwtAuthenticationProvider cachingJwtAuthenticationProvider,
+                               ObjectProvider<MessageCredentialVerifier> messageCredentialVerifier) {
+        return MessageChannels
+                .direct()
+                .interceptor(
+                        new JwtAuthenticationInterceptor(AUTHORIZATION_HEADER_NAME, cachingJwtAuthenticationProvider,
+                                messageCredentialVerifier.getIfAvailable()),
+                        new SecurityContextChannelInterceptor(AUTHORIZATION_HEADER_NAME),
+                        new AuthorizationChannelInterceptor(AuthenticatedAuthorizationManager.authenticated()));
+    }
+
+    // each message in a batch carries its own authentication in its batched headers
+    @Bean
+    DirectChannelSpec requestBatches(CachingJwtAuthenticationProvider cachingJwtAuthenticationProvider,
+                                     ObjectProvider<MessageCredentialVerifier> messageCredentialVerifier,
+                                     FailedEmailRequestRouter failedEmailRequestRouter) {
+        return MessageChannels
+                .direct()
+                .interceptor(new BatchJwtAuthenticationInterceptor(AUTHORIZATION_HEADER_NAME, cachingJwtAuthenticationProvider,
+                        messageCredentialVerifier.getIfAvailable(), failedEmailRequestRouter));
+    }
+
+    // the messages of one principal, with that principal's authentication on the batch
+    @Bean
+    DirectChannelSpec principalBatches() {
+        return MessageChannels
+                .direct()
+                .interceptor(
+                        new SecurityContextChannelInterceptor(AUTHORIZATION_HEADER_NAME),
+                        new AuthorizationChannelInterceptor(AuthenticatedAuthorizationManager.authenticated()));
+    }
+
+    @Bean
+    FailedEmailRequestRouter failedEmailRequestRouter(AmqpTemplate template, RetryProperties retry) {
+        var retryRoutingKeys = retry.delays().stream().map(IntegrationConfiguration::retryQueueName).toList();
+        return new FailedEmailRequestRouter(template, RABBITMQ_DESTINATION_NAME, retryRoutingKeys, deadLetterQueueName());
+    }
+
+    // once the router has republished a failed message, the original is acked
+    @Bean
+    IntegrationFlow emailErrorsIntegrationFlow(MessageChannel emailErrors, FailedEmailRequestRouter router) {
+        return IntegrationFlow
+                .from(emailErrors)
+                .handle(message -> router.route((ErrorMessage) message))
+                .get();
+    }
+
+    @Bean
+    DirectChannelSpec emailErrors() {
+        return MessageChannels.direct();
+    }
+
+    @Bean
+    Queue queue() {
+        return QueueBuilder.durable(RABBITMQ_DESTINATION_NAME).build();
+    }
+
+    @Bean
+    Exchange exchange() {
+        return ExchangeBuilder.directExchange(RABBITMQ_DESTINATION_NAME).build();
+    }
+
+    @Bean
+    Binding binding() {
+        return BindingBuilder.bind(queue()).to(exchange()).with(RABBITMQ_DESTINATION_NAME).noargs();
+    }
+
+    @Bean
+    Queue deadLetterQueue() {
+        return QueueBuilder.durable(deadLetterQueueName()).build();
+    }
+
+    @Bean
+    Binding deadLetterBinding() {
+        return BindingBuilder.bind(deadLetterQueue()).to(exchange()).with(deadLetterQueueName()).noargs();
+    }
+
+    // the delay is part of each retry queue's name, so changing the retry
+    // settings declares new queues rather than clashing with existing ones
+    @Bean
+    Declarables retryQueues(RetryProperties retry) {
+        var declarables = new ArrayList<Declarable>();
+        for (var delay : retry.delays()) {
+            var retryQueue = QueueBuilder
+                    .durable(retryQueueName(delay))
+                    .ttl((int) delay.toMillis())
+                    .deadLetterExchange(RABBITMQ_DESTINATION_NAME)
+                    .deadLetterRoutingKey(RABBITMQ_DESTINATION_NAME)
+                    .build();
+            declarables.add(retryQueue);
+            declarables.add(BindingBuilder.bind(retryQueue).to(exchange()).with(retryQueue.getName()).noargs());
+        }
+        return new Declarables(declarables);
+    }
+
+    static String retryQueueName(Duration delay) {
+        return RABBITMQ_DESTINATION_NAME + ".retry." + delay.toMillis() + "ms";
+    }
+
+    static String deadLetterQueueName() {
+        return RABBITMQ_DESTINATION_NAME + ".dlq";
+    }
+
+}
@@ -0,0 +1,58 @@
+package bootiful.processor;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.util.StringUtils;
+
+class JwtAuthenticationInterceptor implements ChannelInterceptor {
+
+    private final AuthenticationProvider authenticationProvider;
+
+    private final MessageCredentialVerifier messageCredentialVerifier;
+
+    private final String headerName;
+
+    JwtAuthenticationInterceptor(String headerName, AuthenticationProvider ap,
+                                 MessageCredentialVerifier messageCredentialVerifier) {
+        this.headerName = headerName;
+        this.authenticationProvider = ap;
+        this.messageCredentialVerifier = messageCredentialVerifier;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        // messages from an api signing message credentials carry those instead of the user's JWT,
+        // but they're only accepted when this processor has been given the keys to check them
+        var credential = (String) message.getHeaders().get(MessageCredentialVerifier.HEADER_NAME);
+        if (credential != null && this.messageCredentialVerifier != null)
+            return MessageBuilder
+                    .fromMessage(message)
+                    .setHeader(headerName, this.messageCredentialVerifier.verify(credential))
+                    .build();
+        var token = (String) message.getHeaders().get(headerName);
+        if (!StringUtils.hasText(token))
+            throw new AuthenticationCredentialsNotFoundException("the token must be non-empty!");
+        var authentication = this.authenticationProvider
+                .authenticate(new BearerTokenAuthenticationToken(token));
+        if (authentication != null && authentication.isAuthenticated()) {
+            var upt =
+                    UsernamePasswordAuthenticationToken.authenticated(authentication.getName(),
+                    null, AuthorityUtils.NO_AUTHORITIES);
+            return MessageBuilder
+                    .fromMessage(message)
+                    .setHeader(headerName, upt)
+                    .build();
+        }
+        return MessageBuilder
+                .fromMessage(message)
+                .setHeader(headerName, null)
+                .build();
+    }
+}
@@ -0,0 +1,12 @@
+package bootiful.processor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.Map;
+
+// the base64 encoded HMAC-SHA256 secrets the api signs message credentials with, indexed
+// by key id. every key the api might still be signing with has to be listed here
+@ConfigurationProperties("bootiful.messages")
+record MessageCredentialProperties(@DefaultValue Map<String, String> keys) {
+}
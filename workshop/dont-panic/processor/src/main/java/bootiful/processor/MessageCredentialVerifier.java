@@ -0,0 +1,72 @@
+package bootiful.processor;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.CredentialsExpiredException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+// verifies the HMAC signed credentials the api mints in place of the user's JWT:
+// <key id>.<base64url(subject \n scopes \n expiry)>.<base64url(hmac)>. checking one is a
+// single HMAC over a few dozen bytes, rather than an RSA signature check and JWT parse
+class MessageCredentialVerifier {
+
+    static final String HEADER_NAME = "credential";
+
+    private final Map<String, SecretKeySpec> keys = new HashMap<>();
+
+    private final Clock clock;
+
+    MessageCredentialVerifier(Map<String, String> keys, Clock clock) {
+        keys.forEach((keyId, key) -> this.keys.put(keyId,
+                new SecretKeySpec(Base64.getDecoder().decode(key), "HmacSHA256")));
+        this.clock = clock;
+    }
+
+    Authentication verify(String credential) {
+        var signatureStart = credential.lastIndexOf('.');
+        var claimsStart = credential.indexOf('.');
+        if (claimsStart < 0 || claimsStart == signatureStart)
+            throw new BadCredentialsException("the message credential is malformed");
+        var key = this.keys.get(credential.substring(0, claimsStart));
+        if (key == null)
+            throw new BadCredentialsException("the message credential was signed with an unknown key");
+        try {
+            var signed = credential.substring(0, signatureStart);
+            var signature = Base64.getUrlDecoder().decode(credential.substring(signatureStart + 1));
+            var mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            if (!MessageDigest.isEqual(signature, mac.doFinal(signed.getBytes(StandardCharsets.US_ASCII))))
+                throw new BadCredentialsException("the message credential's signature doesn't match");
+            var claims = new String(Base64.getUrlDecoder().decode(
+                    credential.substring(claimsStart + 1, signatureStart)), StandardCharsets.UTF_8).split("\n", -1);
+            if (claims.length != 3)
+                throw new BadCredentialsException("the message credential is malformed");
+            if (!this.clock.instant().isBefore(Instant.ofEpochSecond(Long.parseLong(claims[2]))))
+                throw new CredentialsExpiredException("the message credential has expired");
+            var authorities = claims[1].isEmpty() ? AuthorityUtils.NO_AUTHORITIES :
+                    AuthorityUtils.createAuthorityList(Arrays.stream(claims[1].split(" "))
+                            .map(scope -> "SCOPE_" + scope)
+                            .toArray(String[]::new));
+            return UsernamePasswordAuthenticationToken.authenticated(claims[0], null, authorities);
+        }//
+        catch (IllegalArgumentException e) {
+            throw new BadCredentialsException("the message credential is malformed", e);
+        }//
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException("couldn't verify the message credential", e);
+        }
+    }
+}
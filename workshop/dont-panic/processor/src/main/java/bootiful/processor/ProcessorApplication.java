@@ -1,35 +1,26 @@
 package bootiful.processor;
 
-import org.springframework.amqp.core.*;
-import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.integration.amqp.dsl.Amqp;
-import org.springframework.integration.dsl.DirectChannelSpec;
-import org.springframework.integration.dsl.IntegrationFlow;
-import org.springframework.integration.dsl.MessageChannels;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.MessageChannel;
-import org.springframework.messaging.support.ChannelInterceptor;
-import org.springframework.messaging.support.MessageBuilder;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.authorization.AuthenticatedAuthorizationManager;
-import org.springframework.security.core.authority.AuthorityUtils;
-import org.springframework.security.messaging.access.intercept.AuthorizationChannelInterceptor;
-import org.springframework.security.messaging.context.SecurityContextChannelInterceptor;
+import org.springframework.core.type.AnnotatedTypeMetadata;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
-import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
-import org.springframework.util.Assert;
 
-import static bootiful.processor.ProcessorApplication.AUTHORIZATION_HEADER_NAME;
-import static bootiful.processor.ProcessorApplication.RABBITMQ_DESTINATION_NAME;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
 
 @SpringBootApplication
 public class ProcessorApplication {
@@ -44,74 +35,58 @@ public class ProcessorApplication {
 
 }
 
-
-
-
 @Configuration
-class IntegrationConfiguration {
-
+class SecurityConfiguration {
 
     @Bean
-    IntegrationFlow inboundAmqpRequestsIntegrationFlow(MessageChannel requests, ConnectionFactory connectionFactory) {
-        var inboundAmqpAdapter = Amqp
-                .inboundAdapter(connectionFactory, RABBITMQ_DESTINATION_NAME);
-        return IntegrationFlow
-                .from(inboundAmqpAdapter)
-                .channel(requests)
-                .get();
+    JwtAuthenticationProvider jwtAuthenticationProvider(JwtDecoder decoder) {
+        return new JwtAuthenticationProvider(decoder);
     }
 
     @Bean
-    IntegrationFlow requestsIntegrationFlow(MessageChannel requests) {
-        return IntegrationFlow
-                .from(requests)//
-                .handle((payload, headers) -> {
-                    System.out.println("------------------------------------------------------------------------------");
-                    System.out.println(payload.toString());
-                    headers.forEach((key, value) -> System.out.println(key + '=' + value));
-                    return null;
-                })//
-                .get();
+    CachingJwtAuthenticationProvider cachingJwtAuthenticationProvider(
+            JwtAuthenticationProvider jwtAuthenticationProvider, RevokedTokens revokedTokens, MeterRegistry meterRegistry,
+            @Value("${bootiful.processor.jwt.cache-size:10000}") int maxTokens) {
+        return new CachingJwtAuthenticationProvider(jwtAuthenticationProvider, revokedTokens, maxTokens,
+                meterRegistry, Clock.systemUTC());
     }
 
+    // the keys are secrets, so none ship with the application: message credentials are
+    // only trusted once keys have been configured from outside, e.g. BOOTIFUL_MESSAGES_KEYS_K1
     @Bean
-    DirectChannelSpec requests(JwtAuthenticationProvider jwtAuthenticationProvider) {
-        return MessageChannels
-                .direct()
-                .interceptor(
-                        new JwtAuthenticationInterceptor(AUTHORIZATION_HEADER_NAME, jwtAuthenticationProvider),
-                        new SecurityContextChannelInterceptor(AUTHORIZATION_HEADER_NAME),
-                        new AuthorizationChannelInterceptor(AuthenticatedAuthorizationManager.authenticated()));
+    @Conditional(MessageCredentialKeysConfigured.class)
+    MessageCredentialVerifier messageCredentialVerifier(MessageCredentialProperties properties) {
+        return new MessageCredentialVerifier(properties.keys(), Clock.systemUTC());
     }
 
-    @Bean
-    Queue queue() {
-        return QueueBuilder.durable(RABBITMQ_DESTINATION_NAME).build();
-    }
+    static class MessageCredentialKeysConfigured implements Condition {
 
-    @Bean
-    Exchange exchange() {
-        return ExchangeBuilder.directExchange(RABBITMQ_DESTINATION_NAME).build();
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            return Binder.get(context.getEnvironment())
+                    .bind("bootiful.messages.keys", Bindable.mapOf(String.class, String.class))
+                    .map(keys -> !keys.isEmpty())
+                    .orElse(false);
+        }
     }
 
     @Bean
-    Binding binding() {
-        return BindingBuilder.bind(queue()).to(exchange()).with(RABBITMQ_DESTINATION_NAME).noargs();
-    }
-
-}
-
-@Configuration
-class SecurityConfiguration {
-
-    @Bean
-    JwtAuthenticationProvider jwtAuthenticationProvider(JwtDecoder decoder) {
-        return new JwtAuthenticationProvider(decoder);
+    SnapshotJwkSource snapshotJwkSource(RestTemplateBuilder restTemplateBuilder,
+                                        @Value("${bootiful.jwks.uri}") URI jwkSetUri,
+                                        @Value("${bootiful.jwks.snapshot}") Path snapshotFile,
+                                        @Value("${bootiful.jwks.refresh-interval:5m}") Duration refreshInterval,
+                                        @Value("${bootiful.jwks.min-refetch-interval:30s}") Duration minRefetchInterval) {
+        var restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofSeconds(5))
+                .setReadTimeout(Duration.ofSeconds(5))
+                .build();
+        return new SnapshotJwkSource(restTemplate, jwkSetUri, snapshotFile, refreshInterval, minRefetchInterval);
     }
 
     @Bean
-    JwtDecoder jwtDecoder(@Value("${spring.security.oauth2.authorizationserver.issuer}") String issuerUri) {
-        return NimbusJwtDecoder.withIssuerLocation(issuerUri).build();
+    JwtDecoder jwtDecoder(SnapshotJwkSource snapshotJwkSource, RevokedTokens revokedTokens,
+                          @Value("${spring.security.oauth2.authorizationserver.issuer}") String issuerUri) {
+        return SnapshotJwkSource.jwtDecoder(snapshotJwkSource, issuerUri, revokedTokens);
     }
 
     @Bean
@@ -119,36 +94,3 @@ class SecurityConfiguration {
         return new JwtAuthenticationConverter();
     }
 }
-
-class JwtAuthenticationInterceptor implements ChannelInterceptor {
-
-    private final JwtAuthenticationProvider authenticationProvider;
-
-    private final String headerName;
-
-    JwtAuthenticationInterceptor(String headerName, JwtAuthenticationProvider ap) {
-        this.headerName = headerName;
-        this.authenticationProvider = ap;
-    }
-
-    @Override
-    public Message<?> preSend(Message<?> message, MessageChannel channel) {
-        var token = (String) message.getHeaders().get(headerName);
-        Assert.hasText(token, "the token must be non-empty!");
-        var authentication = this.authenticationProvider
-                .authenticate(new BearerTokenAuthenticationToken(token));
-        if (authentication != null && authentication.isAuthenticated()) {
-            var upt =
-                    UsernamePasswordAuthenticationToken.authenticated(authentication.getName(),
-                    null, AuthorityUtils.NO_AUTHORITIES);
-            return MessageBuilder
-                    .fromMessage(message)
-                    .setHeader(headerName, upt)
-                    .build();
-        }
-        return MessageBuilder
-                .fromMessage(message)
-                .setHeader(headerName, null)
-                .build();
-    }
-}
\ No newline at end of file
@@ -0,0 +1,26 @@
+package bootiful.processor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// a failed message is retried up to maxRetries times, after its first attempt
+@ConfigurationProperties("bootiful.processor.retry")
+record RetryProperties(
+        @DefaultValue("3") int maxRetries,
+        @DefaultValue("1s") Duration initialInterval,
+        @DefaultValue("2") double multiplier) {
+
+    List<Duration> delays() {
+        var delays = new ArrayList<Duration>(this.maxRetries);
+        var delay = (double) this.initialInterval.toMillis();
+        for (var retry = 0; retry < this.maxRetries; retry++) {
+            delays.add(Duration.ofMillis((long) delay));
+            delay *= this.multiplier;
+        }
+        return delays;
+    }
+}
@@ -0,0 +1,91 @@
+package bootiful.processor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// the ids of access tokens the authorization server has revoked, as it announces them on the
+// revocations exchange. each is only kept until the token would have expired anyway, after which
+// the signature check turns it away by itself, so the set never holds more than the revocations of
+// one access token lifetime. checking a token is a single hash lookup
+class RevokedTokens implements OAuth2TokenValidator<Jwt>, InitializingBean, DisposableBean {
+
+    private static final Log log = LogFactory.getLog(RevokedTokens.class);
+
+    private static final OAuth2Error REVOKED = new OAuth2Error(OAuth2ErrorCodes.INVALID_TOKEN,
+            "The token has been revoked", null);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new CustomizableThreadFactory("revoked-tokens-"));
+
+    // jti -> expiry in epoch seconds
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private final Duration sweepInterval;
+
+    private final Clock clock;
+
+    RevokedTokens(Duration sweepInterval, Clock clock) {
+        this.sweepInterval = sweepInterval;
+        this.clock = clock;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        this.scheduler.scheduleWithFixedDelay(this::removeExpired, this.sweepInterval.toMillis(),
+                this.sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        this.scheduler.shutdownNow();
+    }
+
+    @Override
+    public OAuth2TokenValidatorResult validate(Jwt token) {
+        return isRevoked(token.getId()) ? OAuth2TokenValidatorResult.failure(REVOKED) : OAuth2TokenValidatorResult.success();
+    }
+
+    boolean isRevoked(String jti) {
+        if (jti == null)
+            return false;
+        var expiresAt = this.revoked.get(jti);
+        return expiresAt != null && expiresAt > this.clock.instant().getEpochSecond();
+    }
+
+    // a revocation as the authorization server publishes it: the jti and the expiry in epoch seconds
+    void revoke(String revocation) {
+        var separator = revocation.lastIndexOf(' ');
+        try {
+            var expiresAt = Long.parseLong(revocation.substring(separator + 1).trim());
+            if (separator > 0 && expiresAt > this.clock.instant().getEpochSecond())
+                this.revoked.put(revocation.substring(0, separator), expiresAt);
+        }//
+        catch (NumberFormatException e) {
+            log.warn("ignoring a malformed revocation: " + revocation);
+        }
+    }
+
+    void removeExpired() {
+        var now = this.clock.instant().getEpochSecond();
+        this.revoked.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+
+    int size() {
+        return this.revoked.size();
+    }
+}
@@ -0,0 +1,46 @@
+package bootiful.processor;
+
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.amqp.dsl.Amqp;
+import org.springframework.integration.dsl.IntegrationFlow;
+
+import java.time.Clock;
+import java.time.Duration;
+
+// every instance gets its own queue on the revocations fanout, deleted when it disconnects.
+// an instance only hears of revocations made while it's running, which is fine while access
+// tokens are short-lived
+@Configuration
+class RevokedTokensConfiguration {
+
+    private final AnonymousQueue revocationsQueue = new AnonymousQueue();
+
+    @Bean
+    RevokedTokens revokedTokens(@Value("${bootiful.revocations.sweep-interval:1m}") Duration sweepInterval) {
+        return new RevokedTokens(sweepInterval, Clock.systemUTC());
+    }
+
+    @Bean
+    Declarables revocations(@Value("${bootiful.revocations.exchange:revocations}") String exchange) {
+        var fanout = new FanoutExchange(exchange);
+        return new Declarables(fanout, this.revocationsQueue, BindingBuilder.bind(this.revocationsQueue).to(fanout));
+    }
+
+    @Bean
+    IntegrationFlow revocationsIntegrationFlow(ConnectionFactory connectionFactory, RevokedTokens revokedTokens) {
+        return IntegrationFlow
+                .from(Amqp.inboundAdapter(connectionFactory, this.revocationsQueue))
+                .handle(String.class, (revocation, headers) -> {
+                    revokedTokens.revoke(revocation);
+                    return null;
+                })
+                .get();
+    }
+}
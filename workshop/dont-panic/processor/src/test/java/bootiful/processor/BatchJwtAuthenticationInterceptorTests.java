@@ -0,0 +1,90 @@
+package bootiful.processor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.integration.amqp.inbound.AmqpInboundChannelAdapter;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class BatchJwtAuthenticationInterceptorTests {
+
+	private final AmqpTemplate template = mock(AmqpTemplate.class);
+
+	private final BatchJwtAuthenticationInterceptor interceptor = new BatchJwtAuthenticationInterceptor(
+			ProcessorApplication.AUTHORIZATION_HEADER_NAME,
+			new JwtAuthenticationProvider(token -> {
+				if (!token.equals("valid"))
+					throw new BadJwtException("bad token");
+				return Jwt.withTokenValue(token)
+						.header("alg", "RS256")
+						.subject("jlong")
+						.expiresAt(Instant.now().plusSeconds(60))
+						.build();
+			}),
+			null,
+			new FailedEmailRequestRouter(this.template, "emails", List.of("emails.retry.1000ms"), "emails.dlq"));
+
+	private static Map<String, Object> headers(String token) {
+		return token == null ?
+				Map.of(MessageHeaders.CONTENT_TYPE, "application/json",
+						AmqpHeaders.RECEIVED_DELIVERY_MODE, MessageDeliveryMode.PERSISTENT) :
+				Map.of(MessageHeaders.CONTENT_TYPE, "application/json",
+						AmqpHeaders.RECEIVED_DELIVERY_MODE, MessageDeliveryMode.PERSISTENT,
+						ProcessorApplication.AUTHORIZATION_HEADER_NAME, token);
+	}
+
+	private static org.springframework.messaging.Message<?> batch(List<String> tokens) {
+		var payloads = tokens.stream().map(token -> ("{\"token\":\"" + token + "\"}").getBytes(StandardCharsets.UTF_8)).toList();
+		return MessageBuilder.withPayload(payloads)
+				.setHeader(AmqpInboundChannelAdapter.CONSOLIDATED_HEADERS, tokens.stream().map(token ->
+						headers(token.equals("none") ? null : token)).toList())
+				.build();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void deadLettersTheMessagesThatDoNotAuthenticate() {
+		var authenticated = this.interceptor.preSend(batch(List.of("valid", "forged", "none")), null);
+		Assertions.assertEquals(1, ((List<?>) authenticated.getPayload()).size());
+		var accepted = ((List<Map<String, Object>>) authenticated.getHeaders().get(AmqpInboundChannelAdapter.CONSOLIDATED_HEADERS)).get(0);
+		var principal = (Authentication) accepted.get(BatchJwtAuthenticationInterceptor.AUTHENTICATION_HEADER_NAME);
+		Assertions.assertEquals("jlong", principal.getName());
+		Assertions.assertEquals("valid", accepted.get(ProcessorApplication.AUTHORIZATION_HEADER_NAME));
+		Assertions.assertNull(authenticated.getHeaders().get(ProcessorApplication.AUTHORIZATION_HEADER_NAME));
+
+		var deadLettered = ArgumentCaptor.forClass(Message.class);
+		verify(this.template, times(2)).send(eq("emails"), eq("emails.dlq"), deadLettered.capture());
+		var forged = deadLettered.getAllValues().get(0);
+		Assertions.assertEquals("{\"token\":\"forged\"}", new String(forged.getBody(), StandardCharsets.UTF_8));
+		Assertions.assertEquals("application/json", forged.getMessageProperties().getContentType());
+		Assertions.assertEquals("forged", forged.getMessageProperties().getHeader(ProcessorApplication.AUTHORIZATION_HEADER_NAME));
+		Assertions.assertEquals(MessageDeliveryMode.PERSISTENT, forged.getMessageProperties().getDeliveryMode());
+	}
+
+	@Test
+	void sendsNothingWhenNoMessageAuthenticates() {
+		Assertions.assertNull(this.interceptor.preSend(batch(List.of("forged")), null));
+		verify(this.template).send(eq("emails"), eq("emails.dlq"), any(Message.class));
+	}
+
+}
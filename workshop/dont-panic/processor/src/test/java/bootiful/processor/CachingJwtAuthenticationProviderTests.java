@@ -0,0 +1,78 @@
+package bootiful.processor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CachingJwtAuthenticationProviderTests {
+
+	private final Instant now = Instant.parse("2023-09-01T00:00:00Z");
+
+	private final AtomicInteger verifications = new AtomicInteger();
+
+	private final JwtAuthenticationProvider jwtAuthenticationProvider = new JwtAuthenticationProvider(token -> {
+		this.verifications.incrementAndGet();
+		return Jwt.withTokenValue(token)
+				.header("alg", "RS256")
+				.subject("jlong")
+				.jti("jti-" + token)
+				.expiresAt(this.now.plus(Duration.ofMinutes(5)))
+				.build();
+	});
+
+	private final RevokedTokens revokedTokens = new RevokedTokens(Duration.ofMinutes(1), Clock.fixed(this.now, ZoneOffset.UTC));
+
+	private CachingJwtAuthenticationProvider provider(Instant instant, int maxTokens) {
+		return new CachingJwtAuthenticationProvider(this.jwtAuthenticationProvider, this.revokedTokens, maxTokens,
+				new SimpleMeterRegistry(), Clock.fixed(instant, ZoneOffset.UTC));
+	}
+
+	@Test
+	void verifiesEachTokenOnce() {
+		var provider = provider(this.now, 10);
+		for (var i = 0; i < 5; i++) {
+			var authentication = provider.authenticate(new BearerTokenAuthenticationToken("a"));
+			Assertions.assertEquals("jlong", authentication.getName());
+		}
+		provider.authenticate(new BearerTokenAuthenticationToken("b"));
+		Assertions.assertEquals(2, this.verifications.get());
+		Assertions.assertEquals(4d / 6, provider.hitRatio());
+	}
+
+	@Test
+	void reverifiesExpiredTokens() {
+		var provider = provider(this.now.plus(Duration.ofMinutes(10)), 10);
+		provider.authenticate(new BearerTokenAuthenticationToken("a"));
+		provider.authenticate(new BearerTokenAuthenticationToken("a"));
+		Assertions.assertEquals(2, this.verifications.get());
+		Assertions.assertEquals(0, provider.size());
+	}
+
+	@Test
+	void reverifiesRevokedTokens() {
+		var provider = provider(this.now, 10);
+		provider.authenticate(new BearerTokenAuthenticationToken("a"));
+		provider.authenticate(new BearerTokenAuthenticationToken("a"));
+		this.revokedTokens.revoke("jti-a " + this.now.plus(Duration.ofMinutes(5)).getEpochSecond());
+		provider.authenticate(new BearerTokenAuthenticationToken("a"));
+		Assertions.assertEquals(2, this.verifications.get());
+	}
+
+	@Test
+	void staysWithinItsCapacity() {
+		var provider = provider(this.now, 3);
+		for (var i = 0; i < 10; i++)
+			provider.authenticate(new BearerTokenAuthenticationToken("token-" + i));
+		Assertions.assertTrue(provider.size() <= 3);
+	}
+
+}
@@ -0,0 +1,46 @@
+package bootiful.processor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.converter.MessageConversionException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+
+class CustomerDecoderTests {
+
+	private final CustomerDecoder decoder = new CustomerDecoder();
+
+	@Test
+	void decodesJson() {
+		var json = "{\"id\":4,\"name\":\"Josh Long\",\"email\":\"jl@email.com\",\"ignored\":{\"a\":[1]}}";
+		Assertions.assertEquals(new Customer(4, "Josh Long", "jl@email.com"),
+				this.decoder.decode(json.getBytes(StandardCharsets.UTF_8), "application/json"));
+		Assertions.assertEquals(new Customer(null, "a", "b"),
+				this.decoder.decode("{\"id\":null,\"name\":\"a\",\"email\":\"b\"}", "text/plain"));
+	}
+
+	@Test
+	void decodesTheBinaryFormat() throws Exception {
+		var bytes = new ByteArrayOutputStream();
+		try (var out = new DataOutputStream(bytes)) {
+			out.writeByte(1);
+			out.writeByte(1);
+			out.writeInt(6);
+			out.writeUTF("J\u00fcrgen Hoeller");
+			out.writeUTF("jh@email.com");
+		}
+		Assertions.assertEquals(new Customer(6, "J\u00fcrgen Hoeller", "jh@email.com"),
+				this.decoder.decode(bytes.toByteArray(), CustomerDecoder.BINARY_CONTENT_TYPE));
+	}
+
+	@Test
+	void rejectsWhatItCantRead() {
+		Assertions.assertThrows(MessageConversionException.class,
+				() -> this.decoder.decode(new byte[]{2, 0}, CustomerDecoder.BINARY_CONTENT_TYPE));
+		Assertions.assertThrows(MessageConversionException.class,
+				() -> this.decoder.decode(new byte[0], "application/octet-stream"));
+	}
+
+}
@@ -0,0 +1,216 @@
+package bootiful.processor;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.annotation.EnableRabbit;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.amqp.rabbit.test.TestRabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.integration.channel.AbstractMessageChannel;
+import org.springframework.integration.config.EnableIntegration;
+import org.springframework.integration.endpoint.AbstractEndpoint;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+@SpringJUnitConfig
+@TestPropertySource(properties = {
+		"bootiful.processor.consumers.concurrency=2",
+		"bootiful.processor.consumers.max-concurrency=8",
+		"bootiful.processor.consumers.prefetch=50"})
+class EmailsListenerContainerTests {
+
+	@Autowired
+	SimpleMessageListenerContainer container;
+
+	@Autowired
+	TestRabbitTemplate template;
+
+	@Autowired
+	AbstractMessageChannel requests;
+
+	@Test
+	void configuresConsumersFromProperties() {
+		Assertions.assertArrayEquals(new String[]{ProcessorApplication.RABBITMQ_DESTINATION_NAME}, this.container.getQueueNames());
+		Assertions.assertEquals(2, ReflectionTestUtils.getField(this.container, "concurrentConsumers"));
+		Assertions.assertEquals(8, ReflectionTestUtils.getField(this.container, "maxConcurrentConsumers"));
+		Assertions.assertEquals(50, ReflectionTestUtils.getField(this.container, "prefetchCount"));
+	}
+
+	@Autowired
+	List<Consumer> brokerConsumers;
+
+	// the stand-in channel keeps the consumers the container registers, so deliveries can be pushed
+	// to them as the broker would, and the flow runs on the container's own consumer threads
+	@Test
+	void drainsDeliveriesOnSeveralConsumerThreads() throws Exception {
+		var messages = 1_000;
+		var handled = new CountDownLatch(messages);
+		var threads = ConcurrentHashMap.<String>newKeySet();
+		this.requests.addInterceptor(new ChannelInterceptor() {
+			@Override
+			public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+				if (sent && ex == null) {
+					threads.add(Thread.currentThread().getName());
+					handled.countDown();
+				}
+			}
+		});
+		this.container.start();
+		try {
+			Assertions.assertEquals(2, this.container.getActiveConsumerCount());
+			var started = System.nanoTime();
+			while (this.brokerConsumers.size() < 2 && System.nanoTime() - started < TimeUnit.SECONDS.toNanos(10))
+				Thread.sleep(10);
+			Assertions.assertEquals(2, this.brokerConsumers.size());
+			var properties = new AMQP.BasicProperties.Builder()
+					.contentType("application/json")
+					.headers(Map.of(ProcessorApplication.AUTHORIZATION_HEADER_NAME, "token"))
+					.build();
+			for (var i = 0; i < messages; i++) {
+				var consumer = this.brokerConsumers.get(i % 2);
+				consumer.handleDelivery("consumer-" + (i % 2), new Envelope(i / 2 + 1, false, "",
+						ProcessorApplication.RABBITMQ_DESTINATION_NAME), properties, ("{\"id\":" + i + "}").getBytes(StandardCharsets.UTF_8));
+			}
+			Assertions.assertTrue(handled.await(30, TimeUnit.SECONDS), () -> handled.getCount() + " messages weren't handled");
+			Assertions.assertEquals(2, threads.size(), () -> "handled on " + threads);
+			Assertions.assertTrue(threads.stream().allMatch(thread -> thread.startsWith(ProcessorApplication.RABBITMQ_DESTINATION_NAME + "-")));
+		}//
+		finally {
+			this.container.stop();
+		}
+	}
+
+	// TestRabbitTemplate hands each message to the container's listener on the sending thread,
+	// so this drives the flow from several threads at once, not through the consumers
+	@Test
+	void deliversMessagesSentFromManyThreadsThroughTheFlow() throws Exception {
+		var handled = new AtomicInteger();
+		this.requests.addInterceptor(new ChannelInterceptor() {
+			@Override
+			public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+				if (sent && ex == null)
+					handled.incrementAndGet();
+			}
+		});
+		var senders = 8;
+		var messagesPerSender = 250;
+		var executor = Executors.newFixedThreadPool(senders);
+		for (var s = 0; s < senders; s++)
+			executor.submit(() -> {
+				for (var i = 0; i < messagesPerSender; i++)
+					this.template.convertAndSend(ProcessorApplication.RABBITMQ_DESTINATION_NAME, "{\"id\":" + i + "}", m -> {
+						m.getMessageProperties().setHeader(ProcessorApplication.AUTHORIZATION_HEADER_NAME, "token");
+						return m;
+					});
+			});
+		executor.shutdown();
+		Assertions.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		Assertions.assertEquals(senders * messagesPerSender, handled.get());
+	}
+
+	@Configuration
+	@EnableIntegration
+	@EnableRabbit
+	@Import(IntegrationConfiguration.class)
+	static class BrokerStandInConfiguration {
+
+		@Bean
+		static BeanPostProcessor noAutoStartup() {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessBeforeInitialization(Object bean, String beanName) {
+					if (bean instanceof AbstractEndpoint endpoint)
+						endpoint.setAutoStartup(false);
+					if (bean instanceof AbstractMessageListenerContainer container)
+						container.setAutoStartup(false);
+					return bean;
+				}
+			};
+		}
+
+		@Bean
+		List<Consumer> brokerConsumers() {
+			return new CopyOnWriteArrayList<>();
+		}
+
+		@Bean
+		ConnectionFactory connectionFactory(List<Consumer> brokerConsumers) throws Exception {
+			var connectionFactory = mock(ConnectionFactory.class);
+			var connection = mock(Connection.class);
+			given(connectionFactory.createConnection()).willReturn(connection);
+			given(connection.createChannel(anyBoolean())).willAnswer(invocation -> {
+				var channel = mock(Channel.class);
+				given(channel.isOpen()).willReturn(true);
+				given(channel.basicConsume(anyString(), anyBoolean(), anyString(), anyBoolean(), anyBoolean(), any(), any(Consumer.class)))
+						.willAnswer(consume -> {
+							var consumerTag = "consumer-" + brokerConsumers.size();
+							brokerConsumers.add(consume.getArgument(6));
+							return consumerTag;
+						});
+				return channel;
+			});
+			return connectionFactory;
+		}
+
+		@Bean
+		TestRabbitTemplate testRabbitTemplate(ConnectionFactory connectionFactory) {
+			return new TestRabbitTemplate(connectionFactory);
+		}
+
+		@Bean
+		CachingJwtAuthenticationProvider cachingJwtAuthenticationProvider() {
+			var jwtAuthenticationProvider = new JwtAuthenticationProvider(token -> Jwt
+					.withTokenValue(token)
+					.header("alg", "none")
+					.subject("jlong")
+					.expiresAt(Instant.now().plusSeconds(60))
+					.build());
+			return new CachingJwtAuthenticationProvider(jwtAuthenticationProvider,
+					new RevokedTokens(Duration.ofMinutes(1), Clock.systemUTC()), 100,
+					new SimpleMeterRegistry(), Clock.systemUTC());
+		}
+
+		@Bean
+		MessageCredentialVerifier messageCredentialVerifier() {
+			return new MessageCredentialVerifier(Map.of(), Clock.systemUTC());
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package bootiful.processor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.integration.amqp.support.AmqpMessageHeaderErrorMessageStrategy;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class FailedEmailRequestRouterTests {
+
+	private final AmqpTemplate template = mock(AmqpTemplate.class);
+
+	private final FailedEmailRequestRouter router = new FailedEmailRequestRouter(this.template, "emails",
+			List.of("emails.retry.1000ms", "emails.retry.2000ms"), "emails.dlq");
+
+	private static ErrorMessage failed(Throwable failure, Message message) {
+		var wrapped = new MessageDeliveryException(
+				MessageBuilder.withPayload("x").build(), "failed", failure);
+		return new ErrorMessage(wrapped, Map.of(AmqpMessageHeaderErrorMessageStrategy.AMQP_RAW_MESSAGE, message));
+	}
+
+	@Test
+	void deadLettersPoisonMessagesImmediately() {
+		var message = new Message(new byte[0], new MessageProperties());
+		this.router.route(failed(new AuthenticationCredentialsNotFoundException("the token must be non-empty!"), message));
+		this.router.route(failed(new InvalidBearerTokenException("expired"), message));
+		verify(this.template, times(2)).send(eq("emails"), eq("emails.dlq"), any(Message.class));
+	}
+
+	@Test
+	void retriesTransientFailuresWithBackoffThenDeadLetters() {
+		var message = new Message(new byte[0], new MessageProperties());
+		var failure = new AuthenticationServiceException("the authorization server is down");
+		this.router.route(failed(failure, message));
+		verify(this.template).send("emails", "emails.retry.1000ms", message);
+		this.router.route(failed(failure, message));
+		verify(this.template).send("emails", "emails.retry.2000ms", message);
+		this.router.route(failed(failure, message));
+		verify(this.template).send("emails", "emails.dlq", message);
+		Assertions.assertEquals(3, (Integer) message.getMessageProperties().getHeader(FailedEmailRequestRouter.RETRIES_HEADER));
+	}
+
+	@Test
+	void republishesPersistently() {
+		var properties = new MessageProperties();
+		properties.setDeliveryMode(null);
+		properties.setReceivedDeliveryMode(MessageDeliveryMode.PERSISTENT);
+		var received = new Message(new byte[0], properties);
+		this.router.route(failed(new AuthenticationServiceException("down"), received));
+		Assertions.assertEquals(MessageDeliveryMode.PERSISTENT, received.getMessageProperties().getDeliveryMode());
+
+		var unknown = new MessageProperties();
+		unknown.setDeliveryMode(null);
+		var message = new Message(new byte[0], unknown);
+		this.router.route(failed(new AuthenticationServiceException("down"), message));
+		Assertions.assertEquals(MessageDeliveryMode.PERSISTENT, message.getMessageProperties().getDeliveryMode());
+	}
+
+	@Test
+	void classifiesFailuresByType() {
+		Assertions.assertTrue(FailedEmailRequestRouter.isPoison(new MessagingException("x",
+				new MessageConversionException("couldn't read a customer", new IllegalArgumentException()))));
+		Assertions.assertFalse(FailedEmailRequestRouter.isPoison(new MessagingException("x", new IllegalArgumentException())));
+		Assertions.assertFalse(FailedEmailRequestRouter.isPoison(new MessagingException("x", new IllegalStateException())));
+		Assertions.assertFalse(FailedEmailRequestRouter.isPoison(new AuthenticationServiceException("x")));
+	}
+
+}
@@ -0,0 +1,45 @@
+package bootiful.processor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+
+import java.time.Instant;
+
+class JwtAuthenticationInterceptorTests {
+
+	private final JwtAuthenticationProvider jwtAuthenticationProvider = new JwtAuthenticationProvider(token -> {
+		if (!token.equals("valid"))
+			throw new JwtException("bad token");
+		return Jwt.withTokenValue(token)
+				.header("alg", "RS256")
+				.subject("jlong")
+				.expiresAt(Instant.now().plusSeconds(60))
+				.build();
+	});
+
+	@Test
+	void ignoresMessageCredentialsWithoutKeys() {
+		var interceptor = new JwtAuthenticationInterceptor(ProcessorApplication.AUTHORIZATION_HEADER_NAME,
+				this.jwtAuthenticationProvider, null);
+		var message = MessageBuilder.withPayload("{}")
+				.setHeader(MessageCredentialVerifier.HEADER_NAME, "k1.forged.credential")
+				.setHeader(ProcessorApplication.AUTHORIZATION_HEADER_NAME, "valid")
+				.build();
+		var authenticated = interceptor.preSend(message, null);
+		var principal = (Authentication) authenticated.getHeaders().get(ProcessorApplication.AUTHORIZATION_HEADER_NAME);
+		Assertions.assertEquals("jlong", principal.getName());
+		Assertions.assertTrue(principal.getAuthorities().isEmpty());
+
+		var withoutJwt = MessageBuilder.withPayload("{}")
+				.setHeader(MessageCredentialVerifier.HEADER_NAME, "k1.forged.credential")
+				.build();
+		Assertions.assertThrows(AuthenticationCredentialsNotFoundException.class, () -> interceptor.preSend(withoutJwt, null));
+	}
+
+}
@@ -0,0 +1,63 @@
+package bootiful.processor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.CredentialsExpiredException;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.Map;
+
+class MessageCredentialVerifierTests {
+
+	private static final String KEY = Base64.getEncoder().encodeToString("0123456789abcdef0123456789abcdef".getBytes());
+
+	private final Instant now = Instant.parse("2023-09-01T00:00:00Z");
+
+	private final MessageCredentialVerifier verifier = new MessageCredentialVerifier(Map.of("k1", KEY),
+			Clock.fixed(this.now, ZoneOffset.UTC));
+
+	@Test
+	void verifiesACredential() throws Exception {
+		var authentication = this.verifier.verify(credential("k1", KEY, "jlong\nuser email\n" + this.now.plusSeconds(60).getEpochSecond()));
+		Assertions.assertTrue(authentication.isAuthenticated());
+		Assertions.assertEquals("jlong", authentication.getName());
+		Assertions.assertEquals(AuthorityUtils.createAuthorityList("SCOPE_user", "SCOPE_email"),
+				authentication.getAuthorities());
+	}
+
+	@Test
+	void rejectsExpiredCredentials() throws Exception {
+		Assertions.assertThrows(CredentialsExpiredException.class, () -> this.verifier
+				.verify(credential("k1", KEY, "jlong\n\n" + this.now.getEpochSecond())));
+	}
+
+	@Test
+	void rejectsForgedAndMalformedCredentials() throws Exception {
+		var other = Base64.getEncoder().encodeToString("fedcba9876543210fedcba9876543210".getBytes());
+		var expiry = this.now.plusSeconds(60).getEpochSecond();
+		Assertions.assertThrows(BadCredentialsException.class,
+				() -> this.verifier.verify(credential("k1", other, "jlong\n\n" + expiry)));
+		Assertions.assertThrows(BadCredentialsException.class,
+				() -> this.verifier.verify(credential("k2", KEY, "jlong\n\n" + expiry)));
+		Assertions.assertThrows(BadCredentialsException.class,
+				() -> this.verifier.verify(credential("k1", KEY, "jlong\n" + expiry)));
+		Assertions.assertThrows(BadCredentialsException.class, () -> this.verifier.verify("k1.nope"));
+		Assertions.assertThrows(BadCredentialsException.class, () -> this.verifier.verify("k1.!!.!!"));
+	}
+
+	private static String credential(String keyId, String key, String claims) throws Exception {
+		var encoder = Base64.getUrlEncoder().withoutPadding();
+		var signed = keyId + '.' + encoder.encodeToString(claims.getBytes(StandardCharsets.UTF_8));
+		var mac = Mac.getInstance("HmacSHA256");
+		mac.init(new SecretKeySpec(Base64.getDecoder().decode(key), "HmacSHA256"));
+		return signed + '.' + encoder.encodeToString(mac.doFinal(signed.getBytes(StandardCharsets.US_ASCII)));
+	}
+}
@@ -0,0 +1,144 @@
+package bootiful.processor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.AbstractMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.integration.amqp.inbound.AmqpInboundChannelAdapter;
+import org.springframework.integration.channel.AbstractMessageChannel;
+import org.springframework.integration.config.EnableIntegration;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringJUnitConfig
+@TestPropertySource(properties = "bootiful.processor.consumers.batch=true")
+class RequestBatchesIntegrationFlowTests {
+
+	@Autowired
+	MessageChannel requestBatches;
+
+	@Autowired
+	AbstractMessageChannel principalBatches;
+
+	@Autowired
+	AmqpTemplate template;
+
+	private static Map<String, Object> headers(String token) {
+		return Map.of(MessageHeaders.CONTENT_TYPE, "application/json", ProcessorApplication.AUTHORIZATION_HEADER_NAME, token);
+	}
+
+	private static byte[] customer(String json) {
+		return json.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	void handsOnOneBatchPerPrincipalAndRoutesEachFailedMessageOnce() {
+		var principals = new CopyOnWriteArrayList<String>();
+		this.principalBatches.addInterceptor(new ChannelInterceptor() {
+			@Override
+			public org.springframework.messaging.Message<?> preSend(org.springframework.messaging.Message<?> message, MessageChannel channel) {
+				principals.add(((Authentication) message.getHeaders().get(ProcessorApplication.AUTHORIZATION_HEADER_NAME)).getName());
+				return message;
+			}
+		});
+		var batch = MessageBuilder
+				.withPayload(List.of(
+						customer("{\"id\":1,\"name\":\"Josh\",\"email\":\"josh@email.com\"}"),
+						customer("{\"id\":2,\"name\":\"Rob\",\"email\":\"rob@email.com\"}"),
+						customer("{\"id\":3,\"name\":\"Forged\",\"email\":\"forged@email.com\"}"),
+						customer("not a customer")))
+				.setHeader(AmqpInboundChannelAdapter.CONSOLIDATED_HEADERS, List.of(
+						headers("jlong"), headers("rwinch"), headers("forged"), headers("rwinch")))
+				.build();
+		this.requestBatches.send(batch);
+
+		// the forged message is routed by the authentication interceptor, and rwinch's batch fails on its
+		// unreadable message, so both of rwinch's messages are routed with it. nothing is routed twice
+		Assertions.assertEquals(List.of("jlong", "rwinch"), principals);
+		var routed = ArgumentCaptor.forClass(Message.class);
+		verify(this.template, times(3)).send(eq(ProcessorApplication.RABBITMQ_DESTINATION_NAME), anyString(), routed.capture());
+		var bodies = routed.getAllValues().stream().map(m -> new String(m.getBody(), StandardCharsets.UTF_8)).toList();
+		Assertions.assertEquals(3, bodies.stream().distinct().count());
+		Assertions.assertTrue(bodies.contains("not a customer"));
+		Assertions.assertEquals("rwinch", routed.getAllValues().get(2).getMessageProperties()
+				.getHeader(ProcessorApplication.AUTHORIZATION_HEADER_NAME));
+	}
+
+	@Configuration
+	@EnableIntegration
+	@Import(IntegrationConfiguration.class)
+	static class FlowConfiguration {
+
+		@Bean
+		static BeanPostProcessor noAutoStartup() {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessBeforeInitialization(Object bean, String beanName) {
+					if (bean instanceof AmqpInboundChannelAdapter adapter)
+						adapter.setAutoStartup(false);
+					if (bean instanceof AbstractMessageListenerContainer container)
+						container.setAutoStartup(false);
+					return bean;
+				}
+			};
+		}
+
+		@Bean
+		ConnectionFactory connectionFactory() {
+			return mock(ConnectionFactory.class);
+		}
+
+		@Bean
+		AmqpTemplate amqpTemplate() {
+			return mock(AmqpTemplate.class);
+		}
+
+		@Bean
+		CachingJwtAuthenticationProvider cachingJwtAuthenticationProvider() {
+			var jwtAuthenticationProvider = new JwtAuthenticationProvider(token -> {
+				if (token.equals("forged"))
+					throw new BadJwtException("bad token");
+				return Jwt.withTokenValue(token)
+						.header("alg", "none")
+						.subject(token)
+						.expiresAt(Instant.now().plusSeconds(60))
+						.build();
+			});
+			return new CachingJwtAuthenticationProvider(jwtAuthenticationProvider,
+					new RevokedTokens(Duration.ofMinutes(1), Clock.systemUTC()), 100,
+					new SimpleMeterRegistry(), Clock.systemUTC());
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+package bootiful.processor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Duration;
+import java.time.Instant;
+
+class RevokedTokensTests {
+
+	private final MutableClock clock = new MutableClock(Instant.parse("2023-09-01T00:00:00Z"));
+
+	private final RevokedTokens revokedTokens = new RevokedTokens(Duration.ofMinutes(1), this.clock);
+
+	private Jwt jwt(String jti) {
+		return Jwt.withTokenValue("token")
+				.header("alg", "RS256")
+				.subject("jlong")
+				.jti(jti)
+				.expiresAt(this.clock.instant().plus(Duration.ofMinutes(5)))
+				.build();
+	}
+
+	@Test
+	void rejectsRevokedTokensUntilTheyExpire() {
+		var expiresAt = this.clock.instant().plus(Duration.ofMinutes(5)).getEpochSecond();
+		Assertions.assertFalse(this.revokedTokens.validate(jwt("a")).hasErrors());
+		this.revokedTokens.revoke("a " + expiresAt);
+		Assertions.assertTrue(this.revokedTokens.validate(jwt("a")).hasErrors());
+		Assertions.assertFalse(this.revokedTokens.validate(jwt("b")).hasErrors());
+		this.clock.advance(Duration.ofMinutes(6));
+		Assertions.assertFalse(this.revokedTokens.isRevoked("a"));
+		this.revokedTokens.removeExpired();
+		Assertions.assertEquals(0, this.revokedTokens.size());
+	}
+
+	@Test
+	void ignoresExpiredAndMalformedRevocations() {
+		this.revokedTokens.revoke("a " + this.clock.instant().minusSeconds(1).getEpochSecond());
+		this.revokedTokens.revoke("b");
+		this.revokedTokens.revoke("c soon");
+		Assertions.assertEquals(0, this.revokedTokens.size());
+	}
+}
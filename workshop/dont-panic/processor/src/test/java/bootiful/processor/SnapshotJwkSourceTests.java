@@ -0,0 +1,117 @@
+package bootiful.processor;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class SnapshotJwkSourceTests {
+
+	private final URI jwkSetUri = URI.create("http://localhost:8080/oauth2/jwks");
+
+	private final RestTemplate restTemplate = new RestTemplate();
+
+	private final MockRestServiceServer server = MockRestServiceServer.bindTo(this.restTemplate).build();
+
+	@TempDir
+	Path directory;
+
+	private static JWKSelector kid(String kid) {
+		return new JWKSelector(new JWKMatcher.Builder().keyID(kid).build());
+	}
+
+	private static String jwks(String... kids) throws Exception {
+		var keys = new ArrayList<JWK>();
+		for (var kid : kids)
+			keys.add(new RSAKeyGenerator(2048).keyID(kid).generate());
+		return new JWKSet(keys).toString(true);
+	}
+
+	@Test
+	void startsFromTheSnapshotAndRefetchesUnknownKeysOnce() throws Exception {
+		var snapshot = this.directory.resolve("jwks.json");
+		Files.writeString(snapshot, jwks("old"));
+		var source = new SnapshotJwkSource(this.restTemplate, this.jwkSetUri, snapshot,
+				Duration.ofHours(1), Duration.ofHours(1));
+		this.server.expect(once(), requestTo(this.jwkSetUri))
+				.andRespond(withSuccess(jwks("old", "new"), MediaType.APPLICATION_JSON));
+
+		source.loadSnapshot();
+		Assertions.assertEquals(1, source.get(kid("old"), null).size());
+		Assertions.assertEquals(1, source.get(kid("new"), null).size());
+		// rate limited: an unknown key right after a fetch doesn't go back to the server
+		Assertions.assertTrue(source.get(kid("unknown"), null).isEmpty());
+		this.server.verify();
+		Assertions.assertTrue(Files.readString(snapshot).contains("\"new\""));
+	}
+
+	@Test
+	void revalidatesWithTheEtag() throws Exception {
+		var source = new SnapshotJwkSource(this.restTemplate, this.jwkSetUri, this.directory.resolve("jwks.json"),
+				Duration.ofHours(1), Duration.ZERO);
+		var headers = new HttpHeaders();
+		headers.setETag("\"1\"");
+		this.server.expect(once(), requestTo(this.jwkSetUri))
+				.andRespond(withSuccess(jwks("a"), MediaType.APPLICATION_JSON).headers(headers));
+		this.server.expect(once(), requestTo(this.jwkSetUri))
+				.andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"1\""))
+				.andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+
+		Assertions.assertEquals(1, source.get(kid("a"), null).size());
+		Assertions.assertTrue(source.get(kid("b"), null).isEmpty());
+		Assertions.assertEquals(1, source.get(kid("a"), null).size());
+		this.server.verify();
+	}
+
+	@Test
+	void ignoresASnapshotOthersCanWrite() throws Exception {
+		var snapshot = this.directory.resolve("jwks.json");
+		Files.writeString(snapshot, jwks("planted"));
+		Files.setPosixFilePermissions(snapshot, PosixFilePermissions.fromString("rw-rw-rw-"));
+		var source = new SnapshotJwkSource(this.restTemplate, this.jwkSetUri, snapshot,
+				Duration.ofHours(1), Duration.ofHours(1));
+
+		source.loadSnapshot();
+		this.server.expect(once(), requestTo(this.jwkSetUri))
+				.andRespond(withSuccess(jwks("a"), MediaType.APPLICATION_JSON));
+		Assertions.assertTrue(source.get(kid("planted"), null).isEmpty());
+		this.server.verify();
+	}
+
+	@Test
+	void keepsTheSnapshotDirectoryPrivate() throws Exception {
+		var snapshot = this.directory.resolve("bootiful").resolve("jwks.json");
+		var source = new SnapshotJwkSource(this.restTemplate, this.jwkSetUri, snapshot,
+				Duration.ofHours(1), Duration.ZERO);
+		this.server.expect(once(), requestTo(this.jwkSetUri))
+				.andRespond(withSuccess(jwks("a"), MediaType.APPLICATION_JSON));
+
+		source.get(kid("a"), null);
+		Assertions.assertEquals(PosixFilePermissions.fromString("rwx------"),
+				Files.getPosixFilePermissions(snapshot.getParent()));
+		Assertions.assertTrue(SnapshotJwkSource.isPrivate(snapshot));
+	}
+
+}